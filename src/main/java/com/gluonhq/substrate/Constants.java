@@ -130,6 +130,7 @@ public class Constants {
     public static final String APK_PATH = "apk";
     public static final String NATIVE_CODE_PATH = "native";
     public static final String PATHING_JAR_DEPS_PATH = "deps";
+    public static final String PATHING_JAR_FILE = "classpathJar.jar";
 
 
 
@@ -152,6 +153,7 @@ public class Constants {
     public static final String ANDROID_RES_FOLDER = "res";
     public static final String ANDROID_KEYSTORE = "debug.keystore";
 
+    public static final String META_INF_SUBSTRATE = "META-INF/substrate/";
     public static final String META_INF_SUBSTRATE_MACOS = "META-INF/substrate/macos/";
     public static final String META_INF_SUBSTRATE_IOS = "META-INF/substrate/ios/";
     public static final String META_INF_SUBSTRATE_DALVIK = "META-INF/substrate/dalvik/";
@@ -190,6 +192,18 @@ public class Constants {
     public static final String JNI_JAVAFXSW_FILE = "jniconfig-javafxsw.json";
     public static final String JNI_ARCH_FILE = "jniconfig-${archOs}.json";
 
+    /**
+     * Build fingerprints and cache
+     */
+    public static final String COMPILE_FINGERPRINT_FILE = "compile.fingerprint";
+    public static final String COMPILE_INPUTS_FILE = "compile.inputs";
+    public static final String BUILD_CACHE_PATH = "cache";
+    public static final long DEFAULT_BUILD_CACHE_MAX_SIZE_MB = 5 * 1024;
+    public static final int DEFAULT_REMOTE_BUILD_CACHE_TIMEOUT = 10; // seconds
+    public static final String PROBE_CACHE_FILE = "probes.properties";
+    public static final String CLASSPATH_INDEX_FILE = "classpath.index";
+    public static final String NATIVE_LIBS_STATE_FILE = "native-libs.properties";
+
     /**
      * Arguments for native-image
      */
@@ -30,6 +30,7 @@ package com.gluonhq.substrate;
 import com.gluonhq.substrate.model.InternalProjectConfiguration;
 import com.gluonhq.substrate.model.ProcessPaths;
 import com.gluonhq.substrate.model.Triplet;
+import com.gluonhq.substrate.target.AbstractTargetConfiguration;
 import com.gluonhq.substrate.target.AndroidTargetConfiguration;
 import com.gluonhq.substrate.target.MacOSTargetConfiguration;
 import com.gluonhq.substrate.target.IosTargetConfiguration;
@@ -37,9 +38,12 @@ import com.gluonhq.substrate.target.LinuxTargetConfiguration;
 import com.gluonhq.substrate.target.TargetConfiguration;
 import com.gluonhq.substrate.target.WebTargetConfiguration;
 import com.gluonhq.substrate.target.WindowsTargetConfiguration;
+import com.gluonhq.substrate.util.ArtifactRepository;
+import com.gluonhq.substrate.util.FileDeps;
 import com.gluonhq.substrate.util.Logger;
 import com.gluonhq.substrate.util.ProcessRunner;
 import com.gluonhq.substrate.util.Strings;
+import com.gluonhq.substrate.util.TaskGraph;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -52,10 +56,13 @@ import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class SubstrateDispatcher {
 
@@ -122,6 +129,17 @@ public class SubstrateDispatcher {
     private static volatile boolean messagePrinted = false;
 
     public static void main(String[] args) throws IOException {
+        String prefetchProfiles = System.getProperty("prefetch");
+        if (prefetchProfiles != null) {
+            ProjectConfiguration configuration = new ProjectConfiguration("", "");
+            configuration.setJavaStaticSdkVersion(System.getProperty("javastaticsdkversion"));
+            configuration.setJavafxStaticSdkVersion(System.getProperty("javafxstaticsdkversion"));
+            prefetch(configuration, Strings.split(prefetchProfiles).stream()
+                    .map(profile -> Constants.Profile.valueOf(profile.trim().toUpperCase(Locale.ROOT)))
+                    .collect(Collectors.toList()));
+            return;
+        }
+
         Step step = getStepToExecute();
 
         Path buildRoot = Paths.get(System.getProperty("user.dir"), "build", "autoclient");
@@ -147,6 +165,48 @@ public class SubstrateDispatcher {
         }
     }
 
+    /**
+     * Downloads into the local artifact store all the artifacts that builds for the given
+     * target profiles can need, so later builds on this machine don't use the network,
+     * and can run in offline mode. The local store can also be copied to other machines,
+     * and used as a mirror there, see {@link ArtifactRepository}.
+     * The Android toolchain is not included, since it is installed by the Android sdkmanager.
+     *
+     * From the command line: java -Dprefetch=ios,android,linux_aarch64 com.gluonhq.substrate.SubstrateDispatcher
+     *
+     * @param config the project configuration, for the versions of the artifacts
+     * @param profiles the target profiles
+     * @throws IOException if an artifact can't be downloaded
+     */
+    public static void prefetch(ProjectConfiguration config, List<Constants.Profile> profiles) throws IOException {
+        Objects.requireNonNull(config);
+        Set<String> urls = new LinkedHashSet<>();
+        Triplet configTarget = config.getTargetTriplet();
+        try {
+            for (Constants.Profile profile : Objects.requireNonNull(profiles)) {
+                Triplet target = new Triplet(profile);
+                config.setTarget(target);
+                urls.addAll(new FileDeps(new InternalProjectConfiguration(config)).getArtifactUrls());
+                urls.add(AbstractTargetConfiguration.getClibsUrl(target));
+            }
+        } finally {
+            config.setTarget(configTarget);
+        }
+        Logger.logInfo("Prefetching " + urls.size() + " artifacts for " + profiles + " into " + ArtifactRepository.LOCAL_STORE);
+
+        TaskGraph graph = new TaskGraph("prefetch", 3);
+        for (String url : urls) {
+            graph.add(url, () -> ArtifactRepository.fetch(url));
+        }
+        try {
+            graph.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Prefetch was interrupted", e);
+        }
+        Logger.logInfo("Prefetch done");
+    }
+
     private static ProjectConfiguration createProjectConfiguration() {
         String classpath = requireSystemProperty("imagecp", "Use -Dimagecp=/path/to/classes");
         String graalVM = requireSystemProperty("graalvm", "Use -Dgraalvm=/path/to/graalvm");
@@ -259,6 +319,7 @@ public class SubstrateDispatcher {
     }
 
     public String retrieveSubstrateMessage(String task) throws IOException {
+        ArtifactRepository.checkOnline("The Substrate message");
         URL url = new URL("https://info.gluonhq.com/substrate.txt");
         URLConnection con = url.openConnection();
         con.setConnectTimeout(3000);
@@ -28,18 +28,16 @@
 package com.gluonhq.substrate.config;
 
 import com.gluonhq.substrate.model.ClassPath;
+import com.gluonhq.substrate.model.ClassPathIndex;
 import com.gluonhq.substrate.util.FileOps;
 import com.gluonhq.substrate.util.Logger;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import static com.gluonhq.substrate.Constants.META_INF_SUBSTRATE_DALVIK;
 import static com.gluonhq.substrate.Constants.USER_ANDROID_DEPENDENCIES_FILE;
@@ -52,7 +50,7 @@ import static com.gluonhq.substrate.Constants.USER_ANDROID_PERMISSIONS_FILE;
  */
 public class AndroidResolver {
 
-    private final List<File> jars;
+    private final ClassPathIndex index;
 
     /**
      * AndroidResolver constructor
@@ -62,7 +60,16 @@ public class AndroidResolver {
      * @throws InterruptedException
      */
     public AndroidResolver(String classpath) throws IOException, InterruptedException {
-        this.jars = new ClassPath(classpath).getJars(true);
+        this(ClassPathIndex.create(new ClassPath(classpath).getEntries(true), null));
+    }
+
+    /**
+     * AndroidResolver constructor
+     *
+     * @param index the index of the classpath of the user's project
+     */
+    public AndroidResolver(ClassPathIndex index) {
+        this.index = Objects.requireNonNull(index);
     }
 
     /**
@@ -92,21 +99,10 @@ public class AndroidResolver {
     private List<String> scanJars(String configName) throws IOException {
         Objects.requireNonNull(configName, "configName can't be null");
         List<String> list = new ArrayList<>();
-        for (File jar : jars) {
-            if (!jar.exists()) {
-                continue;
-            }
-            try (ZipFile zip = new ZipFile(jar)) {
-                Logger.logDebug("Scanning " + jar);
-                for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
-                    ZipEntry zipEntry = e.nextElement();
-                    String name = zipEntry.getName();
-                    if (!zipEntry.isDirectory() &&
-                            (META_INF_SUBSTRATE_DALVIK + configName).equals(name)) {
-                        Logger.logDebug("Adding content from " + zip.getName() + "::" + zipEntry.getName());
-                        list.addAll(FileOps.readFileLines(zip.getInputStream(zipEntry)));
-                    }
-                }
+        for (ClassPathIndex.Entry entry : index.find((META_INF_SUBSTRATE_DALVIK + configName)::equals)) {
+            Logger.logDebug("Adding content from " + entry);
+            try (InputStream is = entry.openStream()) {
+                list.addAll(FileOps.readFileLines(is));
             }
         }
         return list;
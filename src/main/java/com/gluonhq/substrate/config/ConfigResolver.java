@@ -28,22 +28,22 @@
 package com.gluonhq.substrate.config;
 
 import com.gluonhq.substrate.model.ClassPath;
+import com.gluonhq.substrate.model.ClassPathIndex;
 import com.gluonhq.substrate.util.FileOps;
 import com.gluonhq.substrate.util.Logger;
 import com.gluonhq.substrate.util.Strings;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import static com.gluonhq.substrate.Constants.META_INF_SUBSTRATE_CONFIG;
 import static com.gluonhq.substrate.Constants.RESOURCE_BUNDLES_ARCHOS_FILE;
@@ -64,7 +64,35 @@ import static com.gluonhq.substrate.Constants.USER_RESOURCE_FILE;
  */
 public class ConfigResolver {
 
-    private final List<File> jars;
+    /**
+     * The configuration files that can be found in META-INF/substrate/config
+     */
+    private enum ConfigFile {
+        INIT_BUILD_TIME(USER_INIT_BUILD_TIME_FILE, USER_INIT_BUILD_TIME_ARCHOS_FILE, null, null),
+        RESOURCE_BUNDLES(RESOURCE_BUNDLES_FILE, RESOURCE_BUNDLES_ARCHOS_FILE, null, null),
+        REFLECTION(USER_REFLECTION_FILE, USER_REFLECTION_ARCHOS_FILE, ",",
+                line -> !line.startsWith("[") && !line.startsWith("]")),
+        JNI(USER_JNI_FILE, USER_JNI_ARCHOS_FILE, ",",
+                line -> !line.startsWith("[") && !line.startsWith("]")),
+        RESOURCES(USER_RESOURCE_FILE, USER_RESOURCE_ARCHOS_FILE, null,
+                line -> line.trim().startsWith("{\"pattern\""));
+
+        private final String configName;
+        private final String configArchosName;
+        private final String initLine;
+        private final Predicate<String> filter;
+
+        ConfigFile(String configName, String configArchosName, String initLine, Predicate<String> filter) {
+            this.configName = configName;
+            this.configArchosName = configArchosName;
+            this.initLine = initLine;
+            this.filter = filter;
+        }
+    }
+
+    private final ClassPathIndex index;
+    // resolved config files by archOs, so the classpath is only looked up once per archOs
+    private final Map<String, Map<ConfigFile, List<String>>> resolved = new ConcurrentHashMap<>();
 
     /**
      * ConfigResolver constructor
@@ -74,7 +102,16 @@ public class ConfigResolver {
      * @throws InterruptedException
      */
     public ConfigResolver(String classpath) throws IOException, InterruptedException {
-        this.jars = new ClassPath(classpath).getJars(true);
+        this(ClassPathIndex.create(new ClassPath(classpath).getEntries(true), null));
+    }
+
+    /**
+     * ConfigResolver constructor
+     *
+     * @param index the index of the classpath of the user's project
+     */
+    public ConfigResolver(ClassPathIndex index) {
+        this.index = Objects.requireNonNull(index);
     }
 
     /**
@@ -90,10 +127,7 @@ public class ConfigResolver {
      */
     public List<String> getUserInitBuildTimeList(String archOs) throws IOException {
         Logger.logDebug("Scanning for init build time files");
-        return scanJars(USER_INIT_BUILD_TIME_FILE,
-                getFileNameForArchOs(USER_INIT_BUILD_TIME_ARCHOS_FILE, archOs),
-                null,
-                null);
+        return getList(ConfigFile.INIT_BUILD_TIME, archOs);
     }
 
     /**
@@ -109,10 +143,7 @@ public class ConfigResolver {
      */
     public List<String> getResourceBundlesList(String archOs) throws IOException {
         Logger.logDebug("Scanning for resource bundles");
-        return scanJars(RESOURCE_BUNDLES_FILE,
-                getFileNameForArchOs(RESOURCE_BUNDLES_ARCHOS_FILE, archOs),
-                null,
-                null);
+        return getList(ConfigFile.RESOURCE_BUNDLES, archOs);
     }
 
     /**
@@ -128,10 +159,7 @@ public class ConfigResolver {
      */
     public List<String> getUserReflectionList(String archOs) throws IOException {
         Logger.logDebug("Scanning for reflection files");
-        return scanJars(USER_REFLECTION_FILE,
-                getFileNameForArchOs(USER_REFLECTION_ARCHOS_FILE, archOs),
-                ",",
-                line -> !line.startsWith("[") && !line.startsWith("]"));
+        return getList(ConfigFile.REFLECTION, archOs);
     }
 
     /**
@@ -147,10 +175,7 @@ public class ConfigResolver {
      */
     public List<String> getUserJNIList(String archOs) throws IOException {
         Logger.logDebug("Scanning for JNI files");
-        return scanJars(USER_JNI_FILE,
-                getFileNameForArchOs(USER_JNI_ARCHOS_FILE, archOs),
-                ",",
-                line -> !line.startsWith("[") && !line.startsWith("]"));
+        return getList(ConfigFile.JNI, archOs);
     }
 
     /**
@@ -166,10 +191,7 @@ public class ConfigResolver {
      */
     public List<String> getUserResourcesList(String archOs) throws IOException {
         Logger.logDebug("Scanning for resource files");
-        List<String> resources = scanJars(USER_RESOURCE_FILE,
-                getFileNameForArchOs(USER_RESOURCE_ARCHOS_FILE, archOs),
-                null,
-                line -> line.trim().startsWith("{\"pattern\""));
+        List<String> resources = getList(ConfigFile.RESOURCES, archOs);
         AtomicInteger index = new AtomicInteger();
         return resources.stream()
                 .map(r -> (index.getAndIncrement() < resources.size() - 1 && !r.trim().endsWith(",")) ?
@@ -177,32 +199,38 @@ public class ConfigResolver {
                 .collect(Collectors.toList());
     }
 
-    private List<String> scanJars(String configName, String configArchosName, String initLine, Predicate<String> filter) throws IOException {
-        Objects.requireNonNull(configName, "configName can't be null");
-        List<String> list = new ArrayList<>();
-        for (File jar : jars) {
-            if (!jar.exists()) {
-                continue;
-            }
-            try (ZipFile zip = new ZipFile(jar)) {
-                Logger.logDebug("Scanning " + jar);
-                for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
-                    ZipEntry zipEntry = e.nextElement();
-                    String name = zipEntry.getName();
-                    if (!zipEntry.isDirectory() &&
-                            ((META_INF_SUBSTRATE_CONFIG + configName).equals(name) ||
-                                (configArchosName != null && (META_INF_SUBSTRATE_CONFIG + configArchosName).equals(name)))) {
-                        if (initLine != null) {
-                            // first line content before adding the file's content
-                            list.add(initLine);
-                        }
-                        Logger.logDebug("Adding classes from " + zip.getName() + "::" + zipEntry.getName());
-                        list.addAll(FileOps.readFileLines(zip.getInputStream(zipEntry), filter));
-                    }
+    private List<String> getList(ConfigFile configFile, String archOs) throws IOException {
+        Map<ConfigFile, List<String>> lists = resolved.get(Objects.toString(archOs, ""));
+        if (lists == null) {
+            lists = resolve(archOs);
+            resolved.putIfAbsent(Objects.toString(archOs, ""), lists);
+        }
+        return new ArrayList<>(lists.get(configFile));
+    }
+
+    /**
+     * Looks up all the config files for the given archOs at once, by name,
+     * keeping the order of the classpath
+     */
+    private Map<ConfigFile, List<String>> resolve(String archOs) throws IOException {
+        Map<ConfigFile, List<String>> lists = new EnumMap<>(ConfigFile.class);
+        for (ConfigFile configFile : ConfigFile.values()) {
+            String configArchosName = getFileNameForArchOs(configFile.configArchosName, archOs);
+            List<String> list = new ArrayList<>();
+            for (ClassPathIndex.Entry entry : index.get(META_INF_SUBSTRATE_CONFIG + configFile.configName,
+                    configArchosName == null ? null : META_INF_SUBSTRATE_CONFIG + configArchosName)) {
+                if (configFile.initLine != null) {
+                    // first line content before adding the file's content
+                    list.add(configFile.initLine);
+                }
+                Logger.logDebug("Adding classes from " + entry);
+                try (InputStream is = entry.openStream()) {
+                    list.addAll(FileOps.readFileLines(is, configFile.filter));
                 }
             }
+            lists.put(configFile, list);
         }
-        return list;
+        return lists;
     }
 
     private String getFileNameForArchOs(String userFileName, String archOs) {
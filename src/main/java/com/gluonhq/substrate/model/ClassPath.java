@@ -1,19 +1,30 @@
 package com.gluonhq.substrate.model;
 
-import com.gluonhq.substrate.util.FileOps;
-import com.gluonhq.substrate.util.ProcessRunner;
+import com.gluonhq.substrate.util.BuildFingerprint;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 import java.util.stream.Stream;
+import java.util.zip.ZipFile;
 
 /**
  * Represents the classpath
@@ -21,6 +32,8 @@ import java.util.stream.Stream;
  */
 public class ClassPath {
 
+    private static final String CLASSES_JAR = "classes.jar";
+
     private final String classPath;
 
     /**
@@ -129,61 +142,164 @@ public class ClassPath {
     /**
      * Returns a list with all the jar files that are found in the classpath.
      *
-     * @param includeClasses if true, a jar will be created and added to the list,
-     *                       containing the compiled classes and resources of the
-     *                       current project
+     * @param includeClasses if true, a jar will be added to the list, containing the
+     *                       compiled classes and resources of the current project. It is
+     *                       kept in the temporary folder, one per classes folder, and only
+     *                       created again when the classes change, see {@link #getJars(Path)}
      * @return a list of jar files
      * @throws IOException
      * @throws InterruptedException
      */
     public List<File> getJars(boolean includeClasses) throws IOException, InterruptedException {
-        List<File> jars = filter(s -> s.endsWith(".jar")).stream()
-                .map(File::new)
-                .distinct()
+        Optional<ClassPathEntry> classes = includeClasses ? getClassesEntry() : Optional.empty();
+        return getJars(classes.isPresent() ? getDefaultClassesJar(classes.get()) : null);
+    }
+
+    /**
+     * Returns a list with all the jar files that are found in the classpath, and a jar
+     * with the compiled classes and resources of the current project, if any, at the
+     * given path, that should be a location of the build, like its tmp folder, so it is
+     * reused while the classes don't change, see {@link #createClassesJar(Path)}.
+     *
+     * @param classesJar the path of the jar with the project classes, or null to leave them out
+     * @return a list of jar files
+     * @throws IOException if the jar with the project classes can't be created
+     */
+    public List<File> getJars(Path classesJar) throws IOException {
+        List<File> jars = getJarPaths().stream()
+                .map(Path::toFile)
                 .collect(Collectors.toList());
 
+        if (classesJar != null) {
+            Path jar = createClassesJar(classesJar);
+            if (jar != null) {
+                jars.add(jar.toFile());
+            }
+        }
+
+        return jars;
+    }
+
+    private static Path getDefaultClassesJar(ClassPathEntry classes) {
+        String digest = new BuildFingerprint()
+                .add("classes", classes.getPath().toAbsolutePath().normalize().toString())
+                .getDigest();
+        return Path.of(System.getProperty("java.io.tmpdir"), "substrate-classes-" + digest).resolve(CLASSES_JAR);
+    }
+
+    /**
+     * Returns a list with all the jar files that are found in the classpath,
+     * as entries that can be scanned in-process.
+     *
+     * @param includeClasses if true, an entry with the compiled classes and resources
+     *                       of the current project is added to the end of the list,
+     *                       without packaging them into a jar
+     * @return a list of classpath entries
+     */
+    public List<ClassPathEntry> getEntries(boolean includeClasses) {
+        List<ClassPathEntry> entries = getJarPaths().stream()
+                .map(ClassPathEntry::ofJar)
+                .collect(Collectors.toList());
         if (includeClasses) {
-            // Add project's classes as a jar to the list so it can be scanned as well
-            String classes = filter(s -> s.endsWith("classes") ||
-                            s.endsWith("classes" + File.separator + "java" + File.separator + "main")).stream()
-                    .findFirst()
-                    .orElse(null);
-            if (classes != null) {
-                Path classesPath = Files.createTempDirectory("classes");
-                FileOps.copyDirectory(Path.of(classes), classesPath);
-                Path resourcesPath = filter(s -> s.endsWith("resources" + File.separator + "main")).stream()
-                        .findFirst()
-                        .map(Path::of)
-                        .orElse(null);
-                if (resourcesPath != null && Files.exists(resourcesPath)) {
-                    FileOps.copyDirectory(resourcesPath, classesPath);
-                }
+            getClassesEntry().ifPresent(entries::add);
+        }
+        return entries;
+    }
 
-                String javaPath = System.getenv("JAVA_HOME");
-                if (javaPath == null || javaPath.isEmpty()) {
-                    javaPath = System.getenv("GRAALVM_HOME");
-                    if (javaPath == null || javaPath.isEmpty()) {
-                        throw new IOException("Error: $JAVA_HOME and $GRAALVM_HOME are undefined");
-                    }
-                }
-                Path jarPath = Path.of(javaPath, "bin", Triplet.isWindowsHost() ? "jar.exe" : "jar");
-                if (!Files.exists(jarPath)) {
-                    throw new IOException("Error: " + jarPath + " doesn't exist");
-                }
+    /**
+     * Returns the entry with the compiled classes and resources of the current project,
+     * if any. Resources override classes with the same name.
+     *
+     * @return an optional with the entry of the project classes
+     */
+    public Optional<ClassPathEntry> getClassesEntry() {
+        return filter(s -> s.endsWith("classes") ||
+                        s.endsWith("classes" + File.separator + "java" + File.separator + "main")).stream()
+                .findFirst()
+                .map(classes -> {
+                    List<Path> roots = new ArrayList<>();
+                    roots.add(Path.of(classes));
+                    filter(s -> s.endsWith("resources" + File.separator + "main")).stream()
+                            .findFirst()
+                            .map(Path::of)
+                            .ifPresent(roots::add);
+                    return ClassPathEntry.ofDirectories("classes", roots);
+                });
+    }
 
-                Path classesJar = classesPath.resolve("classes.jar");
+    /**
+     * Packages the compiled classes and resources of the current project into a jar
+     * file. The jar is written in-process, and only when any of the classes or
+     * resources has changed since the given jar was created.
+     *
+     * @param jarFile the path of the jar to create
+     * @return the path of the jar, or null if the classpath doesn't contain the
+     * project classes
+     * @throws IOException if the jar can't be created
+     */
+    public Path createClassesJar(Path jarFile) throws IOException {
+        Objects.requireNonNull(jarFile);
+        Optional<ClassPathEntry> classes = getClassesEntry();
+        if (classes.isEmpty()) {
+            return null;
+        }
+        ClassPathEntry.DirectoryEntry entry = (ClassPathEntry.DirectoryEntry) classes.get();
+        Map<String, Path> files = entry.getFiles();
 
-                ProcessRunner runner = new ProcessRunner(jarPath.toString(),
-                        "cf", classesJar.toString(), "-C", classesPath.toString(), ".");
+        BuildFingerprint fingerprint = new BuildFingerprint();
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            fingerprint.add("entry", file.getKey());
+            fingerprint.addStamp(file.getValue());
+        }
+        String stamp = fingerprint.getDigest();
+        if (Files.exists(jarFile)) {
+            try (ZipFile zip = new ZipFile(jarFile.toFile())) {
+                if (stamp.equals(zip.getComment())) {
+                    return jarFile;
+                }
+            } catch (IOException e) {
+                // not a valid jar, create it again
+            }
+        }
 
-                if (runner.runProcess("jar") == 0 && Files.exists(classesJar)) {
-                    jars.add(classesJar.toFile());
-                } else {
-                    throw new IOException("Error creating classes.jar");
+        Path parent = jarFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmpJar = Files.createTempFile(parent, CLASSES_JAR, ".tmp");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        try (JarOutputStream jos = new JarOutputStream(Files.newOutputStream(tmpJar), manifest)) {
+            Set<String> directories = new HashSet<>();
+            for (Map.Entry<String, Path> file : files.entrySet()) {
+                String name = file.getKey();
+                if (JarFile.MANIFEST_NAME.equalsIgnoreCase(name)) {
+                    continue;
                 }
+                for (int i = name.indexOf('/'); i > 0; i = name.indexOf('/', i + 1)) {
+                    String directory = name.substring(0, i + 1);
+                    if (directories.add(directory) && !"META-INF/".equals(directory)) {
+                        jos.putNextEntry(new JarEntry(directory));
+                        jos.closeEntry();
+                    }
+                }
+                JarEntry jarEntry = new JarEntry(name);
+                jarEntry.setLastModifiedTime(Files.getLastModifiedTime(file.getValue()));
+                jos.putNextEntry(jarEntry);
+                Files.copy(file.getValue(), jos);
+                jos.closeEntry();
             }
+            jos.setComment(stamp);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpJar);
+            throw new IOException("Error creating " + jarFile, e);
         }
+        Files.move(tmpJar, jarFile, StandardCopyOption.REPLACE_EXISTING);
+        return jarFile;
+    }
 
-        return jars;
+    private List<Path> getJarPaths() {
+        return filter(s -> s.endsWith(".jar")).stream()
+                .map(Path::of)
+                .distinct()
+                .collect(Collectors.toList());
     }
 }
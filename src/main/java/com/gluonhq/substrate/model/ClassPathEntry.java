@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An element of the classpath, that can be scanned the same way whether it is a
+ * jar, or the project's directories of compiled classes and resources.
+ *
+ * Entry names always use '/' as separator, like in a jar.
+ */
+public abstract class ClassPathEntry {
+
+    /**
+     * Consumes the content of an entry
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(String name, InputStream content) throws IOException;
+    }
+
+    /**
+     * Creates an entry for a jar file
+     * @param jar the path to the jar
+     * @return a classpath entry
+     */
+    public static ClassPathEntry ofJar(Path jar) {
+        return new JarFileEntry(jar);
+    }
+
+    /**
+     * Creates an entry for one or more directories that are scanned as a whole,
+     * like the classes and resources of a project. When the same file exists
+     * in more than one directory, the one from the last directory is used.
+     *
+     * @param name the name of the entry
+     * @param roots the directories
+     * @return a classpath entry
+     */
+    public static ClassPathEntry ofDirectories(String name, List<Path> roots) {
+        return new DirectoryEntry(name, roots);
+    }
+
+    /**
+     * Returns the name of the entry: the name of the jar without extension,
+     * or the name given to the directories
+     * @return the name of the entry
+     */
+    public abstract String getName();
+
+    /**
+     * Returns the path of the jar, or of the first directory
+     * @return the path of the entry
+     */
+    public abstract Path getPath();
+
+    /**
+     * Returns whether the entry is a jar file
+     * @return true for a jar, false for directories
+     */
+    public abstract boolean isJar();
+
+    /**
+     * Returns whether the jar or any of the directories exist
+     * @return true if the entry exists
+     */
+    public abstract boolean exists();
+
+    /**
+     * Visits the files of the entry with a name that matches the filter, in a
+     * deterministic order. Directories are not visited.
+     *
+     * @param filter the predicate that the names of the files should match
+     * @param visitor the consumer of the matching files
+     * @throws IOException if the entry can't be read
+     */
+    public abstract void visit(Predicate<String> filter, EntryVisitor visitor) throws IOException;
+
+    @Override
+    public String toString() {
+        return getPath().toString();
+    }
+
+    private static final class JarFileEntry extends ClassPathEntry {
+
+        private final Path jar;
+
+        private JarFileEntry(Path jar) {
+            this.jar = Objects.requireNonNull(jar);
+        }
+
+        @Override
+        public String getName() {
+            String fileName = jar.getFileName().toString();
+            return fileName.endsWith(".jar") ? fileName.substring(0, fileName.length() - 4) : fileName;
+        }
+
+        @Override
+        public Path getPath() {
+            return jar;
+        }
+
+        @Override
+        public boolean isJar() {
+            return true;
+        }
+
+        @Override
+        public boolean exists() {
+            return Files.exists(jar);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof JarFileEntry && jar.equals(((JarFileEntry) o).jar);
+        }
+
+        @Override
+        public int hashCode() {
+            return jar.hashCode();
+        }
+
+        @Override
+        public void visit(Predicate<String> filter, EntryVisitor visitor) throws IOException {
+            try (ZipFile zip = new ZipFile(jar.toFile())) {
+                List<? extends ZipEntry> entries = zip.stream()
+                        .filter(ze -> !ze.isDirectory() && filter.test(ze.getName()))
+                        .collect(Collectors.toList());
+                for (ZipEntry ze : entries) {
+                    try (InputStream is = zip.getInputStream(ze)) {
+                        visitor.visit(ze.getName(), is);
+                    }
+                }
+            }
+        }
+    }
+
+    static final class DirectoryEntry extends ClassPathEntry {
+
+        private final String name;
+        private final List<Path> roots;
+
+        private DirectoryEntry(String name, List<Path> roots) {
+            if (roots.isEmpty()) {
+                throw new IllegalArgumentException("At least one directory is required for " + name);
+            }
+            this.name = Objects.requireNonNull(name);
+            this.roots = List.copyOf(roots);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Path getPath() {
+            return roots.get(0);
+        }
+
+        @Override
+        public boolean isJar() {
+            return false;
+        }
+
+        @Override
+        public boolean exists() {
+            return roots.stream().anyMatch(Files::isDirectory);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DirectoryEntry)) {
+                return false;
+            }
+            DirectoryEntry that = (DirectoryEntry) o;
+            return name.equals(that.name) && roots.equals(that.roots);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, roots);
+        }
+
+        @Override
+        public void visit(Predicate<String> filter, EntryVisitor visitor) throws IOException {
+            for (Map.Entry<String, Path> file : getFiles().entrySet()) {
+                if (filter.test(file.getKey())) {
+                    try (InputStream is = Files.newInputStream(file.getValue())) {
+                        visitor.visit(file.getKey(), is);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the files of all the directories, by entry name, sorted by name
+         */
+        Map<String, Path> getFiles() throws IOException {
+            Map<String, Path> files = new TreeMap<>();
+            for (Path root : roots) {
+                if (!Files.isDirectory(root)) {
+                    continue;
+                }
+                List<Path> paths;
+                try (Stream<Path> walk = Files.walk(root)) {
+                    paths = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+                }
+                for (Path path : paths) {
+                    files.put(root.relativize(path).toString().replace('\\', '/'), path);
+                }
+            }
+            return files;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.model;
+
+import com.gluonhq.substrate.Constants;
+import com.gluonhq.substrate.util.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An index of the entries of all the elements of a classpath, built in a single
+ * parallel pass, so the different scanners of a build (configuration files, web
+ * files, dalvik classes, native libraries...) don't need to open every jar again.
+ *
+ * For each element it records the name, size and CRC of its entries, and the
+ * content of the entries under <code>META-INF/substrate/</code>.
+ *
+ * The records of the jars can be persisted in a file, keyed by the path, size and
+ * last modified time of each jar, so that an unchanged jar is never opened again
+ * in later builds. The project classes and resources are always indexed again.
+ */
+public final class ClassPathIndex {
+
+    private static final String MAGIC = "substrate-classpath-index";
+    /**
+     * Version of the format of the persisted file. Files with a different
+     * format are ignored, and replaced on the next write.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    /**
+     * An indexed entry of a classpath element
+     */
+    public static final class Entry {
+        private final ClassPathEntry source;
+        private final String name;
+        private final long size;
+        private final long crc;
+        private final byte[] content;
+
+        private Entry(ClassPathEntry source, String name, long size, long crc, byte[] content) {
+            this.source = source;
+            this.name = name;
+            this.size = size;
+            this.crc = crc;
+            this.content = content;
+        }
+
+        /**
+         * @return the classpath element that contains this entry
+         */
+        public ClassPathEntry getSource() {
+            return source;
+        }
+
+        /**
+         * @return the name of the entry, with '/' as separator
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the uncompressed size of the entry
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the CRC-32 of the entry, or -1 if it is not known
+         */
+        public long getCrc() {
+            return crc;
+        }
+
+        /**
+         * Opens the content of the entry. Entries under <code>META-INF/substrate/</code>
+         * are served from the index, other entries are read from their source.
+         *
+         * @return an input stream with the content of the entry
+         * @throws IOException if the entry can't be read
+         */
+        public InputStream openStream() throws IOException {
+            if (content != null) {
+                return new ByteArrayInputStream(content);
+            }
+            List<byte[]> result = new ArrayList<>(1);
+            source.visit(name::equals, (n, is) -> result.add(is.readAllBytes()));
+            if (result.isEmpty()) {
+                throw new IOException("Entry " + name + " not found in " + source);
+            }
+            return new ByteArrayInputStream(result.get(0));
+        }
+
+        @Override
+        public String toString() {
+            return source + "::" + name;
+        }
+    }
+
+    private static final class Record {
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final List<String> names;
+        private final List<long[]> stats;
+        private final Map<String, byte[]> contents;
+
+        private Record(String path, long size, long lastModified, List<String> names,
+                       List<long[]> stats, Map<String, byte[]> contents) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.names = names;
+            this.stats = stats;
+            this.contents = contents;
+        }
+
+        private boolean matches(BasicFileAttributes attributes) {
+            return attributes.size() == size && attributes.lastModifiedTime().toMillis() == lastModified;
+        }
+    }
+
+    private final Map<ClassPathEntry, List<Entry>> entries;
+    // entries by name, in classpath order
+    private final Map<String, List<Entry>> entriesByName = new HashMap<>();
+    // position of each entry in classpath order
+    private final Map<Entry, Integer> positions = new IdentityHashMap<>();
+
+    private ClassPathIndex(Map<ClassPathEntry, List<Entry>> entries) {
+        this.entries = entries;
+        entries.values().stream()
+                .flatMap(List::stream)
+                .forEach(e -> {
+                    positions.put(e, positions.size());
+                    entriesByName.computeIfAbsent(e.getName(), n -> new ArrayList<>(1)).add(e);
+                });
+    }
+
+    /**
+     * Creates the index of the given classpath elements. Jars that haven't changed since
+     * they were persisted in the index file are not opened, and the index file is updated
+     * with the jars that were indexed again.
+     *
+     * @param classPathEntries the elements of the classpath
+     * @param indexFile the file where the index is persisted, or null to not persist it
+     * @return the index of the classpath
+     * @throws IOException if any of the elements can't be read
+     */
+    public static ClassPathIndex create(List<ClassPathEntry> classPathEntries, Path indexFile) throws IOException {
+        Objects.requireNonNull(classPathEntries);
+        Map<String, Record> persisted = indexFile == null ? new HashMap<>() : read(indexFile);
+        Map<String, Record> updated = Collections.synchronizedMap(new HashMap<>());
+
+        List<List<Entry>> indexed;
+        try {
+            indexed = classPathEntries.parallelStream()
+                    .map(source -> {
+                        try {
+                            return index(source, persisted, updated);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Map<ClassPathEntry, List<Entry>> entries = new LinkedHashMap<>();
+        for (int i = 0; i < classPathEntries.size(); i++) {
+            entries.putIfAbsent(classPathEntries.get(i), indexed.get(i));
+        }
+        if (indexFile != null && !updated.isEmpty()) {
+            persisted.putAll(updated);
+            persisted.values().removeIf(r -> !Files.exists(Path.of(r.path)));
+            write(indexFile, persisted.values());
+        }
+        return new ClassPathIndex(entries);
+    }
+
+    /**
+     * Returns the elements of the classpath, in classpath order
+     * @return a list of classpath elements
+     */
+    public List<ClassPathEntry> getClassPathEntries() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * Returns the entries of all the elements of the classpath with a name that
+     * matches the given filter, in classpath order, and in the order of the entries
+     * within each element.
+     *
+     * @param filter the predicate that the names of the entries should match
+     * @return a list with the matching entries
+     */
+    public List<Entry> find(Predicate<String> filter) {
+        Objects.requireNonNull(filter);
+        return entries.values().stream()
+                .flatMap(List::stream)
+                .filter(e -> filter.test(e.getName()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the entries of all the elements of the classpath with any of the given
+     * names, looked up directly by name. The entries are returned in the same order
+     * as {@link #find(Predicate)} would return them.
+     *
+     * @param names the names of the entries
+     * @return a list with the entries found
+     */
+    public List<Entry> get(String... names) {
+        return Arrays.stream(names)
+                .filter(Objects::nonNull)
+                .distinct()
+                .flatMap(name -> entriesByName.getOrDefault(name, List.of()).stream())
+                .sorted(Comparator.comparing(positions::get))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the entries of a given element of the classpath with a name that
+     * matches the given filter.
+     *
+     * @param source the element of the classpath
+     * @param filter the predicate that the names of the entries should match
+     * @return a list with the matching entries, empty if the element is not indexed
+     */
+    public List<Entry> find(ClassPathEntry source, Predicate<String> filter) {
+        Objects.requireNonNull(filter);
+        return entries.getOrDefault(source, List.of()).stream()
+                .filter(e -> filter.test(e.getName()))
+                .collect(Collectors.toList());
+    }
+
+    private static List<Entry> index(ClassPathEntry source, Map<String, Record> persisted,
+                                     Map<String, Record> updated) throws IOException {
+        if (!source.exists()) {
+            return List.of();
+        }
+        if (!source.isJar()) {
+            List<Entry> list = new ArrayList<>();
+            for (Map.Entry<String, Path> file : ((ClassPathEntry.DirectoryEntry) source).getFiles().entrySet()) {
+                String name = file.getKey();
+                byte[] content = isIndexedContent(name) ? Files.readAllBytes(file.getValue()) : null;
+                list.add(new Entry(source, name, Files.size(file.getValue()), -1, content));
+            }
+            return list;
+        }
+
+        Path jar = source.getPath();
+        String key = jar.toAbsolutePath().toString();
+        BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+        Record record = persisted.get(key);
+        if (record == null || !record.matches(attributes)) {
+            Logger.logDebug("Indexing " + jar);
+            record = readJar(key, jar, attributes);
+            updated.put(key, record);
+        }
+        List<Entry> list = new ArrayList<>(record.names.size());
+        for (int i = 0; i < record.names.size(); i++) {
+            String name = record.names.get(i);
+            long[] stat = record.stats.get(i);
+            list.add(new Entry(source, name, stat[0], stat[1], record.contents.get(name)));
+        }
+        return list;
+    }
+
+    private static Record readJar(String key, Path jar, BasicFileAttributes attributes) throws IOException {
+        List<String> names = new ArrayList<>();
+        List<long[]> stats = new ArrayList<>();
+        Map<String, byte[]> contents = new HashMap<>();
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            for (ZipEntry ze : Collections.list(zip.entries())) {
+                if (ze.isDirectory()) {
+                    continue;
+                }
+                names.add(ze.getName());
+                stats.add(new long[] {ze.getSize(), ze.getCrc()});
+                if (isIndexedContent(ze.getName())) {
+                    try (InputStream is = zip.getInputStream(ze)) {
+                        contents.put(ze.getName(), is.readAllBytes());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IOException("Error indexing " + jar + ": " + e.getMessage(), e);
+        }
+        return new Record(key, attributes.size(), attributes.lastModifiedTime().toMillis(), names, stats, contents);
+    }
+
+    private static boolean isIndexedContent(String name) {
+        return name.startsWith(Constants.META_INF_SUBSTRATE);
+    }
+
+    private static Map<String, Record> read(Path indexFile) {
+        Map<String, Record> records = new HashMap<>();
+        if (!Files.exists(indexFile)) {
+            return records;
+        }
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (!MAGIC.equals(dis.readUTF()) || dis.readInt() != FORMAT_VERSION) {
+                Logger.logDebug("Ignoring classpath index with a different format: " + indexFile);
+                return records;
+            }
+            int count = dis.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = dis.readUTF();
+                long size = dis.readLong();
+                long lastModified = dis.readLong();
+                int entryCount = dis.readInt();
+                List<String> names = new ArrayList<>(entryCount);
+                List<long[]> stats = new ArrayList<>(entryCount);
+                Map<String, byte[]> contents = new HashMap<>();
+                for (int j = 0; j < entryCount; j++) {
+                    String name = dis.readUTF();
+                    names.add(name);
+                    stats.add(new long[] {dis.readLong(), dis.readLong()});
+                    int length = dis.readInt();
+                    if (length >= 0) {
+                        byte[] content = new byte[length];
+                        dis.readFully(content);
+                        contents.put(name, content);
+                    }
+                }
+                records.put(path, new Record(path, size, lastModified, names, stats, contents));
+            }
+        } catch (IOException e) {
+            Logger.logDebug("Error reading classpath index " + indexFile + ": " + e.getMessage());
+            records.clear();
+        }
+        return records;
+    }
+
+    private static void write(Path indexFile, Iterable<Record> records) {
+        Path tmpFile = null;
+        try {
+            Path parent = indexFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            tmpFile = Files.createTempFile(parent, Constants.CLASSPATH_INDEX_FILE, ".tmp");
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                List<Record> list = new ArrayList<>();
+                records.forEach(list::add);
+                dos.writeUTF(MAGIC);
+                dos.writeInt(FORMAT_VERSION);
+                dos.writeInt(list.size());
+                for (Record record : list) {
+                    dos.writeUTF(record.path);
+                    dos.writeLong(record.size);
+                    dos.writeLong(record.lastModified);
+                    dos.writeInt(record.names.size());
+                    for (int i = 0; i < record.names.size(); i++) {
+                        String name = record.names.get(i);
+                        dos.writeUTF(name);
+                        dos.writeLong(record.stats.get(i)[0]);
+                        dos.writeLong(record.stats.get(i)[1]);
+                        byte[] content = record.contents.get(name);
+                        if (content == null) {
+                            dos.writeInt(-1);
+                        } else {
+                            dos.writeInt(content.length);
+                            dos.write(content);
+                        }
+                    }
+                }
+            }
+            Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the index is only an optimization, it will be created again
+            Logger.logDebug("Error writing classpath index " + indexFile + ": " + e.getMessage());
+            if (tmpFile != null) {
+                try {
+                    Files.deleteIfExists(tmpFile);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -30,6 +30,7 @@ package com.gluonhq.substrate.model;
 import com.gluonhq.substrate.Constants;
 import com.gluonhq.substrate.ProjectConfiguration;
 import com.gluonhq.substrate.util.Logger;
+import com.gluonhq.substrate.util.ProbeCache;
 import com.gluonhq.substrate.util.ProcessRunner;
 import com.gluonhq.substrate.util.Strings;
 import com.gluonhq.substrate.util.Version;
@@ -64,6 +65,11 @@ public class InternalProjectConfiguration {
     private boolean useJavaFX = false;
     private boolean usePrismSW = false;
     private boolean enableCheckHash = true;
+    private boolean useBuildCache = true;
+    private long buildCacheMaxSize = Constants.DEFAULT_BUILD_CACHE_MAX_SIZE_MB * 1024 * 1024;
+    private String remoteBuildCacheUrl;
+    private boolean remoteBuildCacheReadOnly = false;
+    private int remoteBuildCacheTimeout = Constants.DEFAULT_REMOTE_BUILD_CACHE_TIMEOUT * 1000;
     private boolean usesJDK11 = false;
 
     private String backend;
@@ -101,6 +107,25 @@ public class InternalProjectConfiguration {
         }
         setJavaFXStaticSDK(javafxStaticSdkPath);  // this can be safely set even if null. Default will be used in that case
         setInitBuildTimeList(Strings.split(System.getProperty("initbuildtimelist")));
+        setUseBuildCache(Boolean.parseBoolean(System.getProperty("buildcache", "true")));
+        String buildCacheMaxSize = System.getProperty("buildcachemaxsize");
+        if (buildCacheMaxSize != null) {
+            try {
+                setBuildCacheMaxSize(Long.parseLong(buildCacheMaxSize) * 1024 * 1024);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Error: buildcachemaxsize should be a size in MB, but was " + buildCacheMaxSize);
+            }
+        }
+        setRemoteBuildCacheUrl(System.getProperty("remotebuildcache"));
+        setRemoteBuildCacheReadOnly(Boolean.getBoolean("remotebuildcachereadonly"));
+        String remoteBuildCacheTimeout = System.getProperty("remotebuildcachetimeout");
+        if (remoteBuildCacheTimeout != null) {
+            try {
+                setRemoteBuildCacheTimeout(Integer.parseInt(remoteBuildCacheTimeout) * 1000);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Error: remotebuildcachetimeout should be a number of seconds, but was " + remoteBuildCacheTimeout);
+            }
+        }
 
         boolean useJavaFX = new ClassPath(config.getClasspath()).contains(s -> s.contains("javafx"));
         setUseJavaFX(useJavaFX);
@@ -114,16 +139,17 @@ public class InternalProjectConfiguration {
 
     private Version getGraalVersion() throws IOException {
         String pattern = "GraalVM .*?(\\d\\d.\\d.\\d)";
-        ProcessRunner graalJava;
+        String output;
         try {
-            graalJava = new ProcessRunner(
-                            getGraalVMBinPath().resolve("java").toString(),
-                            "--version");
-            graalJava.runProcess("java-version");
+            Path java = getGraalVMBinPath().resolve("java");
+            output = ProbeCache.get("graalvm-version", getGraalVMProbeInputs(java), () -> {
+                ProcessRunner graalJava = new ProcessRunner(java.toString(), "--version");
+                graalJava.runProcess("java-version");
+                return graalJava.getResponse();
+            });
         } catch (InterruptedException e) {
             throw new IOException("Couldn't determine GraalVM version, " + e.toString());
         }
-        String output = graalJava.getResponse();
         Pattern r = Pattern.compile(pattern);
         Matcher m = r.matcher(output);
         if (!m.find())
@@ -315,6 +341,77 @@ public class InternalProjectConfiguration {
         this.enableCheckHash = enableCheckHash;
     }
 
+    public boolean isUseBuildCache() {
+        return useBuildCache;
+    }
+
+    /**
+     * Enables the local build cache, that stores the objectfiles created by
+     * native-image, so these can be reused by other builds with the same inputs
+     * @param useBuildCache boolean to enable the build cache
+     */
+    public void setUseBuildCache(boolean useBuildCache) {
+        this.useBuildCache = useBuildCache;
+    }
+
+    /**
+     * Gets the path of the local build cache, shared by all the projects
+     */
+    public Path getBuildCachePath() {
+        return Constants.USER_SUBSTRATE_PATH.resolve(Constants.BUILD_CACHE_PATH);
+    }
+
+    public long getBuildCacheMaxSize() {
+        return buildCacheMaxSize;
+    }
+
+    /**
+     * Sets the maximum size of the local build cache. Least recently used
+     * entries are evicted when the cache grows over this size.
+     * @param buildCacheMaxSize the maximum size in bytes
+     */
+    public void setBuildCacheMaxSize(long buildCacheMaxSize) {
+        this.buildCacheMaxSize = buildCacheMaxSize;
+    }
+
+    public String getRemoteBuildCacheUrl() {
+        return remoteBuildCacheUrl;
+    }
+
+    /**
+     * Sets the base URL of an optional remote build cache, shared by several hosts,
+     * that is queried when the objectfile is not found in the local build cache
+     * @param remoteBuildCacheUrl the base URL of the remote cache, or null to disable it
+     */
+    public void setRemoteBuildCacheUrl(String remoteBuildCacheUrl) {
+        this.remoteBuildCacheUrl = remoteBuildCacheUrl;
+    }
+
+    public boolean isRemoteBuildCacheReadOnly() {
+        return remoteBuildCacheReadOnly;
+    }
+
+    /**
+     * Sets the remote build cache in read-only mode: entries are downloaded, but
+     * the objectfiles built locally are never uploaded
+     * @param remoteBuildCacheReadOnly boolean to set the read-only mode
+     */
+    public void setRemoteBuildCacheReadOnly(boolean remoteBuildCacheReadOnly) {
+        this.remoteBuildCacheReadOnly = remoteBuildCacheReadOnly;
+    }
+
+    public int getRemoteBuildCacheTimeout() {
+        return remoteBuildCacheTimeout;
+    }
+
+    /**
+     * Sets the connect and read timeout of the requests to the remote build cache
+     * @param remoteBuildCacheTimeout the timeout in milliseconds
+     */
+    public void setRemoteBuildCacheTimeout(int remoteBuildCacheTimeout) {
+        this.remoteBuildCacheTimeout = remoteBuildCacheTimeout;
+    }
+
     public Triplet getTargetTriplet() {
         return Objects.requireNonNull( publicConfig.getTargetTriplet(), "Target triplet is required");
     }
@@ -594,28 +691,41 @@ public class InternalProjectConfiguration {
      * @throws IOException if the Java version can't be found
      */
     public Version getGraalVMJavaVersion() throws IOException {
-        ProcessRunner graalJava = null;
+        String versionLine;
         try {
-            graalJava = new ProcessRunner(getGraalVMBinPath().resolve("java").toString(), "-version");
-            if (graalJava.runProcess("check version") != 0) {
-                throw new IllegalArgumentException("$GRAALVM_HOME/bin/java -version process failed");
-            }
+            Path java = getGraalVMBinPath().resolve("java");
+            versionLine = ProbeCache.get("graalvm-java-version", getGraalVMProbeInputs(java), () -> {
+                ProcessRunner graalJava = new ProcessRunner(java.toString(), "-version");
+                if (graalJava.runProcess("check version") != 0) {
+                    throw new IllegalArgumentException("$GRAALVM_HOME/bin/java -version process failed");
+                }
+                List<String> responses = graalJava.getResponses();
+                if (responses == null || responses.isEmpty()) {
+                    throw new IOException("Couldn't determine GraalVM's Java version");
+                }
+                return responses.get(0);
+            });
         } catch (InterruptedException e) {
             throw new IllegalArgumentException("$GRAALVM_HOME/bin/java -version process failed");
         }
         String pattern = "version \"(\\d{1,2}(\\.\\d+){0,2})\"";
         Pattern r = Pattern.compile(pattern);
-        List<String> responses = graalJava.getResponses();
-        if (responses == null || responses.isEmpty()) {
-            throw new IOException("Couldn't determine GraalVM's Java version");
-        }
-        Matcher m = r.matcher(responses.get(0));
+        Matcher m = r.matcher(versionLine);
         if (!m.find()) {
-            throw new IOException("Couldn't determine GraalVM's Java version for " + responses.get(0));
+            throw new IOException("Couldn't determine GraalVM's Java version for " + versionLine);
         }
         return new Version(m.group(1));
     }
 
+    /**
+     * The files that identify a GraalVM installation, for the probes of its version
+     * @param java the path to the GraalVM's java launcher
+     * @return a list with the launcher and the release file
+     */
+    private List<Path> getGraalVMProbeInputs(Path java) {
+        return List.of(java, getGraalPath().resolve("release"));
+    }
+
     @Override
     public String toString() {
         return "ProjectConfiguration{" +
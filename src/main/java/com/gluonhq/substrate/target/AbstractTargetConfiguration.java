@@ -30,14 +30,21 @@ package com.gluonhq.substrate.target;
 import com.gluonhq.substrate.Constants;
 import com.gluonhq.substrate.config.ConfigResolver;
 import com.gluonhq.substrate.model.ClassPath;
+import com.gluonhq.substrate.model.ClassPathIndex;
 import com.gluonhq.substrate.model.InternalProjectConfiguration;
 import com.gluonhq.substrate.model.ProcessPaths;
 import com.gluonhq.substrate.model.Triplet;
+import com.gluonhq.substrate.util.BuildCache;
+import com.gluonhq.substrate.util.BuildFingerprint;
 import com.gluonhq.substrate.util.FileDeps;
 import com.gluonhq.substrate.util.FileOps;
+import com.gluonhq.substrate.util.IncrementalCompiler;
 import com.gluonhq.substrate.util.Logger;
+import com.gluonhq.substrate.util.NativeLibExtractor;
 import com.gluonhq.substrate.util.ProcessRunner;
+import com.gluonhq.substrate.util.RemoteBuildCache;
 import com.gluonhq.substrate.util.Strings;
+import com.gluonhq.substrate.util.TaskGraph;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -51,11 +58,15 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -101,6 +112,14 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
     private final List<String> defaultStaticJavaLibs = List.of("java", "nio", "zip", "net", "prefs", "jvm",
             "fdlibm", "z", "dl", "j2pkcs11", "sunec", "jaas", "extnet");
 
+    // link flags prepared while native-image was running, consumed by the next link
+    private volatile List<String> preparedLinkFlags;
+    // classpath indexes by classpath, shared by all the scanners of this build
+    private final Map<String, ClassPathIndex> classPathIndexes = new HashMap<>();
+    private final Map<String, ConfigResolver> configResolvers = new HashMap<>();
+    // the installation of the clibraries, shared by the prefetch and the link preparation
+    private CompletableFuture<Void> clibs;
+
     AbstractTargetConfiguration(ProcessPaths paths, InternalProjectConfiguration configuration) {
         this.projectConfiguration = configuration;
         this.fileDeps = new FileDeps(configuration);
@@ -111,8 +130,15 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
     // --- public methods
 
     /**
-     * Compile sets the required command line arguments and runs
-     * native-image
+     * Compile runs the independent preparation tasks concurrently (native libs
+     * extraction, configuration files and pathing jar), sets the required
+     * command line arguments and runs native-image.
+     * While native-image runs, the additional sources are compiled and the
+     * link step is prepared, so that it can start as soon as the objectfile
+     * is available.
+     * When none of the compile inputs (classpath, project configuration,
+     * GraalVM) changed since the last build, the existing objectfile is
+     * reused right away, and only the additional sources are compiled.
      *
      * @return true if the process ends successfully, false otherwise
      * @throws IOException
@@ -120,21 +146,111 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
      */
     @Override
     public boolean compile() throws IOException, InterruptedException {
-        String substrateClasspath = "";
-        try {
-            substrateClasspath =  new File(AbstractTargetConfiguration.class.getProtectionDomain()
-                    .getCodeSource().getLocation().toURI()).getPath();
-        } catch (URISyntaxException ex) {
-            throw new IOException ("Can't locate Substrate.jar", ex);
-        }
+        prefetchDependencies();
+        String substrateClasspath = getSubstrateClasspath();
         String processedClasspath = validateCompileRequirements();
 
-        extractNativeLibs(processedClasspath);
+        Path compileInputsFile = paths.getGvmPath().resolve(Constants.COMPILE_INPUTS_FILE);
+        String compileInputs = getCompileInputsStamp(substrateClasspath, processedClasspath);
+        boolean objectFileUpToDate = BuildFingerprint.matches(compileInputsFile, compileInputs) &&
+                Files.exists(paths.getGvmPath().resolve(Constants.COMPILE_FINGERPRINT_FILE)) &&
+                findObjectFile().isPresent();
+
+        TaskGraph graph = new TaskGraph("compile");
+        TaskGraph.Task<Boolean> additionalSources = graph.add("compile-additional-sources",
+                this::compileAdditionalSources);
+        TaskGraph.Task<List<String>> linkPreparation = graph.add("link-preparation", () -> {
+            try {
+                return prepareLink();
+            } catch (IOException | RuntimeException e) {
+                // not fatal for compile: link will prepare again, and report the failure
+                Logger.logDebug("Link preparation failed: " + e.getMessage());
+                return null;
+            }
+        });
+        TaskGraph.Task<Boolean> nativeImage = null;
+        if (objectFileUpToDate) {
+            Logger.logInfo("Compile inputs are unchanged since the last build, reusing the existing objectfile " +
+                    "and compiling only the native code");
+        } else {
+            Files.deleteIfExists(compileInputsFile);
+            graph.add("extract-native-libs", () -> {
+                extractNativeLibs(processedClasspath);
+                return null;
+            });
+            TaskGraph.Task<List<String>> configurationFiles = graph.add("configuration-files",
+                    () -> getConfigurationFileArgs(processedClasspath));
+            TaskGraph.Task<List<String>> bundles = graph.add("resource-bundles",
+                    () -> getBundlesList(processedClasspath));
+            TaskGraph.Task<String> pathingJar = graph.add("pathing-jar",
+                    () -> FileOps.createPathingJar(paths.getTmpPath(), processedClasspath));
+            nativeImage = graph.add("native-image",
+                    () -> runNativeImage(substrateClasspath, processedClasspath,
+                            configurationFiles.get(), bundles.get(), pathingJar.get()),
+                    configurationFiles, bundles, pathingJar);
+        }
+        graph.run();
+        Logger.logInfo(graph.getCriticalPathReport());
 
-        if (!compileAdditionalSources()) {
+        if (nativeImage != null) {
+            if (!nativeImage.get()) {
+                return false;
+            }
+            BuildFingerprint.write(compileInputsFile, compileInputs);
+        }
+        if (!additionalSources.get()) {
             return false;
         }
+        preparedLinkFlags = linkPreparation.get();
+        return true;
+    }
+
+    /**
+     * Sets the required command line arguments and runs native-image, unless the
+     * objectfile is up to date, or it can be restored from the build cache.
+     *
+     * @return true if the objectfile is available, false otherwise
+     */
+    private boolean runNativeImage(String substrateClasspath, String processedClasspath,
+                                   List<String> configurationFileArgs, List<String> bundlesList,
+                                   String pathingJar) throws IOException, InterruptedException {
+        ProcessRunner compileRunner = createNativeImageRunner(substrateClasspath, configurationFileArgs,
+                bundlesList, pathingJar);
 
+        Path gvmPath = paths.getGvmPath();
+        Path fingerprintFile = gvmPath.resolve(Constants.COMPILE_FINGERPRINT_FILE);
+        String fingerprint = getCompileFingerprint(compileRunner.getCmdList(), substrateClasspath, processedClasspath);
+        if (BuildFingerprint.matches(fingerprintFile, fingerprint) && findObjectFile().isPresent()) {
+            Logger.logInfo("Compile inputs are unchanged since the last build, reusing the existing objectfile (fingerprint " +
+                    fingerprint.substring(0, 12) + ")");
+            return true;
+        }
+        Files.deleteIfExists(fingerprintFile);
+        cleanTempDirectory();
+
+        BuildCache buildCache = getBuildCache();
+        RemoteBuildCache remoteBuildCache = getRemoteBuildCache();
+        if (restoreFromBuildCache(buildCache, remoteBuildCache, fingerprint)) {
+            BuildFingerprint.write(fingerprintFile, fingerprint);
+            return true;
+        }
+
+        compileRunner.setInfo(true);
+        compileRunner.setLogToFile(true);
+
+        Path workDir = gvmPath.resolve(projectConfiguration.getAppName());
+        int result = compileRunner.runProcess("compile", workDir.toFile());
+
+        boolean success = validateCompileResult(result);
+        if (success) {
+            BuildFingerprint.write(fingerprintFile, fingerprint);
+            storeInBuildCache(buildCache, remoteBuildCache, fingerprint);
+        }
+        return success;
+    }
+
+    private ProcessRunner createNativeImageRunner(String substrateClasspath, List<String> configurationFileArgs,
+                                                  List<String> bundlesList, String pathingJar) throws IOException {
         ProcessRunner compileRunner = new ProcessRunner(getNativeImagePath());
 
         baseNativeImageArguments.forEach(compileRunner::addArg);
@@ -151,44 +267,74 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
             verboseNativeImageArguments.forEach(compileRunner::addArg);
         }
 
-        compileRunner.addArgs(getConfigurationFileArgs(processedClasspath));
+        compileRunner.addArgs(configurationFileArgs);
 
         compileRunner.addArgs(getTargetSpecificAOTCompileFlags());
-        List<String> bundlesList = getBundlesList(processedClasspath);
         if (!bundlesList.isEmpty()) {
             String bundles = String.join(",", bundlesList);
             compileRunner.addArg("-H:IncludeResourceBundles=" + bundles);
         }
         compileRunner.addArg(getJniPlatformArg());
         compileRunner.addArg(Constants.NATIVE_IMAGE_ARG_CLASSPATH);
-        compileRunner.addArg(substrateClasspath + File.pathSeparator + FileOps.createPathingJar(paths.getTmpPath(), processedClasspath));
+        compileRunner.addArg(substrateClasspath + File.pathSeparator + pathingJar);
         projectConfiguration.getCompilerArgs().stream()
             .filter(arg -> arg != null && !arg.isEmpty())
             .forEach(compileRunner::addArg);
         compileRunner.addArg(projectConfiguration.getMainClassName());
 
         postProcessCompilerArguments(compileRunner.getCmdList());
-
-        compileRunner.setInfo(true);
-        compileRunner.setLogToFile(true);
-
-        Path gvmPath = paths.getGvmPath();
-        Path workDir = gvmPath.resolve(projectConfiguration.getAppName());
-        int result = compileRunner.runProcess("compile", workDir.toFile());
-
-        return validateCompileResult(result);
+        return compileRunner;
     }
 
     /**
     * Links a previously created objectfile with the required
     * dependencies into a native executable.
+    * If the link step wasn't prepared already while compiling, the additional
+    * sources are compiled and the link step is prepared concurrently first.
     * @return true if linking succeeded, false otherwise
     */
     @Override
     public boolean link() throws IOException, InterruptedException {
-        compileAdditionalSources();
-        ensureClibs();
+        prefetchDependencies();
+        List<String> linkFlags = preparedLinkFlags;
+        preparedLinkFlags = null;
+        if (linkFlags == null) {
+            TaskGraph graph = new TaskGraph("link");
+            graph.add("compile-additional-sources", this::compileAdditionalSources);
+            TaskGraph.Task<List<String>> linkPreparation = graph.add("link-preparation", this::prepareLink);
+            graph.run();
+            Logger.logInfo(graph.getCriticalPathReport());
+            linkFlags = linkPreparation.get();
+        } else {
+            Logger.logDebug("Using the link preparation done during compile");
+        }
+        return runLinker(linkFlags);
+    }
 
+    /**
+     * Checks the link requirements, makes sure the clibraries are available, and
+     * collects the target specific link flags, concurrently.
+     *
+     * @return the target specific link flags
+     */
+    private List<String> prepareLink() throws IOException, InterruptedException {
+        TaskGraph graph = new TaskGraph("link-preparation");
+        graph.add("link-requirements", () -> {
+            checkLinkRequirements();
+            return null;
+        });
+        graph.add("clibraries", () -> {
+            ensureClibs();
+            return null;
+        });
+        TaskGraph.Task<List<String>> linkFlags = graph.add("link-flags",
+                () -> getTargetSpecificLinkFlags(projectConfiguration.isUseJavaFX(),
+                        projectConfiguration.isUsePrismSW()));
+        graph.run();
+        return linkFlags.get();
+    }
+
+    private boolean runLinker(List<String> targetSpecificLinkFlags) throws IOException, InterruptedException {
         String appName = projectConfiguration.getAppName();
         String objectFilename = projectConfiguration.getMainClassName().toLowerCase(Locale.ROOT) + "." + getObjectFileExtension();
         Path gvmPath = paths.getGvmPath();
@@ -216,8 +362,7 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
             .collect(Collectors.toList()));
 
         linkRunner.addArgs(getTargetSpecificJavaLinkLibraries());
-        linkRunner.addArgs(getTargetSpecificLinkFlags(projectConfiguration.isUseJavaFX(),
-                projectConfiguration.isUsePrismSW()));
+        linkRunner.addArgs(targetSpecificLinkFlags);
 
         linkRunner.addArgs(getTargetSpecificLinkOutputFlags());
 
@@ -302,6 +447,15 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
 
     // --- private methods
 
+    /**
+     * Compiles the additional sources and the native code of the project. Only the
+     * sources that changed since they were last compiled, or that include a header
+     * that changed, are compiled again, concurrently.
+     *
+     * @return true if all the sources are compiled, false otherwise
+     * @throws IOException
+     * @throws InterruptedException
+     */
     protected boolean compileAdditionalSources()
             throws IOException, InterruptedException {
 
@@ -309,32 +463,42 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
         Path workDir = paths.getGvmPath().resolve(appName);
         Files.createDirectories(workDir);
 
-        ProcessRunner processRunner = new ProcessRunner(getCompiler());
-        processRunner.addArg("-c");
+        List<String> command = new ArrayList<>();
+        command.add(getCompiler());
+        command.add("-c");
         if (projectConfiguration.isVerbose()) {
-            processRunner.addArg("-DGVM_VERBOSE");
+            command.add("-DGVM_VERBOSE");
         }
-        processRunner.addArg("-DSUBSTRATE");
-        processRunner.addArgs(getTargetSpecificCCompileFlags());
+        command.add("-DSUBSTRATE");
+        command.addAll(getTargetSpecificCCompileFlags());
 
-        processRunner.addArg("-I" + workDir.toString());
+        command.add("-I" + workDir.toString());
 
-        processRunner.addArgs(copyAdditionalSourceFiles(workDir));
+        List<String> sources = new ArrayList<>(copyAdditionalSourceFiles(workDir));
 
         Path nativeCodeDir = paths.getNativeCodePath();
         if (Files.isDirectory(nativeCodeDir)) {
             FileOps.copyDirectory(nativeCodeDir, workDir);
         }
 
-        processRunner.addArgs(getNativeCodeList());
+        sources.addAll(getNativeCodeList());
 
         for (String fileName : getAdditionalHeaderFiles()) {
             FileOps.copyResource(getAdditionalSourceFileLocation()  + fileName, workDir.resolve(fileName));
         }
-  
-        int result = processRunner.runProcess("compile-additional-sources", workDir.toFile());
-        // we need more checks (e.g. do launcher.o and thread.o exist?)
-        return result == 0;
+
+        IncrementalCompiler compiler = new IncrementalCompiler("compile-additional-sources", command,
+                workDir, getObjectFileExtension(), supportsCompilerDependencyFiles());
+        return compiler.compile(sources);
+    }
+
+    private String getSubstrateClasspath() throws IOException {
+        try {
+            return new File(AbstractTargetConfiguration.class.getProtectionDomain()
+                    .getCodeSource().getLocation().toURI()).getPath();
+        } catch (URISyntaxException ex) {
+            throw new IOException ("Can't locate Substrate.jar", ex);
+        }
     }
 
     private String validateCompileRequirements() throws IOException {
@@ -383,19 +547,76 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
         }
     }
 
+    /**
+     * Returns the upstream URL of the clibraries for the given target
+     *
+     * @param target the target triplet
+     * @return the URL of the zip with the clibraries
+     */
+    public static String getClibsUrl(Triplet target) {
+        return Strings.substitute(URL_CLIBS_ZIP,
+                Map.of("osarch", target.getOsArch(),
+                        "version", target.getClibsVersion()));
+    }
+
+    /**
+     * Fetches the missing SDKs and the clibraries in the background, so the downloads
+     * overlap with the rest of the step, until it needs them
+     */
+    private void prefetchDependencies() {
+        fileDeps.prefetchDependencies();
+        startClibs();
+    }
+
+    /**
+     * Returns the installation of the clibraries, starting it the first time, in a
+     * non-daemon thread, so it is not stopped halfway when the build ends before it
+     */
+    private synchronized CompletableFuture<Void> startClibs() {
+        if (clibs == null) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            Thread thread = new Thread(() -> {
+                try {
+                    installClibs();
+                    future.complete(null);
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }, "substrate-clibraries");
+            thread.start();
+            clibs = future;
+        }
+        return clibs;
+    }
+
+    /*
+     * Waits for the installation of the clibraries, started by the prefetch or by this call,
+     * and reports its failure
+     */
+    private void ensureClibs() throws IOException, InterruptedException {
+        try {
+            startClibs().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Error installing the clibraries", e.getCause());
+        }
+    }
+
     /*
      * Make sure the clibraries needed for linking are available for this particular configuration.
      * The clibraries path is available by default in GraalVM, but the directory for cross-platform libs may
      * not exist. In that case, retrieve the libs from our download site.
      */
-    private void ensureClibs() throws IOException {
+    private void installClibs() throws IOException {
         Triplet target = projectConfiguration.getTargetTriplet();
         Path clibPath = getCLibPath();
         if (FileOps.isDirectoryEmpty(clibPath)) {
-            String url = Strings.substitute(URL_CLIBS_ZIP,
-                    Map.of("osarch", target.getOsArch(),
-                            "version", target.getClibsVersion()));
-            FileOps.downloadAndUnzip(url,
+            FileOps.downloadAndUnzip(getClibsUrl(target),
                     clibPath.getParent().getParent().getParent(),
                     "clibraries.zip",
                     "clibraries",
@@ -456,13 +677,190 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
                 .collect(Collectors.toList());
     }
 
-    private String createTempDirectoryArg() throws IOException {
-        Path  tmpPath = paths.getTmpPath();
-        FileOps.rmdir(tmpPath);
-        String tmpDir = tmpPath.toFile().getAbsolutePath();
+    private String createTempDirectoryArg() {
+        String tmpDir = paths.getTmpPath().toFile().getAbsolutePath();
         return "-H:TempDirectory=" + tmpDir;
     }
 
+    /**
+     * Removes the content of the temporary directory left by a previous
+     * native-image run, except for the pathing jar and its dependencies, that
+     * have been already created for the upcoming run.
+     *
+     * @throws IOException
+     */
+    private void cleanTempDirectory() throws IOException {
+        Path tmpPath = paths.getTmpPath();
+        if (!Files.isDirectory(tmpPath)) {
+            return;
+        }
+        List<Path> stale;
+        try (Stream<Path> files = Files.list(tmpPath)) {
+            stale = files.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return !Constants.PATHING_JAR_FILE.equals(name) && !Constants.PATHING_JAR_DEPS_PATH.equals(name);
+                    })
+                    .collect(Collectors.toList());
+        }
+        for (Path path : stale) {
+            FileOps.rmdir(path);
+        }
+    }
+
+    /**
+     * Computes the fingerprint of all the inputs of the native-image compilation:
+     * the full command line, the content of every classpath entry (jars and
+     * directories), the generated configuration files and the identity of the
+     * GraalVM installation.
+     *
+     * @param cmdList the native-image command line
+     * @param substrateClasspath the location of the Substrate jar
+     * @param processedClasspath the classpath of the project
+     * @return the hex string of the fingerprint
+     * @throws IOException
+     */
+    private String getCompileFingerprint(List<String> cmdList, String substrateClasspath, String processedClasspath) throws IOException {
+        BuildFingerprint fingerprint = new BuildFingerprint();
+        fingerprint.add("cmd", normalizeArguments(cmdList, substrateClasspath));
+        fingerprint.addPath(Path.of(substrateClasspath));
+        for (String entry : new ClassPath(processedClasspath).filter(s -> !s.isEmpty())) {
+            fingerprint.addPath(Path.of(entry));
+        }
+        String suffix = projectConfiguration.getTargetTriplet().getArchOs();
+        Path gvmPath = paths.getGvmPath();
+        for (String configFile : List.of(Constants.REFLECTION_ARCH_FILE, Constants.JNI_ARCH_FILE, Constants.RESOURCE_ARCH_FILE)) {
+            fingerprint.addPath(gvmPath.resolve(Strings.substitute(configFile, Map.of("archOs", suffix))));
+        }
+        Path graalPath = projectConfiguration.getGraalPath();
+        fingerprint.addPath(graalPath.resolve("release"));
+        fingerprint.addStamp(Path.of(getNativeImagePath()));
+        return fingerprint.getDigest();
+    }
+
+    /**
+     * Returns a quick fingerprint of the compile inputs, based on the size and last
+     * modified time of the classpath, instead of its content. The parts of the
+     * native-image command that are derived from the content of the classpath
+     * (configuration files, resource bundles and pathing jar) are replaced by
+     * placeholders, and the project settings they depend on are added instead.
+     * This allows skipping the compile flow entirely when only the native code
+     * or the link settings changed.
+     */
+    private String getCompileInputsStamp(String substrateClasspath, String processedClasspath) throws IOException {
+        ProcessRunner compileRunner = createNativeImageRunner(substrateClasspath,
+                List.of("${configuration}"), List.of("${bundles}"), "${classpath}");
+        BuildFingerprint fingerprint = new BuildFingerprint();
+        fingerprint.add("cmd", compileRunner.getCmdList())
+                .add("reflection", projectConfiguration.getReflectionList())
+                .add("jni", projectConfiguration.getJniList())
+                .add("resources", projectConfiguration.getResourcesList())
+                .add("bundles", projectConfiguration.getBundlesList())
+                .add("initbuildtime", Objects.requireNonNullElse(projectConfiguration.getInitBuildTimeList(), List.of()))
+                .add("javafx", Boolean.toString(projectConfiguration.isUseJavaFX()))
+                .add("prismsw", Boolean.toString(projectConfiguration.isUsePrismSW()))
+                .add("target", projectConfiguration.getTargetTriplet().toString());
+        fingerprint.addStamp(Path.of(substrateClasspath));
+        for (String entry : new ClassPath(processedClasspath).filter(s -> !s.isEmpty())) {
+            fingerprint.addStamp(Path.of(entry));
+        }
+        fingerprint.addStamp(projectConfiguration.getGraalPath().resolve("release"));
+        fingerprint.addStamp(Path.of(getNativeImagePath()));
+        return fingerprint.getDigest();
+    }
+
+    /**
+     * Replaces the project specific locations in the native-image arguments with
+     * placeholders, so that the same project built from a different directory
+     * (like another worktree or checkout) has the same fingerprint. The content of
+     * those locations is added to the fingerprint separately.
+     *
+     * @param cmdList the native-image command line
+     * @param substrateClasspath the location of the Substrate jar
+     * @return a list with the normalized arguments
+     */
+    private List<String> normalizeArguments(List<String> cmdList, String substrateClasspath) {
+        Path gvmPath = paths.getGvmPath();
+        String absoluteGvmPath = gvmPath.toAbsolutePath().toString();
+        String gvmPathString = gvmPath.toString();
+        return cmdList.stream()
+                .map(arg -> arg.replace(substrateClasspath, "${substrate}")
+                        .replace(absoluteGvmPath, "${gvm}")
+                        .replace(gvmPathString, "${gvm}"))
+                .collect(Collectors.toList());
+    }
+
+    private BuildCache getBuildCache() {
+        if (!projectConfiguration.isUseBuildCache()) {
+            return null;
+        }
+        return new BuildCache(projectConfiguration.getBuildCachePath(), projectConfiguration.getBuildCacheMaxSize());
+    }
+
+    private RemoteBuildCache getRemoteBuildCache() {
+        String url = projectConfiguration.getRemoteBuildCacheUrl();
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+        return new RemoteBuildCache(url, projectConfiguration.isRemoteBuildCacheReadOnly(),
+                projectConfiguration.getRemoteBuildCacheTimeout());
+    }
+
+    /**
+     * Looks for the objectfile(s) of the given fingerprint in the local build cache first,
+     * and then in the remote build cache, if any. Entries found remotely are added to
+     * the local cache.
+     *
+     * @return true if the objectfile was restored, false otherwise
+     */
+    private boolean restoreFromBuildCache(BuildCache buildCache, RemoteBuildCache remoteBuildCache,
+                                          String fingerprint) throws IOException {
+        Path cachePath = paths.getTmpPath().resolve(Constants.BUILD_CACHE_PATH);
+        if (buildCache != null) {
+            try {
+                if (buildCache.restore(fingerprint, cachePath) && findObjectFile().isPresent()) {
+                    Logger.logInfo("Objectfile restored from the build cache (" + buildCache.getSummary() + ")");
+                    return true;
+                }
+            } catch (IOException e) {
+                Logger.logInfo("Build cache not available: " + e.getMessage());
+            }
+        }
+        if (remoteBuildCache != null && remoteBuildCache.fetch(fingerprint, cachePath) && findObjectFile().isPresent()) {
+            Logger.logInfo("Objectfile restored from the remote build cache");
+            storeInBuildCache(buildCache, null, fingerprint);
+            return true;
+        }
+        return false;
+    }
+
+    private void storeInBuildCache(BuildCache buildCache, RemoteBuildCache remoteBuildCache,
+                                   String fingerprint) throws IOException {
+        if (buildCache == null && remoteBuildCache == null) {
+            return;
+        }
+        List<Path> outputs = new ArrayList<>();
+        findObjectFile().ifPresent(outputs::add);
+        FileOps.findFile(paths.getGvmPath(), "llvm.o")
+                .filter(llvm -> !outputs.contains(llvm))
+                .ifPresent(outputs::add);
+        if (buildCache != null) {
+            try {
+                buildCache.store(fingerprint, outputs);
+                Logger.logDebug("Objectfile stored in the build cache (" + buildCache.getSummary() + ")");
+            } catch (IOException e) {
+                Logger.logInfo("Objectfile couldn't be stored in the build cache: " + e.getMessage());
+            }
+        }
+        if (remoteBuildCache != null && remoteBuildCache.upload(fingerprint, outputs)) {
+            Logger.logDebug("Objectfile uploaded to the remote build cache");
+        }
+    }
+
+    private Optional<Path> findObjectFile() throws IOException {
+        String objectFilename = projectConfiguration.getMainClassName().toLowerCase(Locale.ROOT) + "." + getObjectFileExtension();
+        return FileOps.findFile(paths.getGvmPath(), objectFilename);
+    }
+
     private List<String> getReflectionClassList(String suffix, boolean useJavaFX, boolean usePrismSW) {
         List<String> answer = new LinkedList<>();
         answer.add(Constants.REFLECTION_JAVA_FILE);
@@ -484,7 +882,7 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
     private List<String> getBundlesList(String processedClasspath) throws IOException, InterruptedException {
         List<String> list = new ArrayList<>(projectConfiguration.getBundlesList());
         String suffix = projectConfiguration.getTargetTriplet().getArchOs();
-        ConfigResolver configResolver = new ConfigResolver(processedClasspath);
+        ConfigResolver configResolver = getConfigResolver(processedClasspath);
         list.addAll(configResolver.getResourceBundlesList(suffix));
         return list;
     }
@@ -493,7 +891,7 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
         List<String> arguments = new ArrayList<>();
 
         String suffix = projectConfiguration.getTargetTriplet().getArchOs();
-        ConfigResolver configResolver = new ConfigResolver(processedClasspath);
+        ConfigResolver configResolver = getConfigResolver(processedClasspath);
 
         List<String> buildTimeList = getInitializeAtBuildTimeList(suffix, configResolver);
         if (!buildTimeList.isEmpty()) {
@@ -657,25 +1055,61 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
     }
 
     /**
-     * Loops over every jar on the classpath that isn't a JavaFX jar and checks
-     * if it contains native static libraries (*.a or *.lib files). If found, the
-     * libraries are extracted into a temporary folder for use in the link step.
+     * Updates the folder with the native static libraries (*.a or *.lib files) found
+     * in the jars of the classpath that aren't JavaFX jars, for use in the link step.
+     * Only new or changed libraries are extracted, see {@link NativeLibExtractor}.
      *
      * @param classPath The classpath of the project
      * @throws IOException
      */
     private void extractNativeLibs(String classPath) throws IOException {
         Path libPath = paths.getGvmPath().resolve(Constants.LIB_PATH);
-        if (Files.exists(libPath)) {
-            FileOps.deleteDirectory(libPath);
-        }
         Logger.logDebug("Extracting native libs to: " + libPath);
 
-        List<String> jars = new ClassPath(classPath).filter(s -> s.endsWith(".jar") && !s.contains("javafx-"));
-        for (String jar : jars) {
-            FileOps.extractFilesFromJar("." + getStaticLibraryFileExtension(), Path.of(jar),
-                    libPath, getTargetSpecificNativeLibsFilter());
+        // the entries are taken from the index, so the jars without native libraries are not opened
+        String extension = "." + getStaticLibraryFileExtension();
+        List<ClassPathIndex.Entry> libs = getClassPathIndex(classPath).find(name -> name.endsWith(extension)).stream()
+                .filter(e -> e.getSource().isJar() && !e.getSource().getPath().toString().contains("javafx-"))
+                .collect(Collectors.toList());
+        new NativeLibExtractor(libPath, paths.getGvmPath().resolve(Constants.NATIVE_LIBS_STATE_FILE),
+                getTargetSpecificNativeLibsFilter()).extract(libs);
+    }
+
+    /**
+     * Returns the index of the given classpath, that is created the first time it
+     * is requested in this build, and persisted under the gvm folder so that the
+     * unchanged jars are not opened again in later builds.
+     *
+     * @param classPath the classpath
+     * @return the index of the classpath
+     * @throws IOException if the classpath can't be indexed
+     */
+    synchronized ClassPathIndex getClassPathIndex(String classPath) throws IOException {
+        ClassPathIndex index = classPathIndexes.get(classPath);
+        if (index == null) {
+            index = ClassPathIndex.create(new ClassPath(classPath).getEntries(true),
+                    paths.getGvmPath().resolve(Constants.CLASSPATH_INDEX_FILE));
+            classPathIndexes.put(classPath, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the config resolver of the given classpath. A single resolver is
+     * created per classpath in this build, so that its results are reused by
+     * all the steps that need them.
+     *
+     * @param classPath the classpath
+     * @return the config resolver of the classpath
+     * @throws IOException if the classpath can't be indexed
+     */
+    synchronized ConfigResolver getConfigResolver(String classPath) throws IOException {
+        ConfigResolver configResolver = configResolvers.get(classPath);
+        if (configResolver == null) {
+            configResolver = new ConfigResolver(getClassPathIndex(classPath));
+            configResolvers.put(classPath, configResolver);
         }
+        return configResolver;
     }
 
     /**
@@ -760,6 +1194,14 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
         return true;
     }
 
+    /**
+     * Allow platforms to check the tools required for linking (e.g. their versions).
+     * This can run concurrently with native-image, so it shouldn't depend on its output.
+     */
+    void checkLinkRequirements() throws IOException, InterruptedException {
+        // empty, override by subclasses
+    }
+
     /**
      * Allow platforms to check if specific libraries (e.g. libjvm.a) are present in the specified clib path
      * @param clibPath
@@ -797,6 +1239,14 @@ public abstract class AbstractTargetConfiguration implements TargetConfiguration
         return "gcc";
     }
 
+    /**
+     * Returns whether the compiler can generate make dependency files (-MMD), to
+     * track the headers included by each source file
+     */
+    boolean supportsCompilerDependencyFiles() {
+        return true;
+    }
+
     String getNativeImageCommand() {
         return "native-image";
     }
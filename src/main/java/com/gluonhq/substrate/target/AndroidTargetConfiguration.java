@@ -29,17 +29,18 @@ package com.gluonhq.substrate.target;
 
 import com.gluonhq.substrate.Constants;
 import com.gluonhq.substrate.config.AndroidResolver;
-import com.gluonhq.substrate.model.ClassPath;
+import com.gluonhq.substrate.model.ClassPathIndex;
 import com.gluonhq.substrate.model.InternalProjectConfiguration;
 import com.gluonhq.substrate.model.ProcessPaths;
 import com.gluonhq.substrate.model.ReleaseConfiguration;
 import com.gluonhq.substrate.model.Triplet;
+import com.gluonhq.substrate.util.ElfReader;
 import com.gluonhq.substrate.util.FileOps;
 import com.gluonhq.substrate.util.Logger;
 import com.gluonhq.substrate.util.ProcessRunner;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -47,15 +48,12 @@ import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import static com.gluonhq.substrate.Constants.ANDROID_NATIVE_FOLDER;
 import static com.gluonhq.substrate.Constants.ANDROID_PROJECT_NAME;
@@ -77,7 +75,6 @@ public class AndroidTargetConfiguration extends PosixTargetConfiguration {
     private final Path ldlld;
     private final Path clang;
     private final Path clangpp;
-    private final Path objdump;
     private final String hostPlatformFolder;
 
     private final List<String> androidAdditionalSourceFiles = Arrays.asList("launcher.c", "javafx_adapter.c",
@@ -112,9 +109,6 @@ public class AndroidTargetConfiguration extends PosixTargetConfiguration {
         this.clangpp = Files.exists(clangppguess) ? clangppguess : null;
 
         projectConfiguration.setBackend(Constants.BACKEND_LIR);
-
-        Path objdumpguess = Paths.get(hostPlatformFolder, ANDROID_TRIPLET, "bin", "objdump");
-        this.objdump = Files.exists(objdumpguess) ? objdumpguess : null;
     }
 
     @Override
@@ -123,7 +117,6 @@ public class AndroidTargetConfiguration extends PosixTargetConfiguration {
         if (ndk == null) throw new IOException ("Can't find an Android NDK on your system. Set the environment property ANDROID_NDK");
         if (ldlld == null) throw new IOException ("You specified an android NDK, but it doesn't contain "+hostPlatformFolder+"/bin/ld.lld");
         if (clang == null) throw new IOException ("You specified an android NDK, but it doesn't contain "+hostPlatformFolder+"/bin/clang");
-        if (objdump == null) throw new IOException ("You specified an android NDK, but it doesn't contain "+hostPlatformFolder+"/"+ ANDROID_TRIPLET +"/bin/objdump");
 
         return super.compile();
     }
@@ -274,10 +267,11 @@ public class AndroidTargetConfiguration extends PosixTargetConfiguration {
 
     @Override
     List<String> getTargetSpecificCCompileFlags() {
+        List<String> flags = new ArrayList<>(cFlags);
         if (projectConfiguration.hasWeb()) {
-            cFlags.add("-DJAVAFX_WEB");
+            flags.add("-DJAVAFX_WEB");
         }
-        return cFlags;
+        return flags;
     }
 
     @Override
@@ -316,22 +310,7 @@ public class AndroidTargetConfiguration extends PosixTargetConfiguration {
 
     @Override
     Predicate<Path> getTargetSpecificNativeLibsFilter() {
-        return this::checkFileArchitecture;
-    }
-
-    private boolean checkFileArchitecture(Path path) {
-        try {
-            ProcessRunner pr = new ProcessRunner(objdump.toString(), "-f", path.toString());
-            pr.showSevereMessage(false);
-            int op = pr.runProcess("objdump");
-            if (op == 0) {
-                return pr.getResponses().stream().anyMatch(line -> line.contains("architecture: " + projectConfiguration.getTargetTriplet().getArch()));
-            }
-        } catch (IOException | InterruptedException e) {
-            Logger.logSevere("Unrecoverable error checking file " + path + ": " + e);
-        }
-        Logger.logDebug("Ignore file " + path + " since objdump failed on it");
-        return false;
+        return ElfReader.architectureFilter(projectConfiguration.getTargetTriplet().getArch());
     }
 
     @Override
@@ -401,22 +380,15 @@ public class AndroidTargetConfiguration extends PosixTargetConfiguration {
         }
 
         Logger.logDebug("Scanning for dalvik classes");
-        final List<File> jars = new ClassPath(projectConfiguration.getClasspath()).getJars(true);
         String prefix = META_INF_SUBSTRATE_DALVIK + DALVIK_PRECOMPILED_CLASSES;
-        for (File jar : jars) {
-            try (ZipFile zip = new ZipFile(jar)) {
-                Logger.logDebug("Scanning " + jar);
-                for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
-                    ZipEntry zipEntry = e.nextElement();
-                    String name = zipEntry.getName();
-                    if (!zipEntry.isDirectory() && name.startsWith(prefix)) {
-                        Path classPath = targetFolder.resolve(name.substring(prefix.length()));
-                        Logger.logDebug("Adding classes from " + zip.getName() + " :: " + name + " into " + classPath);
-                        FileOps.copyStream(zip.getInputStream(zipEntry), classPath);
-                    }
-                }
+        ClassPathIndex index = getClassPathIndex(projectConfiguration.getClasspath());
+        for (ClassPathIndex.Entry entry : index.find(name -> name.startsWith(prefix))) {
+            Path classPath = targetFolder.resolve(entry.getName().substring(prefix.length()));
+            Logger.logDebug("Adding classes from " + entry + " into " + classPath);
+            try (InputStream is = entry.openStream()) {
+                FileOps.copyStream(is, classPath);
             } catch (IOException e) {
-                throw new IOException("Error processing dalvik classes from jar: " + jar + ": " + e.getMessage() + ", " + Arrays.toString(e.getSuppressed()));
+                throw new IOException("Error processing dalvik classes from jar: " + entry.getSource() + ": " + e.getMessage() + ", " + Arrays.toString(e.getSuppressed()));
             }
         }
         ProcessRunner createJar = new ProcessRunner(
@@ -628,13 +600,13 @@ public class AndroidTargetConfiguration extends PosixTargetConfiguration {
     private List<String> requiredPermissions() {
         final AndroidResolver androidResolver;
         try {
-            androidResolver = new AndroidResolver(projectConfiguration.getClasspath());
+            androidResolver = new AndroidResolver(getClassPathIndex(projectConfiguration.getClasspath()));
             final Set<String> androidPermissions = androidResolver.getAndroidPermissions();
             return androidPermissions.stream()
                     .map(permission -> "<uses-permission android:name=\"" + permission + "\"/>")
                     .sorted()
                     .collect(Collectors.toList());
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
         return Collections.emptyList();
@@ -647,12 +619,12 @@ public class AndroidTargetConfiguration extends PosixTargetConfiguration {
     private List<String> requiredDependencies() {
         final AndroidResolver androidResolver;
         try {
-            androidResolver = new AndroidResolver(projectConfiguration.getClasspath());
+            androidResolver = new AndroidResolver(getClassPathIndex(projectConfiguration.getClasspath()));
             final Set<String> androidDependencies = androidResolver.getAndroidDependencies();
             return androidDependencies.stream()
                     .sorted()
                     .collect(Collectors.toList());
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
         return Collections.emptyList();
@@ -664,9 +636,14 @@ public class AndroidTargetConfiguration extends PosixTargetConfiguration {
      */
     private void copyAarLibraries() throws IOException, InterruptedException {
         Path libPath = getAndroidProjectPath().resolve("libs");
-        final List<File> jars = new ClassPath(projectConfiguration.getClasspath()).getJars(true);
-        for (File jar : jars) {
-            FileOps.extractFilesFromJar(".aar", jar.toPath(), libPath, null);
+        ClassPathIndex index = getClassPathIndex(projectConfiguration.getClasspath());
+        for (ClassPathIndex.Entry entry : index.find(name -> name.endsWith(".aar"))) {
+            Path aarPath = libPath.resolve(Path.of(entry.getName()).getFileName().toString());
+            if (!Files.exists(aarPath)) {
+                try (InputStream is = entry.openStream()) {
+                    FileOps.copyStream(is, aarPath);
+                }
+            }
         }
     }
 }
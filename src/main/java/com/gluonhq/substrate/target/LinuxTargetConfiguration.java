@@ -30,24 +30,29 @@ package com.gluonhq.substrate.target;
 import com.gluonhq.substrate.Constants;
 import com.gluonhq.substrate.model.InternalProjectConfiguration;
 import com.gluonhq.substrate.model.ProcessPaths;
+import com.gluonhq.substrate.util.ElfReader;
 import com.gluonhq.substrate.util.FileOps;
 import com.gluonhq.substrate.util.Logger;
+import com.gluonhq.substrate.util.ProbeCache;
 import com.gluonhq.substrate.util.ProcessRunner;
 import com.gluonhq.substrate.util.Version;
 import com.gluonhq.substrate.util.VersionParser;
 import com.gluonhq.substrate.util.linux.LinuxLinkerFlags;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -121,10 +126,9 @@ public class LinuxTargetConfiguration extends PosixTargetConfiguration {
     }
 
     @Override
-    public boolean link() throws IOException, InterruptedException {
+    void checkLinkRequirements() throws IOException, InterruptedException {
         checkCompiler();
         checkLinker();
-        return super.link();
     }
 
     @Override
@@ -358,7 +362,7 @@ public class LinuxTargetConfiguration extends PosixTargetConfiguration {
     }
 
     private void validateVersion(String[] processCommand, String processName, Version minimalVersion) throws InterruptedException, IOException {
-        String versionLine = getFirstLineFromProcess(processCommand);
+        String versionLine = getVersionLine(processCommand);
         if (versionLine == null) {
             System.err.println(
                     "WARNING: we were unable to parse the version of your " + processName + ".\n"
@@ -379,6 +383,32 @@ public class LinuxTargetConfiguration extends PosixTargetConfiguration {
         }
     }
 
+    /**
+     * Returns the first line of the output of the given version command. The result
+     * is cached, as long as the tool found on the PATH doesn't change.
+     */
+    private String getVersionLine(String... command) throws InterruptedException, IOException {
+        Optional<Path> tool = findOnPath(command[0]);
+        if (tool.isEmpty()) {
+            return getFirstLineFromProcess(command);
+        }
+        String line = ProbeCache.get(String.join(" ", command), List.of(tool.get()),
+                () -> Objects.requireNonNullElse(getFirstLineFromProcess(command), ""));
+        return line.isEmpty() ? null : line;
+    }
+
+    private static Optional<Path> findOnPath(String tool) {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return Optional.empty();
+        }
+        return Stream.of(path.split(File.pathSeparator))
+                .filter(dir -> !dir.isEmpty())
+                .map(dir -> Paths.get(dir, tool))
+                .filter(Files::isExecutable)
+                .findFirst();
+    }
+
     private String getFirstLineFromProcess(String... command) throws InterruptedException, IOException {
         ProcessBuilder compiler = new ProcessBuilder(command);
         compiler.redirectErrorStream(true);
@@ -410,21 +440,6 @@ public class LinuxTargetConfiguration extends PosixTargetConfiguration {
 
     @Override
     Predicate<Path> getTargetSpecificNativeLibsFilter() {
-        return this::checkFileArchitecture;
-    }
-
-    private boolean checkFileArchitecture(Path path) {
-        try {
-            ProcessRunner pr = new ProcessRunner("objdump", "-f", path.toFile().getAbsolutePath());
-            pr.showSevereMessage(false);
-            int op = pr.runProcess("objdump");
-            if (op == 0) {
-                return true;
-            }
-        } catch (IOException | InterruptedException e) {
-            Logger.logSevere("Unrecoverable error checking file " + path + ": " + e);
-        }
-        Logger.logDebug("Ignore file " + path + " since objdump failed on it");
-        return false;
+        return ElfReader.architectureFilter(projectConfiguration.getTargetTriplet().getArch());
     }
 }
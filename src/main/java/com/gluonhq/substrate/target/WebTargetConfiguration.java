@@ -29,6 +29,7 @@ package com.gluonhq.substrate.target;
 
 import com.gluonhq.substrate.Constants;
 import com.gluonhq.substrate.model.ClassPath;
+import com.gluonhq.substrate.model.ClassPathIndex;
 import com.gluonhq.substrate.model.InternalProjectConfiguration;
 import com.gluonhq.substrate.model.ProcessPaths;
 import com.gluonhq.substrate.util.FileOps;
@@ -39,17 +40,15 @@ import org.apidesign.vm4brwsr.ObfuscationLevel;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import static com.gluonhq.substrate.Constants.META_INF_SUBSTRATE_WEB;
 import static com.gluonhq.substrate.Constants.WEB_INDEX_HTML;
@@ -79,7 +78,8 @@ public class WebTargetConfiguration extends AbstractTargetConfiguration {
 
     @Override
     public boolean compile() throws IOException, InterruptedException {
-        final List<File> jars = new ClassPath(projectConfiguration.getClasspath()).getJars(true);
+        final ClassPath classPath = new ClassPath(projectConfiguration.getClasspath());
+        final List<File> jars = classPath.getJars(false);
 
         Path webPath = paths.getGvmPath().resolve("web");
         if (!Files.exists(webPath)) {
@@ -90,12 +90,9 @@ public class WebTargetConfiguration extends AbstractTargetConfiguration {
             Files.createDirectory(libPath);
         }
         File mainJar = webPath.resolve(projectConfiguration.getAppName().concat(".jar")).toFile();
-        File classes = jars.stream()
-                .filter(f -> f.toString().endsWith("classes.jar"))
-                .findFirst()
-                .orElseThrow(() -> new IOException("Classes not found"));
-        FileOps.copyFile(classes.toPath(), mainJar.toPath());
-        jars.remove(classes);
+        if (classPath.createClassesJar(mainJar.toPath()) == null) {
+            throw new IOException("Classes not found");
+        }
 
         File mainJavaScript = webPath.resolve(projectConfiguration.getAppName().concat(".js")).toFile();
 
@@ -104,20 +101,17 @@ public class WebTargetConfiguration extends AbstractTargetConfiguration {
         if (!Files.exists(tmpPath)) {
             Files.createDirectory(tmpPath);
         }
+        ClassPathIndex index = getClassPathIndex(projectConfiguration.getClasspath());
         for (String s : webFiles) {
-            for (File jar : jars) {
-                try (ZipFile zip = new ZipFile(jar)) {
-                    Logger.logDebug("Scanning " + jar);
-                    for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
-                        ZipEntry zipEntry = e.nextElement();
-                        String name = zipEntry.getName();
-                        if (!zipEntry.isDirectory() && name.equals(META_INF_SUBSTRATE_WEB + s)) {
-                            Logger.logDebug("Adding file from " + zip.getName() + " :: " + name + " into " + tmpPath.resolve(s));
-                            FileOps.copyStream(zip.getInputStream(zipEntry), tmpPath.resolve(s));
-                        }
-                    }
+            for (ClassPathIndex.Entry entry : index.find((META_INF_SUBSTRATE_WEB + s)::equals)) {
+                if (!entry.getSource().isJar()) {
+                    continue;
+                }
+                Logger.logDebug("Adding file from " + entry + " into " + tmpPath.resolve(s));
+                try (InputStream is = entry.openStream()) {
+                    FileOps.copyStream(is, tmpPath.resolve(s));
                 } catch (IOException e) {
-                    throw new IOException("Error processing web files from jar: " + jar + ": " + e.getMessage() + ", " + Arrays.toString(e.getSuppressed()));
+                    throw new IOException("Error processing web files from jar: " + entry.getSource() + ": " + e.getMessage() + ", " + Arrays.toString(e.getSuppressed()));
                 }
             }
         }
@@ -104,6 +104,11 @@ public class WindowsTargetConfiguration extends AbstractTargetConfiguration {
         return "link";
     }
 
+    @Override
+    boolean supportsCompilerDependencyFiles() {
+        return false;
+    }
+
     @Override
     String getNativeImageCommand() {
         return "native-image.cmd";
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import com.gluonhq.substrate.Constants;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Resolves the location of the artifacts that Substrate downloads: static SDKs,
+ * clibraries, sysroots and Android tools.
+ *
+ * Every artifact is identified by its upstream URL, and can be stored in a mirror
+ * under the path "host/path/of/the/url". An artifact is taken from:
+ * <ul>
+ *     <li>the repository set with the system property {@value #REPOSITORY_PROPERTY}, if any,
+ *     either a remote base URL or a local mirror directory (as a path or a file: URL)</li>
+ *     <li>otherwise the local store under the user's Substrate folder, when it has been
+ *     populated with {@link #fetch(String)}</li>
+ *     <li>otherwise its upstream URL</li>
+ * </ul>
+ * With the system property {@value #OFFLINE_PROPERTY} set to true, artifacts that are
+ * not available locally fail right away, instead of waiting for network timeouts.
+ */
+public final class ArtifactRepository {
+
+    /**
+     * Name of the system property with the base URL or directory of an artifact mirror
+     */
+    public static final String REPOSITORY_PROPERTY = "artifactrepository";
+
+    /**
+     * Name of the system property that, when true, disables all network downloads
+     */
+    public static final String OFFLINE_PROPERTY = "offline";
+
+    /**
+     * The local store of artifacts, populated by {@link #fetch(String)}
+     */
+    public static final Path LOCAL_STORE = Constants.USER_SUBSTRATE_PATH.resolve("artifacts");
+
+    private ArtifactRepository() {}
+
+    /**
+     * Returns the URL where the artifact with the given upstream URL is taken from
+     *
+     * @param url the upstream URL of the artifact
+     * @return the URL of the artifact in the repository, the local store or upstream
+     * @throws IOException if the URL is not valid, or the artifact is not available
+     * locally in offline mode
+     */
+    public static URL resolve(String url) throws IOException {
+        return resolve(url, LOCAL_STORE);
+    }
+
+    static URL resolve(String url, Path localStore) throws IOException {
+        URL upstream = new URL(Objects.requireNonNull(url));
+        String mirrorPath = getMirrorPath(upstream);
+        URL resolved;
+        String repository = System.getProperty(REPOSITORY_PROPERTY);
+        if (repository != null && !repository.isBlank()) {
+            resolved = new URL(getBaseUrl(repository) + mirrorPath);
+        } else if (localStore != null && Files.isRegularFile(localStore.resolve(mirrorPath))) {
+            resolved = localStore.resolve(mirrorPath).toUri().toURL();
+        } else {
+            resolved = upstream;
+        }
+        if (!"file".equals(resolved.getProtocol()) && isOffline()) {
+            throw new IOException("Error: " + url + " is not available in offline mode. Use -D" + REPOSITORY_PROPERTY +
+                    "=/path/to/mirror, or prefetch it before going offline");
+        }
+        if (!upstream.equals(resolved)) {
+            Logger.logDebug("Resolved " + url + " to " + resolved);
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns the path of an artifact in a mirror
+     *
+     * @param url the upstream URL of the artifact
+     * @return the relative path, starting with the host of the URL
+     */
+    public static String getMirrorPath(URL url) {
+        String path = url.getPath();
+        return url.getHost() + (path.startsWith("/") ? path : "/" + path);
+    }
+
+    /**
+     * @return true if the network can't be used to download artifacts
+     */
+    public static boolean isOffline() {
+        return Boolean.getBoolean(OFFLINE_PROPERTY);
+    }
+
+    /**
+     * Fails if the network can't be used, for steps that download from the network
+     * by other means, like the Android sdkmanager
+     *
+     * @param what a description of what needs the network
+     * @throws IOException in offline mode
+     */
+    public static void checkOnline(String what) throws IOException {
+        if (isOffline()) {
+            throw new IOException("Error: " + what + " can't be downloaded in offline mode");
+        }
+    }
+
+    /**
+     * Downloads an artifact into the local store, unless it is already there, so
+     * later builds take it from there
+     *
+     * @param url the upstream URL of the artifact
+     * @return the path of the artifact in the local store
+     * @throws IOException if the artifact can't be downloaded
+     */
+    public static Path fetch(String url) throws IOException {
+        return fetch(url, LOCAL_STORE);
+    }
+
+    static Path fetch(String url, Path localStore) throws IOException {
+        Path target = localStore.resolve(getMirrorPath(new URL(url)));
+        if (Files.isRegularFile(target)) {
+            Logger.logDebug(url + " is already in " + localStore);
+            return target;
+        }
+        Logger.logInfo("Fetching " + url);
+        new Downloader().download(resolve(url, null), target);
+        return target;
+    }
+
+    private static String getBaseUrl(String repository) {
+        String base = repository.contains("://") || repository.startsWith("file:") ?
+                repository : Path.of(repository).toAbsolutePath().toUri().toString();
+        return base.endsWith("/") ? base : base + "/";
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Local content-addressable store for build artifacts, like the objectfiles
+ * created by native-image.
+ *
+ * Each entry is a directory named after its key (typically a
+ * {@link BuildFingerprint} of the inputs that produced the artifacts), that
+ * contains a copy of the artifacts. Entries are inserted atomically under a file
+ * lock, so that several builds on the same host can share the cache. When the
+ * total size of the cache exceeds the maximum size, the least recently used
+ * entries are evicted.
+ *
+ * Hit and miss counters are persisted with the cache.
+ */
+public class BuildCache {
+
+    private static final String OBJECTS_DIR = "objects";
+    private static final String STAGING_DIR = "staging";
+    private static final String LOCK_FILE = ".lock";
+    private static final String STATS_FILE = "stats.properties";
+
+    // FileLock is held on behalf of the whole JVM, so threads need their own lock
+    private static final ReentrantLock JVM_LOCK = new ReentrantLock();
+
+    private final Path root;
+    private final long maxSize;
+
+    /**
+     * Creates a build cache
+     * @param root the directory of the cache, created if it doesn't exist
+     * @param maxSize the maximum size in bytes of all the cached artifacts
+     */
+    public BuildCache(Path root, long maxSize) {
+        this.root = root;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Copies the artifacts cached for the given key into the target directory.
+     *
+     * @param key the key of the entry
+     * @param targetDir the directory where the artifacts are copied
+     * @return true if the entry was found and restored, false otherwise
+     * @throws IOException if the cache can't be accessed
+     */
+    public boolean restore(String key, Path targetDir) throws IOException {
+        return withLock(() -> {
+            Path entry = getEntryPath(key);
+            if (!Files.isDirectory(entry)) {
+                updateStats("misses");
+                return false;
+            }
+            Files.createDirectories(targetDir);
+            try (Stream<Path> files = Files.list(entry)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    Files.copy(file, targetDir.resolve(file.getFileName().toString()), REPLACE_EXISTING);
+                }
+            }
+            // the modification time of the entry tracks its last use
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            updateStats("hits");
+            return true;
+        });
+    }
+
+    /**
+     * Stores a copy of the given artifacts under the given key. If an entry
+     * with the same key exists already, it is kept as is.
+     * After the insertion, least recently used entries are evicted if the cache
+     * exceeds its maximum size.
+     *
+     * @param key the key of the entry
+     * @param files the artifacts to store, with unique file names
+     * @throws IOException if the artifacts can't be stored
+     */
+    public void store(String key, List<Path> files) throws IOException {
+        // copying can take a while, so it is done out of the lock
+        Path staging = root.resolve(STAGING_DIR).resolve(key + "-" + UUID.randomUUID());
+        Files.createDirectories(staging);
+        try {
+            for (Path file : files) {
+                Files.copy(file, staging.resolve(file.getFileName().toString()), REPLACE_EXISTING);
+            }
+            withLock(() -> {
+                Path entry = getEntryPath(key);
+                if (!Files.exists(entry)) {
+                    Files.createDirectories(entry.getParent());
+                    try {
+                        Files.move(staging, entry, ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(staging, entry);
+                    }
+                    updateStats("stores");
+                    evict();
+                }
+                return null;
+            });
+        } finally {
+            FileOps.rmdir(staging);
+        }
+    }
+
+    /**
+     * Returns the persisted statistics of the cache: number of hits, misses,
+     * stores and evictions.
+     *
+     * @return a properties object with the statistics
+     * @throws IOException if the statistics can't be read
+     */
+    public Properties getStatistics() throws IOException {
+        return withLock(this::readStats);
+    }
+
+    /**
+     * Returns a one line summary of the cache statistics, for logging purposes
+     * @return a string with the statistics
+     */
+    public String getSummary() {
+        try {
+            Properties stats = getStatistics();
+            return "hits: " + stats.getProperty("hits", "0") +
+                    ", misses: " + stats.getProperty("misses", "0") +
+                    ", stores: " + stats.getProperty("stores", "0") +
+                    ", evictions: " + stats.getProperty("evictions", "0");
+        } catch (IOException e) {
+            return "no statistics available";
+        }
+    }
+
+    private Path getEntryPath(String key) {
+        if (key == null || key.length() < 3 || !key.matches("[0-9a-zA-Z]+")) {
+            throw new IllegalArgumentException("Invalid cache key: " + key);
+        }
+        return root.resolve(OBJECTS_DIR).resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private void evict() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (Stream<Path> buckets = Files.list(root.resolve(OBJECTS_DIR))) {
+            for (Path bucket : buckets.collect(Collectors.toList())) {
+                try (Stream<Path> list = Files.list(bucket)) {
+                    for (Path path : list.collect(Collectors.toList())) {
+                        entries.add(new Entry(path, getSize(path), Files.getLastModifiedTime(path).toMillis()));
+                    }
+                }
+            }
+        }
+        long total = entries.stream().mapToLong(e -> e.size).sum();
+        if (total <= maxSize) {
+            return;
+        }
+        entries.sort(Comparator.comparingLong(e -> e.lastUsed));
+        int evicted = 0;
+        for (Entry entry : entries) {
+            if (total <= maxSize) {
+                break;
+            }
+            Logger.logDebug("Evicting build cache entry " + entry.path.getFileName());
+            FileOps.rmdir(entry.path);
+            total -= entry.size;
+            evicted++;
+        }
+        updateStats("evictions", evicted);
+    }
+
+    private static long getSize(Path entry) throws IOException {
+        try (Stream<Path> files = Files.walk(entry)) {
+            return files.filter(Files::isRegularFile)
+                    .mapToLong(p -> p.toFile().length())
+                    .sum();
+        }
+    }
+
+    /**
+     * Reads the statistics. They are informative only, so unreadable statistics
+     * are ignored, and start again from zero.
+     */
+    private Properties readStats() {
+        Properties stats = new Properties();
+        Path statsFile = root.resolve(STATS_FILE);
+        if (Files.exists(statsFile)) {
+            try (InputStream is = Files.newInputStream(statsFile)) {
+                stats.load(is);
+            } catch (IOException | IllegalArgumentException e) {
+                Logger.logDebug("Ignoring unreadable build cache statistics " + statsFile + ": " + e.getMessage());
+                return new Properties();
+            }
+        }
+        return stats;
+    }
+
+    private void updateStats(String counter) throws IOException {
+        updateStats(counter, 1);
+    }
+
+    private void updateStats(String counter, long increment) throws IOException {
+        Properties stats = readStats();
+        long value;
+        try {
+            value = Long.parseLong(stats.getProperty(counter, "0")) + increment;
+        } catch (NumberFormatException e) {
+            value = increment;
+        }
+        stats.setProperty(counter, Long.toString(value));
+
+        // written to a temporary file and moved, so a crash never leaves partial statistics
+        Path statsFile = root.resolve(STATS_FILE);
+        Path tmp = Files.createTempFile(root, STATS_FILE, ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(tmp)) {
+                stats.store(os, "Substrate build cache statistics");
+            }
+            try {
+                Files.move(tmp, statsFile, REPLACE_EXISTING, ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, statsFile, REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private <T> T withLock(LockedAction<T> action) throws IOException {
+        Files.createDirectories(root);
+        JVM_LOCK.lock();
+        try (FileChannel channel = FileChannel.open(root.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                return action.run();
+            } finally {
+                lock.release();
+            }
+        } finally {
+            JVM_LOCK.unlock();
+        }
+    }
+
+    private interface LockedAction<T> {
+        T run() throws IOException;
+    }
+
+    private static class Entry {
+        private final Path path;
+        private final long size;
+        private final long lastUsed;
+
+        Entry(Path path, long size, long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Accumulates a SHA-256 digest over the inputs of a build step: strings
+ * (like command line arguments), file contents and directory trees.
+ *
+ * The resulting fingerprint can be stored after a successful run of the step,
+ * and compared with the one of the next run, to find out if the step can be
+ * skipped because none of its inputs changed.
+ */
+public class BuildFingerprint {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MessageDigest digest;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    public BuildFingerprint() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Adds a named string value to the fingerprint
+     * @param key the name of the value
+     * @param value the value, can be null
+     * @return this fingerprint
+     */
+    public BuildFingerprint add(String key, String value) {
+        update(key);
+        update(value == null ? "<null>" : value);
+        return this;
+    }
+
+    /**
+     * Adds a named list of string values to the fingerprint, in order
+     * @param key the name of the list
+     * @param values the list of values
+     * @return this fingerprint
+     */
+    public BuildFingerprint add(String key, List<String> values) {
+        update(key);
+        update(Integer.toString(values.size()));
+        values.forEach(this::update);
+        return this;
+    }
+
+    /**
+     * Adds the content of a file to the fingerprint. If the path is a directory,
+     * the relative names and contents of all the files it contains are added, in
+     * a deterministic order. A missing path is recorded as such.
+     * The location of the path itself is not part of the fingerprint, so the same
+     * content found in a different project directory results in the same fingerprint.
+     * @param path the file or directory
+     * @return this fingerprint
+     * @throws IOException if the content of a file can't be read
+     */
+    public BuildFingerprint addPath(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(path)) {
+                files = walk.filter(Files::isRegularFile)
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            update(Integer.toString(files.size()));
+            for (Path file : files) {
+                update(path.relativize(file).toString().replace('\\', '/'));
+                updateContent(file);
+            }
+        } else if (Files.isRegularFile(path)) {
+            updateContent(path);
+        } else {
+            update("<missing>");
+        }
+        return this;
+    }
+
+    /**
+     * Adds the size and the last modified time of a file to the fingerprint,
+     * without reading its content. This is meant for large files, like tool
+     * binaries, that are only replaced as a whole, or for quick up to date checks.
+     * If the path is a directory, the stamps of all the files it contains are added.
+     * @param path the file or directory
+     * @return this fingerprint
+     * @throws IOException if the attributes of the file can't be read
+     */
+    public BuildFingerprint addStamp(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(path)) {
+                files = walk.filter(Files::isRegularFile)
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            update(Integer.toString(files.size()));
+            for (Path file : files) {
+                updateStamp(file);
+            }
+        } else {
+            updateStamp(path);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the fingerprint of all the inputs added so far, as an hex string.
+     * The fingerprint can't be modified afterwards.
+     * @return the hex string of the SHA-256 digest
+     */
+    public String getDigest() {
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Checks if the fingerprint stored in the given file matches the provided one
+     * @param file the file with a previously stored fingerprint
+     * @param fingerprint the fingerprint to compare
+     * @return true if the file exists and contains the same fingerprint, false otherwise
+     */
+    public static boolean matches(Path file, String fingerprint) {
+        if (fingerprint == null || !Files.isRegularFile(file)) {
+            return false;
+        }
+        try {
+            return fingerprint.equals(Files.readString(file, StandardCharsets.UTF_8).trim());
+        } catch (IOException e) {
+            Logger.logDebug("Error reading fingerprint from " + file + ": " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Stores the fingerprint in the given file
+     * @param file the file that will contain the fingerprint
+     * @param fingerprint the fingerprint
+     * @throws IOException if the file can't be written
+     */
+    public static void write(Path file, String fingerprint) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, fingerprint + "\n", StandardCharsets.UTF_8);
+    }
+
+    private void updateStamp(Path path) throws IOException {
+        update(path.toAbsolutePath().normalize().toString());
+        if (Files.exists(path)) {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            update(attrs.size() + ":" + attrs.lastModifiedTime().toMillis());
+        } else {
+            update("<missing>");
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+              .append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private void update(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        // length prefix, so that ("ab", "c") and ("a", "bc") don't collide
+        updateLength(bytes.length);
+        digest.update(bytes);
+    }
+
+    private void updateContent(Path file) throws IOException {
+        updateLength(Files.size(file));
+        try (InputStream is = Files.newInputStream(file)) {
+            int n;
+            while ((n = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+    }
+
+    private void updateLength(long length) {
+        for (int i = 7; i >= 0; i--) {
+            digest.update((byte) (length >>> (i * 8)));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Keeps the checksums of files together with their size, last modified time
+ * and file key (the inode on Unix hosts), so that the checksum of a file is only
+ * computed again when any of those change.
+ *
+ * The records are persisted in a small properties file, usually next to the
+ * file with the expected checksums they are verified against.
+ */
+public final class ChecksumCache {
+
+    private ChecksumCache() {}
+
+    /**
+     * Returns the checksums of the given files, as computed by
+     * {@link FileOps#calculateCheckSum(java.io.File)}, by file name.
+     * Files that haven't changed since they were recorded are not read,
+     * and the rest are checksummed in parallel. Files that don't exist are
+     * not included in the result.
+     *
+     * @param recordFile the file where the records are persisted
+     * @param files the files to checksum
+     * @return a map with the file names and their checksums
+     */
+    public static Map<String, String> getChecksums(Path recordFile, List<Path> files) {
+        return getChecksums(recordFile, files, file -> FileOps.calculateCheckSum(file.toFile()));
+    }
+
+    /**
+     * Returns the checksums of the given files, as computed by the given function,
+     * by file name. Files that haven't changed since they were recorded are not read,
+     * and the rest are checksummed in parallel. Files that don't exist are not
+     * included in the result.
+     *
+     * @param recordFile the file where the records are persisted, only used with
+     *                   the same checksum function
+     * @param files the files to checksum
+     * @param checksumFunction the function that computes the checksum of a file,
+     *                         returning an empty string if it can't be computed
+     * @return a map with the file names and their checksums
+     */
+    public static Map<String, String> getChecksums(Path recordFile, List<Path> files, Function<Path, String> checksumFunction) {
+        Objects.requireNonNull(recordFile);
+        Objects.requireNonNull(checksumFunction);
+        Objects.requireNonNull(files);
+        Properties records = read(recordFile);
+        Properties updated = new Properties();
+        Map<String, String> checksums = new ConcurrentHashMap<>();
+
+        files.parallelStream().forEach(file -> {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                return;
+            }
+            String key = file.toAbsolutePath().toString();
+            String stat = getStat(attributes);
+            String record = records.getProperty(key);
+            String checksum;
+            if (record != null && record.startsWith(stat + " ")) {
+                checksum = record.substring(stat.length() + 1);
+            } else {
+                Logger.logDebug("Computing checksum of " + file);
+                checksum = checksumFunction.apply(file);
+                if (!checksum.isEmpty()) {
+                    updated.setProperty(key, stat + " " + checksum);
+                }
+            }
+            checksums.put(file.getFileName().toString(), checksum);
+        });
+
+        if (!updated.isEmpty()) {
+            records.putAll(updated);
+            write(recordFile, records);
+        }
+        return new HashMap<>(checksums);
+    }
+
+    private static String getStat(BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        return attributes.size() + " " + attributes.lastModifiedTime().toMillis() + " " +
+                (fileKey == null ? "-" : fileKey.toString().replace(' ', '_'));
+    }
+
+    private static Properties read(Path recordFile) {
+        Properties properties = new Properties();
+        if (Files.exists(recordFile)) {
+            try (InputStream is = Files.newInputStream(recordFile)) {
+                properties.load(is);
+            } catch (IOException | IllegalArgumentException e) {
+                Logger.logDebug("Error reading checksum records " + recordFile + ": " + e.getMessage());
+                properties.clear();
+            }
+        }
+        return properties;
+    }
+
+    private static void write(Path recordFile, Properties records) {
+        Path tmpFile = null;
+        try {
+            Path parent = recordFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            tmpFile = Files.createTempFile(parent, recordFile.getFileName().toString(), ".tmp");
+            try (OutputStream os = Files.newOutputStream(tmpFile)) {
+                records.store(os, "Substrate checksum records");
+            }
+            Files.move(tmpFile, recordFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the records are only an optimization, checksums will be computed again
+            Logger.logDebug("Error writing checksum records " + recordFile + ": " + e.getMessage());
+            if (tmpFile != null) {
+                try {
+                    Files.deleteIfExists(tmpFile);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
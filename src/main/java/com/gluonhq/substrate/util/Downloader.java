@@ -0,0 +1,755 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Downloads files over HTTP(S), or any other URL, into a local path.
+ *
+ * When the server supports range requests, large files are split in segments that
+ * are downloaded over parallel connections, and the segments that were completed are
+ * recorded next to the partial file, so an interrupted download can be resumed
+ * later on. Every request is retried a bounded number of times, with exponential
+ * backoff. The file is downloaded to a partial file, that is only moved to the
+ * target path once it has the expected size and it passes the given verification.
+ * Concurrent downloads of the same file, from this or other processes, are serialized
+ * with a file lock next to it.
+ */
+public final class Downloader {
+
+    /**
+     * Verifies a downloaded file before it is published to its final path
+     */
+    @FunctionalInterface
+    public interface Verifier {
+        /**
+         * @param file the downloaded file
+         * @throws IOException if the file is not valid
+         */
+        void verify(Path file) throws IOException;
+    }
+
+    static final String PART_EXTENSION = ".part";
+    static final String STATE_EXTENSION = ".state";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CONNECT_TIMEOUT = 30_000;
+    private static final int READ_TIMEOUT = 60_000;
+
+    private int maxRetries = 5;
+    private Duration retryDelay = Duration.ofSeconds(1);
+    private int parallelism = 4;
+    private long segmentSize = 8 * 1024 * 1024;
+    private boolean showProgress = true;
+
+    /**
+     * Sets how many times failed requests are retried. The retries are shared
+     * by all the requests of a download, including its segments. Defaults to 5.
+     * @param maxRetries the maximum number of retries of each download
+     * @return this downloader
+     */
+    public Downloader setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Invalid number of retries: " + maxRetries);
+        }
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Sets the delay before the first retry, that is doubled after every
+     * failed attempt. Defaults to one second.
+     * @param retryDelay the delay before the first retry
+     * @return this downloader
+     */
+    public Downloader setRetryDelay(Duration retryDelay) {
+        this.retryDelay = Objects.requireNonNull(retryDelay);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of parallel connections per file. Defaults to 4.
+     * @param parallelism the maximum number of parallel connections
+     * @return this downloader
+     */
+    public Downloader setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the size of the segments that a file is split in. Files smaller
+     * than two segments are downloaded over a single connection. Defaults to 8 MB.
+     * @param segmentSize the size of the segments in bytes
+     * @return this downloader
+     */
+    public Downloader setSegmentSize(long segmentSize) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * Sets whether the progress of the download is printed. Defaults to true.
+     * @param showProgress true to print the progress
+     * @return this downloader
+     */
+    public Downloader setShowProgress(boolean showProgress) {
+        this.showProgress = showProgress;
+        return this;
+    }
+
+    /**
+     * Downloads a file
+     * @param url the URL of the file
+     * @param target the path of the downloaded file
+     * @throws IOException if the file can't be downloaded
+     */
+    public void download(URL url, Path target) throws IOException {
+        download(url, target, null);
+    }
+
+    /**
+     * Downloads a file, and verifies it before it is moved to the target path
+     * @param url the URL of the file
+     * @param target the path of the downloaded file
+     * @param verifier the verification of the downloaded file, can be null
+     * @throws IOException if the file can't be downloaded or it is not valid
+     */
+    public void download(URL url, Path target, Verifier verifier) throws IOException {
+        Objects.requireNonNull(url);
+        Objects.requireNonNull(target);
+        // concurrent downloads of the same file wait for the first one, and reuse it
+        FileTime before = lastModified(target);
+        InstallLock.install(target, () -> !Objects.equals(before, lastModified(target)),
+                () -> downloadLocked(url, target, verifier));
+    }
+
+    private static FileTime lastModified(Path file) throws IOException {
+        return Files.exists(file) ? Files.getLastModifiedTime(file) : null;
+    }
+
+    private void downloadLocked(URL url, Path target, Verifier verifier) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path part = parent.resolve(target.getFileName() + PART_EXTENSION);
+        Path state = parent.resolve(target.getFileName() + PART_EXTENSION + STATE_EXTENSION);
+        Progress progress = new Progress(showProgress);
+
+        AtomicInteger retries = new AtomicInteger(maxRetries);
+        long size;
+        try {
+            size = retry(url, retries, () -> downloadToPart(url, part, state, progress, retries));
+            progress.done();
+        } catch (ChangedException e) {
+            // the segments downloaded so far belong to the old file, and its state doesn't match the new one
+            progress.done();
+            Logger.logInfo(e.getMessage() + ", downloading it again");
+            Progress restart = new Progress(showProgress);
+            size = retry(url, retries, () -> downloadToPart(url, part, state, restart, retries));
+            restart.done();
+        }
+
+        if (size >= 0 && Files.size(part) != size) {
+            Files.deleteIfExists(state);
+            throw new IOException("Error downloading " + url + ": expected " + size + " bytes, but got " + Files.size(part));
+        }
+        if (verifier != null) {
+            try {
+                verifier.verify(part);
+            } catch (IOException e) {
+                Files.deleteIfExists(part);
+                Files.deleteIfExists(state);
+                throw new IOException("Error verifying " + url + ": " + e.getMessage(), e);
+            }
+        }
+        try {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.deleteIfExists(state);
+        Logger.logDebug("Downloaded " + url + " to " + target);
+    }
+
+    /**
+     * Opens a stream with the contents of a file, to process them while they are
+     * downloaded. The connection is retried like any other request, but the
+     * download can't be resumed once the stream is returned. The stream is read
+     * ahead in a background thread, so the network transfer overlaps with the
+     * processing of the contents, and it fails if it ends before the expected size.
+     * @param url the URL of the file
+     * @return a stream with the contents of the file, that must be closed
+     * @throws IOException if the file can't be opened
+     */
+    public InputStream openStream(URL url) throws IOException {
+        Objects.requireNonNull(url);
+        Progress progress = new Progress(showProgress);
+        URLConnection connection = retry(url, new AtomicInteger(maxRetries), () -> {
+            URLConnection c = open(url);
+            if (c instanceof HttpURLConnection) {
+                int code = ((HttpURLConnection) c).getResponseCode();
+                if (code != HttpURLConnection.HTTP_OK) {
+                    ((HttpURLConnection) c).disconnect();
+                    throw new HttpException(url, code);
+                }
+            }
+            c.getInputStream();
+            return c;
+        });
+        long size = connection.getContentLengthLong();
+        progress.setTotal(size);
+        return new ReadAheadInputStream(url, connection.getInputStream(), size, progress);
+    }
+
+    /**
+     * Downloads the file into the partial file, resuming the segments that were
+     * completed before, and returns the expected size, or -1 if not known.
+     * The segments are retried with the retries left of the download.
+     */
+    private long downloadToPart(URL url, Path part, Path state, Progress progress, AtomicInteger retries) throws IOException {
+        URLConnection connection = open(url);
+        if (!(connection instanceof HttpURLConnection)) {
+            copy(connection, part, 0, progress);
+            return -1;
+        }
+        HttpURLConnection http = (HttpURLConnection) connection;
+        http.setRequestProperty("Range", "bytes=0-0");
+        int code = http.getResponseCode();
+        if (code == HttpURLConnection.HTTP_OK) {
+            // no support for ranges, the whole file comes in this response
+            long size = http.getContentLengthLong();
+            progress.setTotal(size);
+            copy(http, part, 0, progress);
+            return size;
+        }
+        if (code != HttpURLConnection.HTTP_PARTIAL) {
+            http.disconnect();
+            throw new HttpException(url, code);
+        }
+        long size = parseTotal(http.getHeaderField("Content-Range"));
+        String validator = Objects.requireNonNullElse(http.getHeaderField("ETag"),
+                Objects.requireNonNullElse(http.getHeaderField("Last-Modified"), ""));
+        drain(http);
+        if (size < 0) {
+            copy(open(url), part, 0, progress);
+            return -1;
+        }
+        progress.setTotal(size);
+
+        long segment = size >= 2 * segmentSize ? segmentSize : Math.max(size, 1);
+        int segments = (int) ((size + segment - 1) / segment);
+        SegmentState segmentState = SegmentState.read(state, size, segment, validator);
+        if (segmentState.done.isEmpty() || !Files.exists(part)) {
+            segmentState.done.clear();
+            try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (size > 0) {
+                    channel.write(ByteBuffer.allocate(1), size - 1);
+                }
+            }
+        } else {
+            Logger.logDebug("Resuming download of " + url + ": " + segmentState.done.size() + " of " + segments + " segments done");
+        }
+
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < segments; i++) {
+            if (segmentState.done.contains(i)) {
+                progress.add(Math.min(segment, size - i * segment));
+            } else {
+                pending.add(i);
+            }
+        }
+        if (pending.isEmpty()) {
+            return size;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, pending.size()), r -> {
+            Thread thread = new Thread(r, "substrate-download");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int index : pending) {
+                long start = index * segment;
+                long end = Math.min(start + segment, size) - 1;
+                futures.add(executor.submit(() -> {
+                    retry(url, retries, () -> {
+                        downloadRange(url, channel, start, end, size, validator, progress);
+                        return null;
+                    });
+                    segmentState.complete(index, state);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    futures.forEach(f -> f.cancel(true));
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException("Error downloading " + url, e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted downloading " + url, e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return size;
+    }
+
+    /**
+     * Downloads a segment of the file. With a validator, the segment is only accepted from
+     * the same version of the file: the server sends the whole file instead of the range when
+     * the validator in If-Range doesn't match, and the validator of the response is checked too,
+     * so segments of different versions are never mixed.
+     */
+    private void downloadRange(URL url, FileChannel channel, long start, long end, long size,
+                               String validator, Progress progress) throws IOException {
+        HttpURLConnection http = (HttpURLConnection) open(url);
+        http.setRequestProperty("Range", "bytes=" + start + "-" + end);
+        // weak validators can't be used in If-Range, the server would always send the whole file
+        if (!validator.isEmpty() && !validator.startsWith("W/")) {
+            http.setRequestProperty("If-Range", validator);
+        }
+        int code = http.getResponseCode();
+        if (code == HttpURLConnection.HTTP_OK) {
+            http.disconnect();
+            throw new ChangedException(url);
+        }
+        String etag = http.getHeaderField("ETag");
+        String lastModified = http.getHeaderField("Last-Modified");
+        if (code == HttpURLConnection.HTTP_PARTIAL && !validator.isEmpty() && (etag != null || lastModified != null) &&
+                !validator.equals(etag) && !validator.equals(lastModified)) {
+            http.disconnect();
+            throw new ChangedException(url);
+        }
+        if (code != HttpURLConnection.HTTP_PARTIAL) {
+            http.disconnect();
+            throw new HttpException(url, code);
+        }
+        if (parseTotal(http.getHeaderField("Content-Range")) != size) {
+            http.disconnect();
+            throw new ChangedException(url);
+        }
+        long position = start;
+        long read = 0;
+        try (InputStream is = http.getInputStream()) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int len;
+            while (position <= end && (len = is.read(buffer, 0, (int) Math.min(buffer.length, end - position + 1))) != -1) {
+                ByteBuffer bb = ByteBuffer.wrap(buffer, 0, len);
+                while (bb.hasRemaining()) {
+                    position += channel.write(bb, position);
+                }
+                read += len;
+                progress.add(len);
+            }
+        } catch (IOException e) {
+            progress.add(-read);
+            throw e;
+        }
+        if (position != end + 1) {
+            progress.add(-read);
+            throw new IOException("Incomplete range " + start + "-" + end + " of " + url);
+        }
+    }
+
+    private void copy(URLConnection connection, Path part, long offset, Progress progress) throws IOException {
+        long read = 0;
+        try (InputStream is = connection.getInputStream();
+             OutputStream os = Files.newOutputStream(part)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int len;
+            while ((len = is.read(buffer)) != -1) {
+                os.write(buffer, 0, len);
+                read += len;
+                progress.add(len);
+            }
+        } catch (IOException e) {
+            progress.add(-read);
+            throw e;
+        }
+    }
+
+    private static void drain(HttpURLConnection http) throws IOException {
+        try (InputStream is = http.getInputStream()) {
+            is.readAllBytes();
+        }
+    }
+
+    private static URLConnection open(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        if (connection instanceof HttpURLConnection) {
+            ((HttpURLConnection) connection).setInstanceFollowRedirects(true);
+        }
+        return connection;
+    }
+
+    /**
+     * Parses the total size from a Content-Range header like "bytes 0-0/1234"
+     */
+    static long parseTotal(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0 || "*".equals(contentRange.substring(slash + 1).trim())) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Attempt<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Runs the attempt until it succeeds, or there are no retries left. The
+     * retries are taken from the given budget, that can be shared by several
+     * attempts, and the delay is doubled with every retry taken from it.
+     */
+    private <T> T retry(URL url, AtomicInteger retries, Attempt<T> attempt) throws IOException {
+        while (true) {
+            try {
+                return attempt.run();
+            } catch (IOException e) {
+                if (e instanceof UnknownHostException || e instanceof ChangedException ||
+                        (e instanceof HttpException && !((HttpException) e).isTransient())) {
+                    throw e;
+                }
+                int left = retries.getAndDecrement();
+                if (left <= 0) {
+                    throw e;
+                }
+                int retry = maxRetries - left;
+                long delay = Math.min(retryDelay.toMillis() << Math.min(retry, 16), 60_000);
+                Logger.logDebug("Retry " + (retry + 1) + " of " + maxRetries + " to download " + url + " after: " +
+                        e.getMessage() + ", in " + delay + " ms");
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted downloading " + url, ie);
+                }
+            }
+        }
+    }
+
+    private static final class HttpException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int code;
+
+        HttpException(URL url, int code) {
+            super("Error downloading " + url + ": HTTP " + code);
+            this.code = code;
+        }
+
+        boolean isTransient() {
+            return code >= 500 || code == 408 || code == 429;
+        }
+    }
+
+    /**
+     * The file was replaced on the server while its segments were downloaded
+     */
+    private static final class ChangedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ChangedException(URL url) {
+            super(url + " changed while downloading it");
+        }
+    }
+
+    /**
+     * The segments of a partial file that were downloaded, only valid for the
+     * same size, segment size and validator (ETag or Last-Modified) of the file.
+     * Without a validator there is no way to know if the file changed since the
+     * partial file was written, so the state is neither written nor read.
+     */
+    private static final class SegmentState {
+        private final long size;
+        private final long segmentSize;
+        private final String validator;
+        private final Set<Integer> done = new TreeSet<>();
+
+        private SegmentState(long size, long segmentSize, String validator) {
+            this.size = size;
+            this.segmentSize = segmentSize;
+            this.validator = validator;
+        }
+
+        static SegmentState read(Path state, long size, long segmentSize, String validator) {
+            SegmentState segmentState = new SegmentState(size, segmentSize, validator);
+            if (validator.isEmpty()) {
+                try {
+                    Files.deleteIfExists(state);
+                } catch (IOException e) {
+                    Logger.logDebug("Error deleting download state " + state + ": " + e.getMessage());
+                }
+                return segmentState;
+            }
+            if (!Files.exists(state)) {
+                return segmentState;
+            }
+            Properties properties = new Properties();
+            try (InputStream is = Files.newInputStream(state)) {
+                properties.load(is);
+                if (String.valueOf(size).equals(properties.getProperty("size")) &&
+                        String.valueOf(segmentSize).equals(properties.getProperty("segmentSize")) &&
+                        validator.equals(properties.getProperty("validator"))) {
+                    String done = properties.getProperty("done", "");
+                    for (String index : done.split(",")) {
+                        if (!index.isEmpty()) {
+                            segmentState.done.add(Integer.parseInt(index));
+                        }
+                    }
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                Logger.logDebug("Ignoring download state " + state + ": " + e.getMessage());
+                segmentState.done.clear();
+            }
+            return segmentState;
+        }
+
+        synchronized void complete(int index, Path state) {
+            done.add(index);
+            if (validator.isEmpty()) {
+                return;
+            }
+            Properties properties = new Properties();
+            properties.setProperty("size", String.valueOf(size));
+            properties.setProperty("segmentSize", String.valueOf(segmentSize));
+            properties.setProperty("validator", validator);
+            properties.setProperty("done", done.stream().map(String::valueOf).collect(Collectors.joining(",")));
+            try {
+                Path tmp = Files.createTempFile(state.toAbsolutePath().getParent(), state.getFileName().toString(), ".tmp");
+                try (OutputStream os = Files.newOutputStream(tmp)) {
+                    properties.store(os, null);
+                }
+                Files.move(tmp, state, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // the download can't be resumed from this segment, but it can go on
+                Logger.logDebug("Error writing download state " + state + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Prints the progress of a download
+     */
+    private static final class Progress {
+        private final boolean show;
+        private final AtomicLong read = new AtomicLong();
+        private volatile long total = -1;
+        private int printPercentage = 0;
+        private boolean printed;
+
+        Progress(boolean show) {
+            this.show = show;
+        }
+
+        void setTotal(long total) {
+            this.total = total;
+        }
+
+        void add(long bytes) {
+            long current = read.addAndGet(bytes);
+            if (!show || bytes <= 0) {
+                return;
+            }
+            long expected = total;
+            double progress = expected > 0 ? (double) current / (double) expected * 100.0 : -1.0;
+            synchronized (this) {
+                if (((int) progress) >= printPercentage) {
+                    printPercentage += 10;
+                    printed = true;
+                    System.out.print("\r" + String.format("Download progress: %.2f / %.2fM", toMB(current), toMB(expected)));
+                    System.out.flush();
+                }
+            }
+        }
+
+        synchronized void done() {
+            if (printed) {
+                System.out.println();
+            }
+        }
+
+        private static double toMB(long sizeInBytes) {
+            return (double) sizeInBytes / (1024 * 1024);
+        }
+    }
+
+    /**
+     * An input stream that reads its source in a background thread, keeping a
+     * bounded number of chunks ready to be consumed
+     */
+    private static final class ReadAheadInputStream extends InputStream {
+
+        private static final byte[] END = new byte[0];
+        private static final int CHUNKS = 32;
+
+        private final URL url;
+        private final InputStream source;
+        private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(CHUNKS);
+        private final Thread reader;
+        private volatile IOException failure;
+        private byte[] chunk = new byte[0];
+        private int position;
+        private boolean ended;
+
+        ReadAheadInputStream(URL url, InputStream source, long size, Progress progress) {
+            this.url = url;
+            this.source = source;
+            reader = new Thread(() -> {
+                long total = 0;
+                try {
+                    while (true) {
+                        byte[] buffer = new byte[BUFFER_SIZE];
+                        int len = source.readNBytes(buffer, 0, buffer.length);
+                        if (len > 0) {
+                            total += len;
+                            progress.add(len);
+                            chunks.put(len == buffer.length ? buffer : Arrays.copyOf(buffer, len));
+                        }
+                        if (len < buffer.length) {
+                            break;
+                        }
+                    }
+                    if (size >= 0 && total != size) {
+                        failure = new IOException("Error downloading " + url + ": expected " + size + " bytes, but got " + total);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } catch (InterruptedException e) {
+                    return;
+                }
+                progress.done();
+                try {
+                    chunks.put(END);
+                } catch (InterruptedException e) {
+                    // closed
+                }
+            }, "substrate-download");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == chunk.length) {
+                if (ended) {
+                    return -1;
+                }
+                try {
+                    chunk = chunks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted downloading " + url, e);
+                }
+                position = 0;
+                if (chunk == END) {
+                    ended = true;
+                    if (failure != null) {
+                        throw failure;
+                    }
+                }
+            }
+            int n = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.interrupt();
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Reads the ELF headers of object files, and of the members of <code>ar</code> archives
+ * (static libraries), without spawning tools like <code>objdump</code>. Only the headers
+ * are read: the archive header of each member and the start of its ELF header.
+ */
+public final class ElfReader {
+
+    public static final int EM_386 = 3;
+    public static final int EM_ARM = 40;
+    public static final int EM_X86_64 = 62;
+    public static final int EM_AARCH64 = 183;
+    public static final int EM_RISCV = 243;
+
+    // machine types by the names of the architectures of the triplets
+    private static final Map<String, Integer> MACHINES = Map.of(
+            "x86_64", EM_X86_64, "amd64", EM_X86_64,
+            "aarch64", EM_AARCH64, "arm64", EM_AARCH64,
+            "arm", EM_ARM, "armv7", EM_ARM,
+            "x86", EM_386, "i386", EM_386, "i686", EM_386,
+            "riscv64", EM_RISCV);
+
+    private static final byte[] ELF_MAGIC = {0x7f, 'E', 'L', 'F'};
+    private static final String AR_MAGIC = "!<arch>\n";
+    private static final int AR_HEADER_SIZE = 60;
+    private static final int ELF_IDENT_SIZE = 20;
+
+    /**
+     * The identification of an ELF file
+     */
+    public static final class Header {
+        private final String name;
+        private final boolean is64Bit;
+        private final ByteOrder byteOrder;
+        private final int machine;
+
+        Header(String name, boolean is64Bit, ByteOrder byteOrder, int machine) {
+            this.name = name;
+            this.is64Bit = is64Bit;
+            this.byteOrder = byteOrder;
+            this.machine = machine;
+        }
+
+        /**
+         * @return the name of the archive member, or null for an object file
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return true for ELFCLASS64, false for ELFCLASS32
+         */
+        public boolean is64Bit() {
+            return is64Bit;
+        }
+
+        public ByteOrder getByteOrder() {
+            return byteOrder;
+        }
+
+        /**
+         * @return the machine type, <code>e_machine</code>, like {@link #EM_AARCH64}
+         */
+        public int getMachine() {
+            return machine;
+        }
+
+        @Override
+        public String toString() {
+            return (name == null ? "" : name + ": ") + "machine " + machine +
+                    (is64Bit ? ", 64-bit" : ", 32-bit") + ", " + byteOrder;
+        }
+    }
+
+    private ElfReader() {}
+
+    /**
+     * Reads the ELF headers of an object file, or of the members of an archive.
+     * The members that are not ELF objects, and the symbol and name tables, are skipped.
+     *
+     * @param file the object file or archive
+     * @return the headers, empty if the file is neither an ELF object nor an archive
+     * @throws IOException if the file can't be read, or the archive is corrupted
+     */
+    public static List<Header> readHeaders(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer magic = read(channel, 0, AR_MAGIC.length());
+            if (isElf(magic)) {
+                Header header = readHeader(channel, 0, null);
+                return header == null ? List.of() : List.of(header);
+            }
+            if (!AR_MAGIC.equals(StandardCharsets.US_ASCII.decode(magic).toString())) {
+                return List.of();
+            }
+
+            List<Header> headers = new ArrayList<>();
+            long position = AR_MAGIC.length();
+            while (position + AR_HEADER_SIZE <= size) {
+                ByteBuffer buffer = read(channel, position, AR_HEADER_SIZE);
+                if (buffer.remaining() < AR_HEADER_SIZE || buffer.get(58) != '`' || buffer.get(59) != '\n') {
+                    throw new IOException("Error: invalid archive member header at " + position + " in " + file);
+                }
+                String name = field(buffer, 0, 16);
+                long memberSize = parseSize(field(buffer, 48, 10), file);
+                long data = position + AR_HEADER_SIZE;
+                long dataSize = memberSize;
+                if (name.startsWith("#1/")) {
+                    // BSD format: the name is at the start of the data
+                    int nameLength = (int) parseSize(name.substring(3), file);
+                    ByteBuffer longName = read(channel, data, nameLength);
+                    name = StandardCharsets.UTF_8.decode(longName).toString().trim();
+                    data += nameLength;
+                    dataSize -= nameLength;
+                }
+                if (!isIndex(name) && dataSize >= ELF_IDENT_SIZE) {
+                    Header header = readHeader(channel, data, name);
+                    if (header != null) {
+                        headers.add(header);
+                    }
+                }
+                // members are aligned to even offsets
+                position += AR_HEADER_SIZE + memberSize + (memberSize & 1);
+            }
+            return Collections.unmodifiableList(headers);
+        }
+    }
+
+    /**
+     * Returns a filter that accepts the object files and archives with at least an ELF
+     * object for the given architecture, so it can be used with any target that links
+     * ELF objects
+     *
+     * @param arch the architecture of the target triplet, like aarch64 or x86_64
+     * @return a predicate for the paths of the files
+     * @throws IllegalArgumentException if the architecture is not known
+     */
+    public static Predicate<Path> architectureFilter(String arch) {
+        Integer machine = MACHINES.get(Objects.requireNonNull(arch).toLowerCase(Locale.ROOT));
+        if (machine == null) {
+            throw new IllegalArgumentException("Error: unknown ELF architecture " + arch);
+        }
+        boolean is64Bit = machine == EM_X86_64 || machine == EM_AARCH64 || machine == EM_RISCV;
+        return path -> {
+            try {
+                if (readHeaders(path).stream().anyMatch(h -> h.getMachine() == machine && h.is64Bit() == is64Bit)) {
+                    return true;
+                }
+                Logger.logDebug("Ignore file " + path + " since it has no ELF objects for " + arch);
+            } catch (IOException e) {
+                Logger.logDebug("Ignore file " + path + " since it can't be read: " + e.getMessage());
+            }
+            return false;
+        };
+    }
+
+    private static Header readHeader(FileChannel channel, long position, String name) throws IOException {
+        ByteBuffer ident = read(channel, position, ELF_IDENT_SIZE);
+        if (ident.remaining() < ELF_IDENT_SIZE || !isElf(ident)) {
+            return null;
+        }
+        int elfClass = ident.get(4);
+        int elfData = ident.get(5);
+        if ((elfClass != 1 && elfClass != 2) || (elfData != 1 && elfData != 2)) {
+            return null;
+        }
+        ByteOrder order = elfData == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        int machine = ident.order(order).getShort(18) & 0xffff;
+        return new Header(name, elfClass == 2, order, machine);
+    }
+
+    private static boolean isElf(ByteBuffer buffer) {
+        if (buffer.remaining() < ELF_MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < ELF_MAGIC.length; i++) {
+            if (buffer.get(buffer.position() + i) != ELF_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a member is the symbol table or the name table of an archive
+     */
+    private static boolean isIndex(String name) {
+        return name.equals("/") || name.equals("//") || name.equals("/SYM64/") || name.startsWith("__.SYMDEF");
+    }
+
+    private static String field(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII).trim();
+    }
+
+    private static long parseSize(String value, Path file) throws IOException {
+        try {
+            long size = Long.parseLong(value);
+            if (size < 0) {
+                throw new NumberFormatException(value);
+            }
+            return size;
+        } catch (NumberFormatException e) {
+            throw new IOException("Error: invalid archive member size " + value + " in " + file);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -39,11 +39,16 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -85,8 +90,17 @@ public final class FileDeps {
 
     private static final String ARCH_SYSROOT_URL = "https://download2.gluonhq.com/substrate/sysroot/${arch}sysroot-${version}.zip";
 
+    // records the optional components installed with the JavaFX static SDK
+    private static final String COMPONENTS_EXTENSION = ".components";
+
+    // maximum number of dependencies that are downloaded at the same time
+    private static final int DOWNLOAD_PARALLELISM = 3;
+
     private final InternalProjectConfiguration configuration;
 
+    // the setup of the dependencies that is running, or the last one
+    private CompletableFuture<Boolean> setup;
+
     public FileDeps(InternalProjectConfiguration config) {
         this.configuration = Objects.requireNonNull(config);
     }
@@ -107,11 +121,32 @@ public final class FileDeps {
      * Return the path to the JavaFX SDK for this configuration.
      * The path is cached on the provided configuration.
      * If it is not there yet, all dependencies are retrieved.
+     * If it is there, but without the optional components that the project needs now,
+     * like the web or media libraries, these are installed before returning.
      * @return the location of the JavaFX SDK for the arch-os for this configuration
      * @throws IOException in case anything goes wrong.
      */
     public Path getJavaFXSDKLibsPath() throws IOException {
-        return resolvePath(configuration.getJavafxStaticLibsPath(),"Fatal error, could not install JavaFX SDK ");
+        Path path = resolvePath(configuration.getJavafxStaticLibsPath(),"Fatal error, could not install JavaFX SDK ");
+        if (!configuration.useCustomJavafxStaticLibs()) {
+            ensureJavaFXComponents();
+        }
+        return path;
+    }
+
+    /**
+     * Installs the components of the JavaFX static SDK that the project requires, and
+     * are missing from the installed SDK
+     */
+    private synchronized void ensureJavaFXComponents() throws IOException {
+        String osArch = configuration.getTargetTriplet().getOsArch();
+        boolean isLinuxAarch64 = new Triplet(Constants.Profile.LINUX_AARCH64).equals(configuration.getTargetTriplet());
+        Set<JavaFXComponent> required = JavaFXComponent.requiredBy(configuration);
+        Set<JavaFXComponent> missing = getMissingComponents(configuration.getDefaultJavafxStaticPath(), osArch, required);
+        if (!missing.isEmpty()) {
+            Logger.logDebug("JavaFX components not installed: " + missing);
+            installJavaFXComponents(osArch, isLinuxAarch64 ? "-monocle" : "", required);
+        }
     }
 
     /**
@@ -175,13 +210,76 @@ public final class FileDeps {
      * @throws IOException in case anything goes wrong.
      */
     private Path resolvePath(Path path, String errorMessage) throws IOException {
-        if (Files.exists(Objects.requireNonNull(path))) {
+        Objects.requireNonNull(path);
+        // a setup that is running can be replacing the path, and a failed one is done again
+        if (getSetup() != null) {
+            awaitSetup(startSetup(false), errorMessage);
+        }
+        if (Files.exists(path)) {
             return path;
         }
-        if (!setupDependencies()) {
+        awaitSetup(startSetup(true), errorMessage);
+        return path;
+    }
+
+    private static void awaitSetup(CompletableFuture<Boolean> setup, String errorMessage) throws IOException {
+        boolean success;
+        try {
+            success = setup.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(errorMessage, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(errorMessage, e);
+        }
+        if (!success) {
             throw new IOException(errorMessage); //"Error setting up dependencies"
         }
-        return path;
+    }
+
+    /**
+     * Starts installing the missing dependencies in the background, so they are ready,
+     * or closer to ready, by the time a build step needs them. The paths of the
+     * dependencies are only returned after this setup finishes, and its failure is
+     * reported when they are requested. The setup runs in a non-daemon thread, so an
+     * installation is not stopped halfway when the build ends before waiting for it.
+     */
+    public void prefetchDependencies() {
+        startSetup(false);
+    }
+
+    private synchronized CompletableFuture<Boolean> getSetup() {
+        return setup;
+    }
+
+    /**
+     * Returns the setup of dependencies that is running, or the last one if it succeeded,
+     * so the dependencies are checked once per build. A new one is started when there is
+     * none, the last one failed, or it is requested again because a path is still missing.
+     *
+     * @param again true to start a new setup if the last one finished, even successfully
+     */
+    private synchronized CompletableFuture<Boolean> startSetup(boolean again) {
+        if (setup == null || (setup.isDone() && (again || setup.isCompletedExceptionally() ||
+                !setup.getNow(false)))) {
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+            Thread thread = new Thread(() -> {
+                try {
+                    future.complete(setupDependencies());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }, "substrate-dependencies");
+            thread.start();
+            setup = future;
+        }
+        return setup;
     }
 
     /**
@@ -196,6 +294,7 @@ public final class FileDeps {
      * Verifies if Java static SDK and JavaFX static SDK (when using JavaFX) are present at
      * the default location, and contain an unmodified set of files.
      * If this is not the case, the correct SDK is downloaded and unzipped.
+     * All the missing dependencies are downloaded concurrently.
      *
      * @return true if the processed ended succesfully, false otherwise
      * @throws IOException in case default path for Substrate dependencies can't be created
@@ -214,6 +313,7 @@ public final class FileDeps {
 
         boolean downloadJavaStatic = false;
         boolean downloadJavaFXStatic = false;
+        Set<JavaFXComponent> missingJavaFXComponents = EnumSet.noneOf(JavaFXComponent.class);
         boolean downloadAndroidSdk = false;
         boolean downloadAndroidNdk = false;
         boolean downloadAndroidAdditionalLibs = false;
@@ -242,14 +342,7 @@ public final class FileDeps {
                 } else if (!customJavaLocation && configuration.isEnableCheckHash()) {
                     // when the directory for the libs is found, and it is not a user-supplied one, check for its validity
                     Logger.logDebug("Checking java static sdk hashes");
-                    String md5File = getChecksumFileName(defaultJavaStaticPath, "javaStaticSdk", target);
-                    Map<String, String> hashes = FileOps.getHashMap(md5File);
-                    if (hashes == null) {
-                        Logger.logDebug(md5File+" not found");
-                        downloadJavaStatic = true;
-                    } else if (JAVA_FILES.stream()
-                            .map(s -> new File(path, s))
-                            .anyMatch(f -> !hashes.get(f.getName()).equals(FileOps.calculateCheckSum(f)))) {
+                    if (!hasValidChecksums(defaultJavaStaticPath, "javaStaticSdk", target, path, JAVA_FILES)) {
                         Logger.logDebug("jar file has invalid hashcode");
                         downloadJavaStatic = true;
                     }
@@ -258,6 +351,7 @@ public final class FileDeps {
         }
 
         // JavaFX Static
+        Set<JavaFXComponent> javafxComponents = JavaFXComponent.requiredBy(configuration);
         if (configuration.isUseJavaFX()) {
             Path javafxStatic = configuration.getJavafxStaticLibsPath();
             Logger.logDebug("Processing JavaFXStatic dependencies at " + javafxStatic.toString());
@@ -273,19 +367,18 @@ public final class FileDeps {
                     downloadJavaFXStatic = true;
                 } else if (configuration.isEnableCheckHash()) {
                     Logger.logDebug("Checking javafx static sdk hashes");
-                    String md5File = getChecksumFileName(javafxStatic.getParent(), "javafxStaticSdk", target);
-                    Map<String, String> hashes = FileOps.getHashMap(md5File);
-                    if (hashes == null) {
-                        Logger.logDebug(md5File + " md5 not found");
-                        downloadJavaFXStatic = true;
-                    } else if (JAVAFX_FILES.stream()
-                            .map(s -> new File(path, s))
-                            .anyMatch(f -> !hashes.get(f.getName()).equals(FileOps.calculateCheckSum(f)))) {
+                    if (!hasValidChecksums(javafxStatic.getParent(), "javafxStaticSdk", target, path, JAVAFX_FILES)) {
                         Logger.logDebug("JavaFX jar file has invalid hashcode");
                         downloadJavaFXStatic = true;
                     }
                 }
             }
+            if (!downloadJavaFXStatic && !configuration.useCustomJavafxStaticLibs()) {
+                missingJavaFXComponents.addAll(getMissingComponents(javafxStatic.getParent(), target, javafxComponents));
+                if (!missingJavaFXComponents.isEmpty()) {
+                    Logger.logDebug("JavaFX components not installed: " + missingJavaFXComponents);
+                }
+            }
         }
 
         // Android
@@ -318,31 +411,53 @@ public final class FileDeps {
             }
         }
 
-        try {
-            if (downloadJavaStatic) {
+        // independent downloads run concurrently, the Android ones depend on each other
+        TaskGraph graph = new TaskGraph("dependencies", DOWNLOAD_PARALLELISM);
+        if (downloadJavaStatic) {
+            graph.add("java-static-sdk", () -> {
                 downloadJavaZip(target);
-            }
-
-            if (downloadJavaFXStatic) {
-                downloadJavaFXZip(target, isLinuxAarch64 ? "-monocle" : "");
-            }
-
-            if (downloadAndroidSdk) { // First we get SDK
+                return null;
+            });
+        }
+        if (downloadJavaFXStatic) {
+            graph.add("javafx-static-sdk", () -> {
+                downloadJavaFXZip(target, isLinuxAarch64 ? "-monocle" : "", javafxComponents);
+                return null;
+            });
+        } else if (!missingJavaFXComponents.isEmpty()) {
+            graph.add("javafx-static-components", () -> {
+                installJavaFXComponents(target, isLinuxAarch64 ? "-monocle" : "", javafxComponents);
+                return null;
+            });
+        }
+        TaskGraph.Task<?> android = null;
+        if (downloadAndroidSdk) { // First we get SDK
+            android = graph.add("android-sdk", () -> {
                 downloadAndroidSdkZip();
-            }
-
-            if (downloadAndroidAdditionalLibs) { // Then we get additional libs
+                return null;
+            });
+        }
+        if (downloadAndroidAdditionalLibs) { // Then we get additional libs
+            android = addAfter(graph, "android-libs", () -> {
                 downloadAdditionalAndroidLibs();
-            }
-
-            if (downloadAndroidNdk) { // And then NDK
+                return null;
+            }, android);
+        }
+        if (downloadAndroidNdk) { // And then NDK
+            addAfter(graph, "android-ndk", () -> {
                 fetchFromSdkManager();
-            }
-
-            if (downloadSysroot) {
+                return null;
+            }, android);
+        }
+        if (downloadSysroot) {
+            graph.add("sysroot", () -> {
                 downloadSysrootZip(configuration.getTargetTriplet().getArch());
-            }
+                return null;
+            });
+        }
 
+        try {
+            graph.run();
         } catch (IOException | InterruptedException e) {
             throw new RuntimeException("Error downloading zips: " + e.getMessage());
         }
@@ -359,22 +474,182 @@ public final class FileDeps {
         return true;
     }
 
+    private static TaskGraph.Task<?> addAfter(TaskGraph graph, String name, TaskGraph.TaskAction<?> action,
+                                              TaskGraph.Task<?> dependency) {
+        return dependency == null ? graph.add(name, action) : graph.add(name, action, dependency);
+    }
+
     /**
      * Generates standardized checksum file name for a given os architecture
      * @param base base path, parent of which will be used
      * @param customPart custom part of the name
      * @param osArch os architecture
+     * @param extension the extension of the file
      * @return
      */
-    private static String getChecksumFileName(Path base, String customPart, String osArch) {
-        return base.getParent().resolve(String.format("%s-%s.md5", customPart, osArch)).toString();
+    private static Path getChecksumFile(Path base, String customPart, String osArch, String extension) {
+        return base.getParent().resolve(String.format("%s-%s%s", customPart, osArch, extension));
     }
 
-    private void downloadJavaZip(String target) throws IOException {
-        Logger.logInfo("Downloading Java Static Libs...");
-        String javaZip = Strings.substitute(JAVA_STATIC_ZIP, Map.of(
+    /**
+     * Checks the files with the given names in a folder against the integrity manifest
+     * of the SDK they belong to. Only these files are verified, and their digests are
+     * only computed again when their size, last modified time or file key have changed
+     * since the last check.
+     *
+     * SDKs installed by earlier versions only have a serialized map with the MD5
+     * checksums of the files. These are verified against that map, and then an
+     * integrity manifest with the verified files is created, so the map is not
+     * read again.
+     *
+     * @param base base path, parent of which contains the checksum files
+     * @param customPart custom part of the name of the checksum files
+     * @param osArch os architecture
+     * @param path the folder with the files
+     * @param fileNames the names of the files to check
+     * @return true if all the files are valid
+     */
+    private static boolean hasValidChecksums(Path base, String customPart, String osArch, String path, List<String> fileNames) {
+        List<Path> files = fileNames.stream()
+                .map(name -> Path.of(path, name))
+                .collect(Collectors.toList());
+        Path manifestFile = getChecksumFile(base, customPart, osArch, IntegrityManifest.FILE_EXTENSION);
+        IntegrityManifest manifest = IntegrityManifest.read(manifestFile);
+        if (manifest != null) {
+            return manifest.verify(manifestFile.getParent(), files, Path.of(manifestFile + ".stat"));
+        }
+
+        Path md5File = getChecksumFile(base, customPart, osArch, ".md5");
+        Map<String, String> hashes = FileOps.getHashMap(md5File.toString());
+        if (hashes == null) {
+            Logger.logDebug(manifestFile + " not found");
+            return false;
+        }
+        Map<String, String> checksums = ChecksumCache.getChecksums(Path.of(md5File + ".stat"), files);
+        if (!fileNames.stream()
+                .allMatch(name -> hashes.get(name) != null && hashes.get(name).equals(checksums.get(name)))) {
+            return false;
+        }
+        try {
+            IntegrityManifest.of(manifestFile.getParent(), files).write(manifestFile);
+        } catch (IOException e) {
+            Logger.logDebug("Error writing integrity manifest " + manifestFile + ": " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Returns the optional components of the JavaFX static SDK that are installed. These are
+     * recorded next to its integrity manifest when it is installed. SDKs installed by earlier
+     * versions don't have that record, and the components with any library in the manifest
+     * are considered installed.
+     *
+     * @param base base path, parent of which contains the integrity manifest of the SDK
+     * @param osArch os architecture
+     * @return the set of installed components
+     */
+    private static Set<JavaFXComponent> getInstalledComponents(Path base, String osArch) {
+        Path componentsFile = getChecksumFile(base, "javafxStaticSdk", osArch, COMPONENTS_EXTENSION);
+        Set<JavaFXComponent> components = EnumSet.noneOf(JavaFXComponent.class);
+        if (Files.exists(componentsFile)) {
+            try {
+                for (String line : Files.readAllLines(componentsFile)) {
+                    if (!line.isBlank()) {
+                        components.add(JavaFXComponent.valueOf(line.trim()));
+                    }
+                }
+                return components;
+            } catch (IOException | IllegalArgumentException e) {
+                Logger.logDebug("Error reading " + componentsFile + ": " + e.getMessage());
+            }
+        }
+        IntegrityManifest manifest = IntegrityManifest.read(
+                getChecksumFile(base, "javafxStaticSdk", osArch, IntegrityManifest.FILE_EXTENSION));
+        if (manifest != null) {
+            for (JavaFXComponent component : JavaFXComponent.values()) {
+                if (manifest.getEntries().keySet().stream().anyMatch(component::contains)) {
+                    components.add(component);
+                }
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Returns the required components of the JavaFX static SDK that are not installed
+     *
+     * @param base base path, parent of which contains the integrity manifest of the SDK
+     * @param osArch os architecture
+     * @param required the components that are required
+     * @return the set of required components that are not installed
+     */
+    static Set<JavaFXComponent> getMissingComponents(Path base, String osArch, Set<JavaFXComponent> required) {
+        Set<JavaFXComponent> missing = EnumSet.noneOf(JavaFXComponent.class);
+        missing.addAll(required);
+        missing.removeAll(getInstalledComponents(base, osArch));
+        return missing;
+    }
+
+    static void writeInstalledComponents(Path base, String osArch, Set<JavaFXComponent> components) throws IOException {
+        Path componentsFile = getChecksumFile(base, "javafxStaticSdk", osArch, COMPONENTS_EXTENSION);
+        Files.write(componentsFile, components.stream().map(Enum::name).collect(Collectors.toList()));
+    }
+
+    private void writeInstalledComponents(Set<JavaFXComponent> components) throws IOException {
+        writeInstalledComponents(configuration.getDefaultJavafxStaticPath(),
+                configuration.getTargetTriplet().getOsArch(), components);
+    }
+
+    /**
+     * Returns the upstream URLs of all the artifacts that builds for the target of this
+     * configuration can download, whether the current project needs them or not, so
+     * they can be fetched in advance, see {@link ArtifactRepository#fetch(String)}.
+     * The Android toolchain is not included, since it is installed by the Android sdkmanager.
+     *
+     * @return the list of URLs
+     */
+    public List<String> getArtifactUrls() {
+        Triplet targetTriplet = configuration.getTargetTriplet();
+        String target = targetTriplet.getOsArch();
+        boolean isLinuxAarch64 = new Triplet(Constants.Profile.LINUX_AARCH64).equals(targetTriplet);
+
+        List<String> urls = new ArrayList<>();
+        urls.add(JAVA_STATIC_URL + getJavaStaticZip(target));
+        urls.add(JAVAFX_STATIC_URL + getJavaFXStaticZip(target, isLinuxAarch64 ? "-monocle" : ""));
+        if (Constants.OS_ANDROID.equals(targetTriplet.getOs())) {
+            urls.add(getAndroidSdkUrl());
+            urls.addAll(Arrays.asList(ANDROID_DEPS));
+        }
+        if (Constants.ARCH_AARCH64.equals(targetTriplet.getArch())) {
+            urls.add(getSysrootUrl(targetTriplet.getArch()));
+        }
+        return urls;
+    }
+
+    private String getJavaStaticZip(String target) {
+        return Strings.substitute(JAVA_STATIC_ZIP, Map.of(
             "version", configuration.getJavaStaticSdkVersion(),
             "target", target));
+    }
+
+    private String getJavaFXStaticZip(String osarch, String variant) {
+        return Strings.substitute(JAVAFX_STATIC_ZIP, Map.of(
+            "version", configuration.getJavafxStaticSdkVersion(),
+            "target", osarch,
+            "variant", variant));
+    }
+
+    private String getAndroidSdkUrl() {
+        return Strings.substitute(ANDROID_SDK_URL, Map.of("host", configuration.getHostTriplet().getOs()));
+    }
+
+    private static String getSysrootUrl(String arch) {
+        return Strings.substitute(ARCH_SYSROOT_URL, Map.of("arch", arch, "version", Constants.DEFAULT_SYSROOT_VERSION));
+    }
+
+    private void downloadJavaZip(String target) throws IOException {
+        Logger.logInfo("Downloading Java Static Libs...");
+        String javaZip = getJavaStaticZip(target);
         FileOps.downloadAndUnzip(JAVA_STATIC_URL + javaZip,
                 Constants.USER_SUBSTRATE_PATH,
                 javaZip,
@@ -384,21 +659,42 @@ public final class FileDeps {
         Logger.logInfo("Java static libs downloaded successfully");
     }
 
-    private void downloadJavaFXZip(String osarch, String variant) throws IOException {
+    /**
+     * Downloads the JavaFX static SDK, and installs it without the libraries of the
+     * optional components that are not needed. These can be installed later on, see
+     * {@link #installJavaFXComponents(String, String, Set)}, that downloads the zip again,
+     * unless it is in a mirror or the local store, or it was kept with -Dkeepdownloads.
+     */
+    private void downloadJavaFXZip(String osarch, String variant, Set<JavaFXComponent> components) throws IOException {
         Logger.logInfo("Downloading JavaFX static libs...");
-        String javafxZip = Strings.substitute(JAVAFX_STATIC_ZIP, Map.of(
-            "version", configuration.getJavafxStaticSdkVersion(),
-            "target", osarch,
-            "variant", variant));
+        String javafxZip = getJavaFXStaticZip(osarch, variant);
         FileOps.downloadAndUnzip(JAVAFX_STATIC_URL + javafxZip,
                 Constants.USER_SUBSTRATE_PATH,
-                javafxZip,
+                JavaFXComponent.filter(components),
                 "javafxStaticSdk",
                 configuration.getJavafxStaticSdkVersion(),
                 configuration.getTargetTriplet().getOsArch());
+        writeInstalledComponents(components);
         Logger.logInfo("JavaFX static libs downloaded successfully");
     }
 
+    /**
+     * Adds the libraries of the given optional components to an installed JavaFX static SDK
+     */
+    private void installJavaFXComponents(String osarch, String variant, Set<JavaFXComponent> components) throws IOException {
+        Set<JavaFXComponent> installed = getInstalledComponents(configuration.getDefaultJavafxStaticPath(), osarch);
+        installed.addAll(components);
+        Logger.logInfo("Installing JavaFX static libs for " + components + "...");
+        FileOps.unzipMissing(JAVAFX_STATIC_URL + getJavaFXStaticZip(osarch, variant),
+                Constants.USER_SUBSTRATE_PATH,
+                JavaFXComponent.filter(installed),
+                "javafxStaticSdk",
+                configuration.getJavafxStaticSdkVersion(),
+                configuration.getTargetTriplet().getOsArch());
+        writeInstalledComponents(installed);
+        Logger.logInfo("JavaFX static libs installed successfully");
+    }
+
     /**
      * Crafts Android SDK url and then downloads it
      * @throws IOException in case anything goes wrong.
@@ -406,9 +702,7 @@ public final class FileDeps {
     private void downloadAndroidSdkZip() throws IOException {
         Logger.logInfo("Downloading Android SDK...");
         Path sdk = configuration.getAndroidSdkPath();
-        String hostOs = configuration.getHostTriplet().getOs();
-        String androidSdkUrl = Strings.substitute(ANDROID_SDK_URL, Map.of("host", hostOs));
-        FileOps.downloadAndUnzip(androidSdkUrl, sdk.getParent(), "android-sdk.zip", sdk.getFileName().toString(), "");
+        FileOps.downloadAndUnzip(getAndroidSdkUrl(), sdk.getParent(), "android-sdk.zip", sdk.getFileName().toString(), "");
         Logger.logInfo("Android SDK downloaded successfully");
     }
     /**
@@ -474,6 +768,7 @@ public final class FileDeps {
      * @throws InterruptedException in case anything goes wrong.
      */
     private void fetchFromSdkManager() throws IOException, InterruptedException {
+        ArtifactRepository.checkOnline("The Android toolchain");
         Logger.logInfo("Downloading Android toolchain. It may take several minutes depending on your bandwidth.");
         androidSdkManager(ANDROID_SDK_PACKAGES);
         Logger.logInfo("Android toolchain downloaded successfully");
@@ -481,8 +776,7 @@ public final class FileDeps {
 
     private void downloadSysrootZip(String arch) throws IOException {
         Logger.logInfo("Downloading sysroot zip...");
-        String sysrootZip = Strings.substitute(ARCH_SYSROOT_URL, Map.of("arch", arch, "version", Constants.DEFAULT_SYSROOT_VERSION));
-        FileOps.downloadAndUnzip(sysrootZip,
+        FileOps.downloadAndUnzip(getSysrootUrl(arch),
                 Constants.USER_SUBSTRATE_PATH,
                 arch+"sysroot.zip",
                 "sysroot", "");
@@ -47,14 +47,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.HttpURLConnection;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.FileSystems;
@@ -62,9 +59,11 @@ import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
@@ -80,6 +79,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.jar.Attributes;
 import java.util.jar.JarOutputStream;
@@ -88,7 +88,6 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
@@ -457,7 +456,9 @@ public class FileOps {
      * Return the hashmap associated with this nameFile.
      * If a file named <code>nameFile</code> exists, and it contains  a serialized version of a Map, this
      * Map will be returned.
-     * If the file doesn't exist or is corrupt, this method returns null
+     * If the file doesn't exist or is corrupt, this method returns null.
+     * These files are only found in SDKs installed by earlier versions, new installs
+     * use an {@link IntegrityManifest} instead.
      * @param nameFile
      * @return the Map contained in the file named nameFile, or null in all other cases.
      */
@@ -532,47 +533,67 @@ public class FileOps {
         if (!Files.exists(target)) {
             Files.createDirectories(target);
         }
-        ZipFile zf = new ZipFile(sourceJar.toFile());
-        List<? extends ZipEntry> entries = zf.stream()
-                .filter(ze -> extensions.stream().anyMatch(ext -> ze.getName().endsWith(ext)))
-                .collect(Collectors.toList());
-        if (entries.isEmpty()) {
-            return;
-        }
+        try (ZipFile zf = new ZipFile(sourceJar.toFile())) {
+            List<? extends ZipEntry> entries = zf.stream()
+                    .filter(ze -> extensions.stream().anyMatch(ext -> ze.getName().endsWith(ext)))
+                    .collect(Collectors.toList());
+            if (entries.isEmpty()) {
+                return;
+            }
 
-        List<String> uniqueObjectFileNames = Files.list(target)
-                .map(p -> p.getFileName().toString())
-                .collect(Collectors.toList());
+            Set<String> uniqueObjectFileNames;
+            try (Stream<Path> files = Files.list(target)) {
+                uniqueObjectFileNames = files.map(p -> p.getFileName().toString())
+                        .collect(Collectors.toCollection(HashSet::new));
+            }
 
-        for (ZipEntry ze : entries) {
-            String uniqueName = new File(ze.getName()).getName();
-            if (!uniqueObjectFileNames.contains(uniqueName)) {
-                Path filePath = FileOps.copyStream(zf.getInputStream(ze), target.resolve(uniqueName));
-                if (filter == null || filter.test(filePath)) {
-                    uniqueObjectFileNames.add(uniqueName);
-                } else {
-                    Logger.logDebug("File not copied, doesn't pass filter: " + uniqueName);
-                    Files.delete(filePath);
+            for (ZipEntry ze : entries) {
+                String uniqueName = new File(ze.getName()).getName();
+                if (!uniqueObjectFileNames.contains(uniqueName)) {
+                    Path filePath = FileOps.copyStream(zf.getInputStream(ze), target.resolve(uniqueName));
+                    if (filter == null || filter.test(filePath)) {
+                        uniqueObjectFileNames.add(uniqueName);
+                    } else {
+                        Logger.logDebug("File not copied, doesn't pass filter: " + uniqueName);
+                        Files.delete(filePath);
+                    }
                 }
             }
         }
     }
 
     /**
-     * Downloads a file from a given URL (non null) into a given path (non null)
+     * Downloads a file from a given URL (non null) into a given path (non null).
+     * Interrupted downloads are resumed and failed requests are retried, see {@link Downloader}.
+     * The file is taken from a mirror or the local store when available, see {@link ArtifactRepository}.
      * @param fileUrl the URL of the file
      * @param filePath the absolute path of the file where the remote file be downloaded into
-     * @throws IOException
+     * @throws IOException if the file can't be downloaded
      */
     public static void downloadFile(URL fileUrl, Path filePath) throws IOException {
         Objects.requireNonNull(fileUrl);
         Objects.requireNonNull(filePath);
-        ProgressDownloader.downloadFile(fileUrl, filePath);
+        new Downloader().download(ArtifactRepository.resolve(fileUrl.toString()), filePath);
+    }
+
+    /**
+     * Checks that a downloaded file is a complete zip file, by reading its
+     * central directory
+     * @param zipPath the path of the zip file
+     * @throws IOException if the file is not a valid zip file
+     */
+    private static void checkZipFile(Path zipPath) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
+            if (zipFile.size() == 0) {
+                throw new IOException("Error: " + zipPath + " has no entries");
+            }
+        }
     }
 
     /**
      * Extracts the files from a given zip file into a target folder, and returns a map
-     * with the names of the files and their checksum values.
+     * with the names of the files and their checksum values, computed while the files
+     * are extracted. Unix permissions and symbolic links are preserved where supported.
      * In the case that the file is not a valid zip, the returned map will be empty.
      * @param sourceZip the path of a non null zip file
      * @param targetDir the path of a folder where the zip file will be extracted
@@ -592,40 +613,51 @@ public class FileOps {
             Files.createDirectories(targetDir);
         }
         Map<String, String> hashes = new HashMap<>();
-        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(sourceZip.toFile()))) {
-            ZipEntry zipEntry;
-            while ((zipEntry = zis.getNextEntry()) != null) {
-                Path destPath = targetDir.resolve(zipEntry.getName());
-                if (zipEntry.isDirectory()) {
-                    if (!Files.exists(destPath)) {
-                        Files.createDirectories(destPath);
-                    }
-                } else {
-                    byte[] buffer = new byte[1024];
-                    try (FileOutputStream fos = new FileOutputStream(destPath.toFile())) {
-                        int len;
-                        while ((len = zis.read(buffer)) > 0) {
-                            fos.write(buffer, 0, len);
-                        }
-                    }
-                    hashes.put(destPath.getFileName().toString(), calculateCheckSum(destPath.toFile()));
-                }
-                zis.closeEntry();
-            }
+        extractZip(sourceZip, targetDir, IntegrityManifest.Algorithm.MD5)
+                .forEach((name, entry) -> hashes.put(Path.of(name).getFileName().toString(), toCheckSum(entry.getDigest())));
+        return hashes;
+    }
+
+    private static Map<String, IntegrityManifest.Entry> extractZip(Path sourceZip, Path targetDir,
+                                                                   IntegrityManifest.Algorithm algorithm) throws IOException {
+        try {
+            return ZipExtractor.extract(sourceZip, targetDir, algorithm);
         } catch (IOException e) {
             throw new IOException("Error unzipping from " + sourceZip + "into " + targetDir + ": " + e.getMessage() + ", " + Arrays.toString(e.getSuppressed()));
         }
-        return hashes;
     }
 
     /**
-     * Downloads a zip file from the specified sourceUrl into the destPath where a file
-     * named fileName will be created.
-     * Once the zip file is downloaded, it will be unpacked into the location that starts at
-     * the destPath, and is resolved under destPath/dirName/level1/...
-     * A file with the checksums of all the files in the zip will be generated with name
-     * "dirName-levelN.md5" under the final path: destPath/dirName/.../levelN/subDir-levelN.md5, or
-     * "dirName.md5" under the final path: destPath/dirName/subDir.md5, if levels are not provided.
+     * Converts a MD5 digest in hexadecimal format to the format of {@link #calculateCheckSum(File)}
+     */
+    private static String toCheckSum(String hexDigest) {
+        byte[] bytes = new byte[hexDigest.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hexDigest.substring(2 * i, 2 * i + 2), 16);
+        }
+        return Arrays.toString(bytes);
+    }
+
+    /**
+     * Name of the system property that, when true, keeps the zip files processed by
+     * {@link #downloadAndUnzip(String, Path, String, String, String...)}, for instance
+     * to populate an offline mirror
+     */
+    public static final String KEEP_DOWNLOADS_PROPERTY = "keepdownloads";
+
+    /**
+     * Downloads a zip file from the specified sourceUrl and unpacks it while it is downloaded
+     * into the location that starts at the destPath, and is resolved under destPath/dirName/level1/...
+     * The zip file itself is only kept, in destPath as a file named fileName, when the system
+     * property {@link #KEEP_DOWNLOADS_PROPERTY} is true. If the streamed download fails, the zip
+     * file is downloaded first, resuming it if possible, and unpacked afterwards.
+     * The zip is taken from a mirror or the local store when available, see {@link ArtifactRepository}.
+     * The zip is unpacked into a staging folder that then replaces the final folder, holding a
+     * file lock, so concurrent builds wait for the one that installs it, and reuse it.
+     * An {@link IntegrityManifest} with the sizes and digests of all the files in the zip will be
+     * generated with name "dirName-levelN.integrity" under the final path:
+     * destPath/dirName/.../levelN/subDir-levelN.integrity, or "dirName.integrity" under the final
+     * path: destPath/dirName/subDir.integrity, if levels are not provided.
      *
      * @param sourceUrl a string with the location of a zip file, e.g. https://download2.gluonhq.com/substrate/bar/foo.zip
      * @param destPath the path where the file zip file will be downloaded, e.g. /opt/bar
@@ -633,45 +665,318 @@ public class FileOps {
      * @param dirName the folder under destPath, not null, e.g. foo1
      * @param levels an optional number of folders under dirName
      *               (null or empty values will be skipped),
-     *               e.g. foo2, foo3, so the zip file will be downloaded into /opt/bar/foo.zip
+     *               e.g. foo2, foo3, so the zip file can be kept as /opt/bar/foo.zip
      *              The contents of this zip file will be installed into
      *              /opt/bar/foo1/foo2/foo3, and also the file
-     *               /opt/bar/foo1/foo2/foo3/foo1-foo3.md5 will be created
+     *               /opt/bar/foo1/foo2/foo3/foo1-foo3.integrity will be created
      * @throws IOException
      */
     public static void downloadAndUnzip(String sourceUrl, Path destPath, String fileName,
                                         String dirName, String... levels) throws IOException {
         Objects.requireNonNull(dirName);
 
-        String md5name = levels == null ? dirName + ".md5" :
-                dirName + "-" + Arrays.asList(levels).get(levels.length - 1) + ".md5";
+        String manifestName = getManifestName(dirName, levels);
         Path zipPath = destPath.resolve(fileName);
         Logger.logDebug("Processing zip file: url = " + sourceUrl +
                 ", zip = " + zipPath +
                 ", subDir = " + dirName +
                 ", levels = " + Arrays.asList(levels) +
-                ", md5 = " + md5name);
+                ", manifest = " + manifestName);
+
+        // 1. Set path where zip should be extracted
+        Path zipDir = getZipDir(destPath, dirName, levels);
+        Files.createDirectories(zipDir.getParent());
+
+        // 2. Only one build installs the zip at a time, the others reuse it
+        boolean installed = InstallLock.install(zipDir, () -> isInstalled(zipDir, zipDir.resolve(manifestName)),
+                () -> installStaged(zipDir, manifestName, stagingDir -> downloadAndExtract(sourceUrl, zipPath, stagingDir)));
+        if (!installed) {
+            Logger.logInfo(sourceUrl + " was installed into " + zipDir + " by another process");
+        }
+    }
+
+    /**
+     * Like {@link #downloadAndUnzip(String, Path, String, String, String...)}, but only the
+     * entries of the zip that are accepted by the filter are installed. The entries that are
+     * left out can be installed later on with
+     * {@link #unzipMissing(String, Path, Predicate, String, String...)}, that downloads the zip
+     * again, unless it is available locally: in a mirror, or in the local store of the
+     * {@link ArtifactRepository} after a prefetch. A downloaded zip is only kept in the local
+     * store when the system property {@link #KEEP_DOWNLOADS_PROPERTY} is true.
+     *
+     * @param sourceUrl a string with the location of a zip file
+     * @param destPath the path where the zip file will be installed, e.g. /opt/bar
+     * @param filter accepts the names of the entries to install, as they are in the zip
+     * @param dirName the folder under destPath, not null, e.g. foo1
+     * @param levels an optional number of folders under dirName
+     * @throws IOException if the zip can't be downloaded or extracted
+     */
+    public static void downloadAndUnzip(String sourceUrl, Path destPath, Predicate<String> filter,
+                                        String dirName, String... levels) throws IOException {
+        unzipFetched(sourceUrl, destPath, filter, false, dirName, levels);
+    }
+
+    /**
+     * Installs the entries of a zip that are accepted by the filter, and are missing from a
+     * folder installed by {@link #downloadAndUnzip(String, Path, Predicate, String, String...)},
+     * for instance when a wider set of entries is needed after the configuration of the
+     * project changes. The entries are added to the integrity manifest of the folder, while
+     * the entries that were installed already are not extracted again.
+     * If the folder is not installed, the accepted entries are installed as a new folder.
+     *
+     * @param sourceUrl a string with the location of a zip file
+     * @param destPath the path where the zip file is installed, e.g. /opt/bar
+     * @param filter accepts the names of the entries that have to be installed
+     * @param dirName the folder under destPath, not null, e.g. foo1
+     * @param levels an optional number of folders under dirName
+     * @throws IOException if the zip can't be downloaded or extracted
+     */
+    public static void unzipMissing(String sourceUrl, Path destPath, Predicate<String> filter,
+                                    String dirName, String... levels) throws IOException {
+        unzipFetched(sourceUrl, destPath, filter, true, dirName, levels);
+    }
+
+    /**
+     * Installs the entries of a local zip that are accepted by the filter
+     *
+     * @param zip the zip file
+     * @param destPath the path where the zip file is installed
+     * @param filter accepts the names of the entries to install
+     * @param addMissing if true, the entries are added to the folder when it is installed
+     *                   already, else the folder is replaced
+     * @param dirName the folder under destPath
+     * @param levels an optional number of folders under dirName
+     * @throws IOException if the zip can't be extracted
+     */
+    static void unzipSelected(Path zip, Path destPath, Predicate<String> filter, boolean addMissing,
+                              String dirName, String... levels) throws IOException {
+        Objects.requireNonNull(dirName);
+        Objects.requireNonNull(filter);
+
+        String manifestName = getManifestName(dirName, levels);
+        Path zipDir = getZipDir(destPath, dirName, levels);
+        Path manifestFile = zipDir.resolve(manifestName);
+        Files.createDirectories(zipDir.getParent());
+
+        if (!addMissing || IntegrityManifest.read(manifestFile) == null) {
+            boolean installed = InstallLock.install(zipDir, () -> isInstalled(zipDir, manifestFile),
+                    () -> installStaged(zipDir, manifestName, stagingDir -> extractSelected(zip, stagingDir, filter)));
+            if (!installed) {
+                Logger.logInfo(zip + " was installed into " + zipDir + " by another process");
+            }
+            return;
+        }
+
+        // the entries are checked holding the lock, since another build may be adding them
+        InstallLock.install(zipDir, null, () -> {
+            IntegrityManifest manifest = IntegrityManifest.read(manifestFile);
+            if (manifest == null) {
+                throw new IOException("Error: " + manifestFile + " was removed while installing " + zip);
+            }
+            Map<String, IntegrityManifest.Entry> added = extractSelected(zip, zipDir,
+                    name -> filter.test(name) && !name.endsWith("/") &&
+                            (manifest.get(name) == null || !Files.exists(zipDir.resolve(name))));
+            if (added.isEmpty()) {
+                return;
+            }
+            Logger.logDebug("Installed " + added.size() + " missing entries of " + zip + " into " + zipDir);
+            Map<String, IntegrityManifest.Entry> entries = new HashMap<>(manifest.getEntries());
+            entries.putAll(added);
+            new IntegrityManifest(manifest.getAlgorithm(), entries).write(manifestFile);
+        });
+    }
+
+    /**
+     * Installs the entries of a zip accepted by the filter, see {@link #unzipSelected}. A zip
+     * that is available locally, in a local mirror or in the local store populated by an
+     * explicit prefetch, is read in place. Otherwise the zip is downloaded, and it is kept in
+     * the local store only when the system property {@link #KEEP_DOWNLOADS_PROPERTY} is true,
+     * else it is removed after it is extracted, since a whole SDK zip is too large to keep
+     * around just in case another part of it is needed later on.
+     */
+    private static void unzipFetched(String sourceUrl, Path destPath, Predicate<String> filter, boolean addMissing,
+                                     String dirName, String... levels) throws IOException {
+        URL url = ArtifactRepository.resolve(sourceUrl);
+        if ("file".equals(url.getProtocol())) {
+            Path zip;
+            try {
+                zip = Path.of(url.toURI());
+            } catch (URISyntaxException e) {
+                throw new IOException("Error: invalid location " + url + " of " + sourceUrl, e);
+            }
+            unzipSelected(zip, destPath, filter, addMissing, dirName, levels);
+            return;
+        }
+        if (Boolean.getBoolean(KEEP_DOWNLOADS_PROPERTY)) {
+            unzipSelected(fetchZip(sourceUrl), destPath, filter, addMissing, dirName, levels);
+            return;
+        }
+        // a folder of its own, so concurrent builds don't remove the zip that another one reads
+        Files.createDirectories(destPath);
+        Path downloadDir = Files.createTempDirectory(destPath, ".download");
+        try {
+            Path zip = downloadDir.resolve(Path.of(url.getPath()).getFileName().toString());
+            new Downloader().download(url, zip, FileOps::checkZipFile);
+            unzipSelected(zip, destPath, filter, addMissing, dirName, levels);
+        } finally {
+            deleteDirectory(downloadDir);
+        }
+    }
+
+    /**
+     * Downloads a zip into the local store, and removes it from there if it is not a valid zip
+     */
+    private static Path fetchZip(String sourceUrl) throws IOException {
+        Path zip = ArtifactRepository.fetch(sourceUrl);
+        try {
+            checkZipFile(zip);
+        } catch (IOException e) {
+            Files.deleteIfExists(zip);
+            throw new IOException("Error: " + sourceUrl + " is not a valid zip file: " + e.getMessage(), e);
+        }
+        return zip;
+    }
 
-        // 1. Download zip from urlZip into zipPath
-        FileOps.downloadFile(new URL(sourceUrl), zipPath);
+    /**
+     * Checks that a folder has a valid integrity manifest, and all the files in it, with
+     * the same sizes. The digests are not computed, that is left to the users of the folder.
+     */
+    private static boolean isInstalled(Path zipDir, Path manifestFile) throws IOException {
+        IntegrityManifest manifest = IntegrityManifest.read(manifestFile);
+        if (manifest == null) {
+            return false;
+        }
+        for (Map.Entry<String, IntegrityManifest.Entry> entry : manifest.getEntries().entrySet()) {
+            Path file = zipDir.resolve(entry.getKey());
+            if (Files.isSymbolicLink(file)) {
+                // links can be dangling, their targets are checked as entries of their own
+                continue;
+            }
+            if (!Files.isRegularFile(file) || Files.size(file) != entry.getValue().getSize()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String getManifestName(String dirName, String... levels) {
+        return levels == null ? dirName + IntegrityManifest.FILE_EXTENSION :
+                dirName + "-" + Arrays.asList(levels).get(levels.length - 1) + IntegrityManifest.FILE_EXTENSION;
+    }
 
-        // 2. Set path where zip should be extracted
-        Path zipDir = destPath.resolve(dirName);
-        for (String level : levels) {
-            if (level != null && !level.isEmpty()) {
-                zipDir = zipDir.resolve(level);
+    private static Path getZipDir(Path destPath, String dirName, String... levels) {
+        Path dir = destPath.resolve(dirName);
+        if (levels != null) {
+            for (String level : levels) {
+                if (level != null && !level.isEmpty()) {
+                    dir = dir.resolve(level);
+                }
             }
         }
-        Files.createDirectories(zipDir);
+        return dir.toAbsolutePath().normalize();
+    }
 
-        // 3. Extract zip from zipPath into zipDir
-        Map<String, String> hashes = FileOps.unzipFile(zipPath, zipDir);
+    @FunctionalInterface
+    private interface Extraction {
+        Map<String, IntegrityManifest.Entry> extract(Path targetDir) throws IOException;
+    }
 
-        // 4. Write hashes file into zipDir
-        try (FileOutputStream fos =
-                     new FileOutputStream(zipDir.resolve(md5name).toFile());
-             ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-            oos.writeObject(hashes);
+    /**
+     * Extracts into a staging folder, writes the integrity manifest into it, and replaces
+     * the final folder with it. It has to be called holding the lock of the final folder.
+     */
+    private static void installStaged(Path zipDir, String manifestName, Extraction extraction) throws IOException {
+        // the lock is held, so a staging folder left by a failed installation can be removed
+        Path stagingDir = zipDir.resolveSibling("." + zipDir.getFileName() + "-staging");
+        if (Files.exists(stagingDir)) {
+            deleteDirectory(stagingDir);
+        }
+        Files.createDirectory(stagingDir);
+        try {
+            // 3. Extract zip into a staging folder, and write integrity manifest into it
+            Map<String, IntegrityManifest.Entry> entries = extraction.extract(stagingDir);
+            new IntegrityManifest(IntegrityManifest.Algorithm.CRC32C, entries).write(stagingDir.resolve(manifestName));
+
+            // 4. Replace zipDir with the staging folder
+            replaceDirectory(stagingDir, zipDir);
+        } finally {
+            if (Files.exists(stagingDir)) {
+                deleteDirectory(stagingDir);
+            }
+        }
+    }
+
+    private static Map<String, IntegrityManifest.Entry> extractSelected(Path zip, Path targetDir,
+                                                                        Predicate<String> filter) throws IOException {
+        try {
+            return ZipExtractor.extract(zip, targetDir, IntegrityManifest.Algorithm.CRC32C, filter);
+        } catch (IOException e) {
+            throw new IOException("Error unzipping from " + zip + " into " + targetDir + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Extracts a zip into a folder while it is downloaded, or after it is downloaded
+     * if that fails, and returns the entries of its integrity manifest
+     */
+    private static Map<String, IntegrityManifest.Entry> downloadAndExtract(String sourceUrl, Path zipPath, Path zipDir) throws IOException {
+        URL url = ArtifactRepository.resolve(sourceUrl);
+        boolean keepZip = Boolean.getBoolean(KEEP_DOWNLOADS_PROPERTY);
+        Map<String, IntegrityManifest.Entry> entries;
+        try {
+            entries = ZipExtractor.extract(new Downloader().openStream(url), zipDir,
+                    IntegrityManifest.Algorithm.CRC32C, keepZip ? zipPath : null);
+        } catch (IOException e) {
+            Logger.logDebug("Error extracting " + sourceUrl + " while downloading it: " + e.getMessage() +
+                    ", downloading it to " + zipPath);
+            new Downloader().download(url, zipPath, FileOps::checkZipFile);
+            try {
+                entries = extractZip(zipPath, zipDir, IntegrityManifest.Algorithm.CRC32C);
+            } finally {
+                if (!keepZip) {
+                    Files.deleteIfExists(zipPath);
+                }
+            }
+        }
+        if (entries.isEmpty()) {
+            throw new IOException("Error: " + sourceUrl + " is not a valid zip file");
+        }
+        return entries;
+    }
+
+    /**
+     * Replaces a folder with another one in the same parent folder, renaming them, so
+     * the target folder is never left with a partial content. There are two renames, so
+     * readers that don't hold the install lock of the folder can find it missing in
+     * between, and have to treat that as a folder that is not installed yet.
+     */
+    private static void replaceDirectory(Path source, Path target) throws IOException {
+        Path old = null;
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            old = target.resolveSibling("." + target.getFileName() + "-old");
+            if (Files.exists(old)) {
+                deleteDirectory(old);
+            }
+            move(target, old);
+        }
+        try {
+            move(source, target);
+        } catch (IOException e) {
+            if (old != null) {
+                move(old, target);
+            }
+            throw e;
+        }
+        if (old != null) {
+            deleteDirectory(old);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
         }
     }
 
@@ -701,7 +1006,7 @@ public class FileOps {
         attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
         attributes.put(Attributes.Name.CLASS_PATH, manifestClasspath);
 
-        File jarFile = tmpPath.resolve("classpathJar.jar").toFile();
+        File jarFile = tmpPath.resolve(Constants.PATHING_JAR_FILE).toFile();
         try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jarFile), manifest)) {
             jos.putNextEntry(new ZipEntry("META-INF/"));
         }
@@ -710,13 +1015,16 @@ public class FileOps {
     }
 
     /**
-     * Copies all files in the classpath to a subfolder under the provided temporary path. The
-     * name of the subfolder is defined by {@link Constants#PATHING_JAR_DEPS_PATH}. It then
-     * returns a space separated string containing each classpath entry as relative to the
-     * provided temporary path.
+     * Links or copies all files in the classpath to a subfolder under the provided temporary
+     * path. The name of the subfolder is defined by {@link Constants#PATHING_JAR_DEPS_PATH}.
+     * Files that are already in the subfolder from a previous build and are identical to the
+     * ones in the classpath are reused, and files that are no longer in the classpath are
+     * removed. It then returns a space separated string containing each classpath entry as
+     * relative to the provided temporary path, in classpath order.
      */
-    private static String generateClasspathFromTemporaryFolder(Path tmpPath, String classpath) {
+    private static String generateClasspathFromTemporaryFolder(Path tmpPath, String classpath) throws IOException {
         Path depsPath = tmpPath.resolve(Constants.PATHING_JAR_DEPS_PATH);
+        Files.createDirectories(depsPath);
 
         String[] classpathEntries = classpath.split(File.pathSeparator);
 
@@ -725,89 +1033,81 @@ public class FileOps {
                 .filter(Files::isDirectory)
                 .map(sourceDir -> tmpPath.toAbsolutePath().relativize(sourceDir).toString());
 
-        Stream<String> convertedFiles = Arrays.stream(classpathEntries)
+        List<Path> sourceFiles = Arrays.stream(classpathEntries)
                 .map(Path::of)
                 .filter(Files::isRegularFile)
-                .map(sourceFile -> copyFile(sourceFile, depsPath.resolve(sourceFile.getFileName())))
-                .map(destFile -> Constants.PATHING_JAR_DEPS_PATH + File.separator + destFile.getFileName());
-
-        return Stream.concat(convertedDirectories, convertedFiles)
-                .collect(Collectors.joining(" "));
-    }
-
-    /**
-     * Prints the progress of a file download
-     */
-    private static final class ProgressDownloader {
-
-        private int printPercentage = 0;
-
-        public static void downloadFile(URL fileUrl, Path filePath) {
-            new ProgressDownloader(fileUrl, filePath);
-            System.out.println();
-        }
+                .collect(Collectors.toList());
 
-        private ProgressDownloader(URL fileUrl, Path filePath) {
-            try (
-                    ReadableByteChannel rbc = new RBCWrapper(Channels.newChannel(fileUrl.openStream()), contentLength(fileUrl), this);
-                    FileOutputStream fos = new FileOutputStream(filePath.toFile())) {
-                fos.getChannel().transferFrom( rbc, 0, Long.MAX_VALUE );
-            } catch ( Exception e ) {
-                Logger.logSevere("Downloading failed: " + e.getMessage());
-            }
-        }
+        // when two files have the same name, the last one wins, as it would when copied in order
+        Map<String, Path> depsFiles = new HashMap<>();
+        sourceFiles.forEach(sourceFile -> depsFiles.put(sourceFile.getFileName().toString(), sourceFile));
 
-        public void rbcProgressCallback(RBCWrapper rbc, double progress) {
-            if (((int)progress) >= printPercentage) {
-                printPercentage += 10;
-                System.out.print("\r" + String.format("Download progress: %.2f / %.2fM", toMB(rbc.readSoFar), toMB(rbc.expectedSize)));
-                System.out.flush();
+        try (Stream<Path> files = Files.list(depsPath)) {
+            for (Path stale : files.filter(f -> !depsFiles.containsKey(f.getFileName().toString()))
+                    .collect(Collectors.toList())) {
+                Logger.logDebug("Removing stale pathing jar dependency " + stale);
+                if (Files.isDirectory(stale)) {
+                    deleteDirectory(stale);
+                } else {
+                    Files.delete(stale);
+                }
             }
         }
 
-        private double toMB(long sizeInBytes) {
-            return (double) sizeInBytes / (1024 * 1024);
+        try {
+            depsFiles.entrySet().parallelStream().forEach(entry -> {
+                try {
+                    linkOrCopyFile(entry.getValue(), depsPath.resolve(entry.getKey()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
 
-        private int contentLength( URL url ) {
-            HttpURLConnection connection;
-            int contentLength = -1;
+        Stream<String> convertedFiles = sourceFiles.stream()
+                .map(sourceFile -> Constants.PATHING_JAR_DEPS_PATH + File.separator + sourceFile.getFileName());
 
-            try {
-                HttpURLConnection.setFollowRedirects( false );
-                connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("HEAD");
-                contentLength = connection.getContentLength();
-            } catch ( Exception e ) { }
-            return contentLength;
-        }
+        return Stream.concat(convertedDirectories, convertedFiles)
+                .collect(Collectors.joining(" "));
     }
 
-    private static final class RBCWrapper implements ReadableByteChannel {
-        private long readSoFar;
-        private long expectedSize;
-        private ReadableByteChannel rbc;
-        private ProgressDownloader progressDownloader;
-
-        RBCWrapper( ReadableByteChannel rbc, long expectedSize, ProgressDownloader progressDownloader) {
-            this.progressDownloader = progressDownloader;
-            this.expectedSize = expectedSize;
-            this.rbc = rbc;
-        }
-
-        public boolean isOpen() { return rbc.isOpen(); }
-        public void close() throws IOException { rbc.close(); }
-
-        public int read(ByteBuffer bb) throws IOException {
-            int n;
-            double progress;
-
-            if ((n = rbc.read(bb)) > 0) {
-                readSoFar += n;
-                progress = expectedSize > 0 ? (double) readSoFar / (double) expectedSize * 100.0 : -1.0;
-                progressDownloader.rbcProgressCallback(this, progress);
+    /**
+     * Makes the destination file identical to the source file. If the destination already
+     * exists and it is the same file or has the same content, it is kept. Otherwise, a hard
+     * link to the source is created, if the file system supports it, or else the source
+     * is copied, keeping its last modified time.
+     *
+     * @param source the source file
+     * @param destination the destination file
+     * @throws IOException if the file can't be linked or copied
+     */
+    static void linkOrCopyFile(Path source, Path destination) throws IOException {
+        if (Files.exists(destination, LinkOption.NOFOLLOW_LINKS)) {
+            if (Files.isSameFile(source, destination)) {
+                return;
             }
-            return n;
+            BasicFileAttributes sourceAttributes = Files.readAttributes(source, BasicFileAttributes.class);
+            BasicFileAttributes destinationAttributes = Files.readAttributes(destination, BasicFileAttributes.class);
+            if (destinationAttributes.isRegularFile() && sourceAttributes.size() == destinationAttributes.size()) {
+                if (sourceAttributes.lastModifiedTime().equals(destinationAttributes.lastModifiedTime())) {
+                    return;
+                }
+                String checksum = calculateCheckSum(source.toFile());
+                if (!checksum.isEmpty() && checksum.equals(calculateCheckSum(destination.toFile()))) {
+                    Files.setLastModifiedTime(destination, sourceAttributes.lastModifiedTime());
+                    return;
+                }
+            }
+            Files.delete(destination);
+        }
+        try {
+            Files.createLink(destination, source);
+            Logger.logDebug("Linked " + source + " to " + destination);
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            Files.copy(source, destination, REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            Logger.logDebug("Copied " + source + " to " + destination);
         }
     }
 }
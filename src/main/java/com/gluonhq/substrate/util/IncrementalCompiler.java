@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles C (and Objective-C) sources to object files one translation unit at a
+ * time, so only the units that changed are compiled again, each one with its own
+ * compiler process, concurrently.
+ *
+ * A unit is up to date when its object file exists and the fingerprint stored next
+ * to it matches the current compile command, the content of the source, and the
+ * content of the headers it included when it was last compiled. The included
+ * headers are read from the dependency file that the compiler generates with
+ * <code>-MMD</code>. Compilers that can't generate dependency files (like
+ * <code>cl</code>) track every header of the working directory instead.
+ */
+public class IncrementalCompiler {
+
+    private static final String FINGERPRINT_EXTENSION = ".fingerprint";
+
+    private final String name;
+    private final List<String> command;
+    private final Path workDir;
+    private final String objectFileExtension;
+    private final boolean dependencyFiles;
+
+    /**
+     * Creates an incremental compiler
+     *
+     * @param name the name of the compilation, used for logging
+     * @param command the compiler and its flags, without the source files
+     * @param workDir the directory that contains the sources, where the object files are created
+     * @param objectFileExtension the extension of the object files, without dot
+     * @param dependencyFiles true if the compiler supports <code>-MMD</code> to generate dependency files
+     */
+    public IncrementalCompiler(String name, List<String> command, Path workDir,
+                               String objectFileExtension, boolean dependencyFiles) {
+        this.name = Objects.requireNonNull(name);
+        this.command = List.copyOf(command);
+        this.workDir = Objects.requireNonNull(workDir);
+        this.objectFileExtension = Objects.requireNonNull(objectFileExtension);
+        this.dependencyFiles = dependencyFiles;
+    }
+
+    /**
+     * Compiles the sources that aren't up to date
+     *
+     * @param sources the names of the source files, relative to the working directory
+     * @return true if all the sources are compiled, false otherwise
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public boolean compile(List<String> sources) throws IOException, InterruptedException {
+        List<String> stale = new ArrayList<>();
+        for (String source : sources.stream().distinct().collect(Collectors.toList())) {
+            if (isUpToDate(source)) {
+                Logger.logDebug(name + ": " + source + " is up to date");
+            } else {
+                stale.add(source);
+            }
+        }
+        if (stale.isEmpty()) {
+            Logger.logDebug(name + ": all sources are up to date");
+            return true;
+        }
+        Logger.logDebug(name + ": compiling " + stale);
+
+        TaskGraph graph = new TaskGraph(name, Runtime.getRuntime().availableProcessors());
+        List<TaskGraph.Task<Boolean>> units = new ArrayList<>();
+        for (String source : stale) {
+            units.add(graph.add(source, () -> compileUnit(source)));
+        }
+        graph.run();
+        return units.stream().allMatch(TaskGraph.Task::get);
+    }
+
+    /**
+     * Returns the object file of a given source, like the linker expects it
+     * @param source the name of the source file
+     * @return the path of the object file
+     */
+    public Path getObjectFile(String source) {
+        return workDir.resolve(source.replaceAll("\\..*", "." + objectFileExtension));
+    }
+
+    private boolean isUpToDate(String source) throws IOException {
+        Path objectFile = getObjectFile(source);
+        if (!Files.exists(objectFile)) {
+            return false;
+        }
+        return BuildFingerprint.matches(getFingerprintFile(source), getFingerprint(source));
+    }
+
+    private boolean compileUnit(String source) throws IOException, InterruptedException {
+        Path fingerprintFile = getFingerprintFile(source);
+        Files.deleteIfExists(fingerprintFile);
+
+        ProcessRunner runner = new ProcessRunner(command.toArray(new String[0]));
+        if (dependencyFiles) {
+            runner.addArg("-MMD");
+        }
+        runner.addArg(source);
+        if (runner.runProcess("compile-" + source, workDir.toFile()) != 0) {
+            return false;
+        }
+        BuildFingerprint.write(fingerprintFile, getFingerprint(source));
+        return true;
+    }
+
+    private String getFingerprint(String source) throws IOException {
+        BuildFingerprint fingerprint = new BuildFingerprint()
+                .add("command", command)
+                .add("source", source)
+                .addPath(workDir.resolve(source));
+        for (Path dependency : getDependencies(source)) {
+            fingerprint.add("dependency", dependency.toString())
+                    .addPath(dependency);
+        }
+        return fingerprint.getDigest();
+    }
+
+    private List<Path> getDependencies(String source) throws IOException {
+        if (!dependencyFiles) {
+            try (Stream<Path> files = Files.list(workDir)) {
+                return files.filter(p -> p.getFileName().toString().endsWith(".h"))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+        Path dependencyFile = workDir.resolve(source.replaceAll("\\.[^.]*$", "") + ".d");
+        if (!Files.exists(dependencyFile)) {
+            // the unit hasn't been compiled yet, or the compiler didn't generate it
+            return List.of(dependencyFile);
+        }
+        return parseDependencyFile(Files.readString(dependencyFile)).stream()
+                .map(workDir::resolve)
+                .collect(Collectors.toList());
+    }
+
+    private Path getFingerprintFile(String source) {
+        Path objectFile = getObjectFile(source);
+        return objectFile.resolveSibling(objectFile.getFileName() + FINGERPRINT_EXTENSION);
+    }
+
+    /**
+     * Parses the prerequisites of a make rule, as generated by <code>-MMD</code>:
+     * <pre>target.o: source.c header.h \
+     *  other\ header.h</pre>
+     *
+     * @param content the content of the dependency file
+     * @return the list of files the target depends on
+     */
+    static List<String> parseDependencyFile(String content) {
+        List<String> dependencies = new ArrayList<>();
+        String rule = content.replace("\\\r\n", " ").replace("\\\n", " ");
+        int start = rule.indexOf(": ");
+        if (start < 0) {
+            return dependencies;
+        }
+        // only the first rule lists prerequisites, the next ones (if any) are phony header targets
+        int end = rule.indexOf('\n', start);
+        String prerequisites = end < 0 ? rule.substring(start + 2) : rule.substring(start + 2, end);
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < prerequisites.length(); i++) {
+            char c = prerequisites.charAt(i);
+            if (c == '\\' && i + 1 < prerequisites.length() && prerequisites.charAt(i + 1) == ' ') {
+                current.append(' ');
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                if (current.length() > 0) {
+                    dependencies.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            dependencies.add(current.toString());
+        }
+        return dependencies;
+    }
+}
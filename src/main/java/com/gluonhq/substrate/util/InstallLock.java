@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serializes the installation of a shared dependency, like an SDK under the user's
+ * Substrate folder, between the threads of this process and other processes, with an
+ * exclusive lock on a file next to it.
+ *
+ * The installation is not done by the ones that get the lock after it was installed:
+ * the caller provides a check, that is done holding the lock, for instance that the
+ * integrity manifest of the dependency exists and matches its files, and when it passes
+ * the dependency installed by the previous holder of the lock is reused.
+ *
+ * Only the installations take the lock. A dependency that is replaced by a new
+ * installation is renamed away before the new one is renamed into its place, so readers
+ * that don't take the lock can find it missing during that short window, but they never
+ * find it partially installed.
+ */
+final class InstallLock {
+
+    /**
+     * The extension of the lock files. These are left in place, since removing them
+     * could let two processes hold a lock on different files for the same dependency.
+     */
+    static final String LOCK_EXTENSION = ".lock";
+
+    private static final Map<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    interface Installation {
+        void install() throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Installed {
+        boolean check() throws IOException;
+    }
+
+    private InstallLock() {}
+
+    /**
+     * Runs the given installation holding the lock for the given file, unless the
+     * given check finds it installed once the lock is held
+     *
+     * @param target the path of the dependency
+     * @param installed checks if the dependency is installed, or null to always install it
+     * @param installation the installation
+     * @return true if the installation was done, false if it was done by someone
+     * else before getting the lock
+     * @throws IOException if the lock can't be acquired or the installation fails
+     */
+    static boolean install(Path target, Installed installed, Installation installation) throws IOException {
+        Objects.requireNonNull(installation);
+        Path lockFile = getLockFile(target);
+        Files.createDirectories(lockFile.getParent());
+
+        // file locks are held by the whole process, so threads wait on a monitor first
+        Object monitor = MONITORS.computeIfAbsent(lockFile, p -> new Object());
+        synchronized (monitor) {
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.tryLock();
+                if (lock == null) {
+                    Logger.logInfo("Waiting for another process to install " + target);
+                    lock = channel.lock();
+                }
+                try {
+                    if (installed != null && installed.check()) {
+                        Logger.logDebug("Reusing " + target + ", installed before getting " + lockFile);
+                        return false;
+                    }
+                    installation.install();
+                    return true;
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    static Path getLockFile(Path target) {
+        Path path = target.toAbsolutePath().normalize();
+        return path.resolveSibling(path.getFileName() + LOCK_EXTENSION);
+    }
+}
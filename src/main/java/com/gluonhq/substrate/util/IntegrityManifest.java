@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * A manifest with the relative paths, sizes and digests of the files of a folder,
+ * typically the contents of a downloaded SDK, that is used to verify that the
+ * files are still intact.
+ *
+ * The manifest is a small text file that can be read as a stream: a header line
+ * with the format version and the digest algorithm, followed by one line per file
+ * with its digest, size and path relative to the folder of the manifest, sorted
+ * by path.
+ */
+public final class IntegrityManifest {
+
+    public static final String FILE_EXTENSION = ".integrity";
+
+    /**
+     * Version of the format of the manifest. Manifests with a different
+     * format are ignored.
+     */
+    static final int FORMAT_VERSION = 1;
+    private static final String HEADER = "substrate-integrity";
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * The digest algorithms that a manifest can use
+     */
+    public enum Algorithm {
+        /**
+         * CRC-32C, which is hardware accelerated on most hosts
+         */
+        CRC32C,
+        /**
+         * MD5, in hexadecimal format
+         */
+        MD5;
+
+        /**
+         * @return a new hasher for this algorithm
+         */
+        public Hasher newHasher() {
+            if (this == CRC32C) {
+                CRC32C crc = new CRC32C();
+                return new Hasher() {
+                    @Override
+                    public void update(byte[] bytes, int offset, int length) {
+                        crc.update(bytes, offset, length);
+                    }
+
+                    @Override
+                    public void update(ByteBuffer buffer) {
+                        crc.update(buffer);
+                    }
+
+                    @Override
+                    public String getDigest() {
+                        return String.format("%08x", crc.getValue());
+                    }
+                };
+            }
+            MessageDigest md5;
+            try {
+                md5 = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            return new Hasher() {
+                @Override
+                public void update(byte[] bytes, int offset, int length) {
+                    md5.update(bytes, offset, length);
+                }
+
+                @Override
+                public void update(ByteBuffer buffer) {
+                    md5.update(buffer);
+                }
+
+                @Override
+                public String getDigest() {
+                    StringBuilder sb = new StringBuilder();
+                    for (byte b : md5.digest()) {
+                        sb.append(String.format("%02x", b));
+                    }
+                    return sb.toString();
+                }
+            };
+        }
+
+        /**
+         * Computes the digest of a file with this algorithm
+         * @param file the file
+         * @return the digest of the file
+         * @throws IOException if the file can't be read
+         */
+        public String digest(Path file) throws IOException {
+            Hasher hasher = newHasher();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    hasher.update(buffer);
+                    buffer.clear();
+                }
+            }
+            return hasher.getDigest();
+        }
+    }
+
+    /**
+     * Computes a digest incrementally
+     */
+    public interface Hasher {
+        void update(byte[] bytes, int offset, int length);
+        void update(ByteBuffer buffer);
+        String getDigest();
+    }
+
+    /**
+     * The size and digest of a file
+     */
+    public static final class Entry {
+        private final long size;
+        private final String digest;
+
+        public Entry(long size, String digest) {
+            this.size = size;
+            this.digest = Objects.requireNonNull(digest);
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return size == entry.size && digest.equals(entry.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, digest);
+        }
+    }
+
+    private final Algorithm algorithm;
+    private final Map<String, Entry> entries;
+
+    /**
+     * Creates a manifest
+     * @param algorithm the algorithm of the digests
+     * @param entries the entries by path relative to the folder of the manifest, with '/' as separator
+     */
+    public IntegrityManifest(Algorithm algorithm, Map<String, Entry> entries) {
+        this.algorithm = Objects.requireNonNull(algorithm);
+        this.entries = new TreeMap<>(entries);
+    }
+
+    /**
+     * Creates a manifest for the given files of a folder
+     *
+     * @param root the folder of the manifest
+     * @param files the files to add, in the folder or any of its subfolders
+     * @return a manifest that uses {@link Algorithm#CRC32C}
+     * @throws IOException if any of the files can't be read
+     */
+    public static IntegrityManifest of(Path root, Collection<Path> files) throws IOException {
+        Map<String, Entry> entries = new HashMap<>();
+        for (Path file : files) {
+            entries.put(toRelativePath(root, file), new Entry(Files.size(file), Algorithm.CRC32C.digest(file)));
+        }
+        return new IntegrityManifest(Algorithm.CRC32C, entries);
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Returns the entry of a file
+     * @param relativePath the path of the file relative to the folder of the manifest, with '/' as separator
+     * @return the entry, or null if the manifest doesn't contain the file
+     */
+    public Entry get(String relativePath) {
+        return entries.get(relativePath);
+    }
+
+    /**
+     * @return the entries by relative path, sorted by path
+     */
+    public Map<String, Entry> getEntries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * @return the number of files in the manifest
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Verifies only the given files against the manifest. A file is valid if it is
+     * in the manifest, and has the same size and digest. The digests are kept in
+     * the given record file, so they are only computed again for files that
+     * changed since they were last verified.
+     *
+     * @param root the folder of the manifest
+     * @param files the files to verify
+     * @param recordFile the file where the digests of the verified files are recorded
+     * @return true if all the files are valid
+     */
+    public boolean verify(Path root, List<Path> files, Path recordFile) {
+        for (Path file : files) {
+            Entry entry = entries.get(toRelativePath(root, file));
+            try {
+                if (entry == null || Files.size(file) != entry.getSize()) {
+                    Logger.logDebug("File " + file + " doesn't match the integrity manifest");
+                    return false;
+                }
+            } catch (IOException e) {
+                Logger.logDebug("File " + file + " can't be verified: " + e.getMessage());
+                return false;
+            }
+        }
+        Map<String, String> digests = ChecksumCache.getChecksums(recordFile, files, file -> {
+            try {
+                return algorithm.digest(file);
+            } catch (IOException e) {
+                return "";
+            }
+        });
+        for (Path file : files) {
+            if (!entries.get(toRelativePath(root, file)).getDigest().equals(digests.get(file.getFileName().toString()))) {
+                Logger.logDebug("File " + file + " has an invalid digest");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a manifest
+     * @param file the manifest file
+     * @return the manifest, or null if it doesn't exist or it can't be read
+     */
+    public static IntegrityManifest read(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String[] header = Objects.requireNonNullElse(reader.readLine(), "").split(" ");
+            if (header.length != 3 || !HEADER.equals(header[0]) ||
+                    !String.valueOf(FORMAT_VERSION).equals(header[1])) {
+                Logger.logDebug("Ignoring integrity manifest with a different format: " + file);
+                return null;
+            }
+            Algorithm algorithm = Algorithm.valueOf(header[2]);
+            Map<String, Entry> entries = new HashMap<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] parts = line.split(" ", 3);
+                if (parts.length != 3) {
+                    throw new IOException("Invalid line: " + line);
+                }
+                entries.put(parts[2], new Entry(Long.parseLong(parts[1]), parts[0]));
+            }
+            return new IntegrityManifest(algorithm, entries);
+        } catch (IOException | IllegalArgumentException e) {
+            Logger.logDebug("Error reading integrity manifest " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the manifest
+     * @param file the manifest file
+     * @throws IOException if the manifest can't be written
+     */
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmpFile = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+                writer.write(HEADER + " " + FORMAT_VERSION + " " + algorithm.name());
+                writer.newLine();
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    writer.write(entry.getValue().getDigest() + " " + entry.getValue().getSize() + " " + entry.getKey());
+                    writer.newLine();
+                }
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    static String toRelativePath(Path root, Path file) {
+        return root.toAbsolutePath().normalize()
+                .relativize(file.toAbsolutePath().normalize())
+                .toString().replace('\\', '/');
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import com.gluonhq.substrate.model.InternalProjectConfiguration;
+
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The optional parts of the JavaFX static SDK. Their native libraries are most of the
+ * size of the SDK, and are only needed to link projects that use the matching modules,
+ * so they are only installed when the project needs them.
+ */
+enum JavaFXComponent {
+
+    WEB("javafx-web", List.of("jfxwebkit", "WebCore", "XMLJava", "JavaScriptCore", "bmalloc",
+            "icui18n", "SqliteJava", "XSLTJava", "PAL", "WebCoreTestSupport", "WTF", "icuuc", "icudata")),
+    MEDIA("javafx-media", List.of("jfxmedia", "fxplugins", "avplugin", "gstreamer-lite", "glib-lite"));
+
+    private final String artifactId;
+    private final List<String> libraries;
+
+    JavaFXComponent(String artifactId, List<String> libraries) {
+        this.artifactId = artifactId;
+        this.libraries = libraries;
+    }
+
+    /**
+     * Returns the components that are needed to link the project of the given configuration
+     *
+     * @param configuration the configuration of the project
+     * @return the set of components
+     */
+    static Set<JavaFXComponent> requiredBy(InternalProjectConfiguration configuration) {
+        Set<JavaFXComponent> components = EnumSet.noneOf(JavaFXComponent.class);
+        if (configuration.hasWeb()) {
+            components.add(WEB);
+        }
+        if (configuration.getClasspath().contains(MEDIA.artifactId)) {
+            components.add(MEDIA);
+        }
+        return components;
+    }
+
+    /**
+     * Checks if an entry of the SDK is a native library of this component, like
+     * sdk/lib/libjfxwebkit.a or sdk/lib/jfxwebkit.lib. The jars of the modules are
+     * small, and are always installed.
+     *
+     * @param entryName the name of the entry in the SDK zip
+     * @return true if the entry belongs to this component
+     */
+    boolean contains(String entryName) {
+        if (entryName.endsWith("/")) {
+            return false;
+        }
+        String fileName = Path.of(entryName).getFileName().toString();
+        String baseName;
+        if (fileName.startsWith("lib") && fileName.endsWith(".a")) {
+            baseName = fileName.substring(3, fileName.length() - 2);
+        } else if (fileName.endsWith(".lib")) {
+            baseName = fileName.substring(0, fileName.length() - 4);
+        } else {
+            return false;
+        }
+        // variants like libjfxmedia_avf.a belong to the library too
+        return libraries.stream().anyMatch(lib -> baseName.equals(lib) ||
+                baseName.startsWith(lib + "_") || baseName.startsWith(lib + "-"));
+    }
+
+    /**
+     * Returns a filter that accepts the entries of the SDK that don't belong to any
+     * component, and the ones that belong to the given components
+     *
+     * @param components the components to install
+     * @return a filter for the names of the entries of the SDK zip
+     */
+    static Predicate<String> filter(Set<JavaFXComponent> components) {
+        return name -> {
+            for (JavaFXComponent component : values()) {
+                if (component.contains(name)) {
+                    return components.contains(component);
+                }
+            }
+            return true;
+        };
+    }
+}
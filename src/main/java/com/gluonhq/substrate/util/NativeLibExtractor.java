@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import com.gluonhq.substrate.model.ClassPathIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts the native libraries found in the jars of a classpath into a folder,
+ * incrementally: a library that is already in the folder, extracted from an entry
+ * with the same name, size and CRC, is left in place, and only the new or changed
+ * libraries are extracted, reading each jar once, and the jars in parallel.
+ * Libraries that are no longer on the classpath are removed from the folder.
+ *
+ * As before, when several jars contain a library with the same file name, the first
+ * one in classpath order that passes the filter is used.
+ *
+ * The result of the filter for each entry is kept, keyed by its name, size and CRC,
+ * in a state file next to the folder, so the filter, which may run external tools,
+ * only checks new or changed entries. Entries are written to a temporary folder to
+ * be checked, and the rejected ones never reach the target folder.
+ */
+public final class NativeLibExtractor {
+
+    /**
+     * Version of the format of the state file. Files with a different
+     * format are ignored, and replaced on the next write.
+     * Version 2: the results of the filters that used objdump are discarded.
+     */
+    static final String FORMAT_VERSION = "2";
+    private static final String FORMAT_KEY = "format";
+    private static final String ACCEPTED_PREFIX = "accepted.";
+    private static final String INSTALLED_PREFIX = "installed.";
+
+    private final Path libPath;
+    private final Path statePath;
+    private final Predicate<Path> filter;
+
+    /**
+     * Creates an extractor
+     *
+     * @param libPath the folder where the libraries are extracted
+     * @param statePath the file where the state of the folder is kept
+     * @param filter a predicate that the extracted libraries should match, or null
+     */
+    public NativeLibExtractor(Path libPath, Path statePath, Predicate<Path> filter) {
+        this.libPath = Objects.requireNonNull(libPath);
+        this.statePath = Objects.requireNonNull(statePath);
+        this.filter = filter;
+    }
+
+    /**
+     * Updates the folder with the libraries from the given entries
+     *
+     * @param entries the entries of the native libraries, in classpath order
+     * @throws IOException if the libraries can't be extracted
+     */
+    public void extract(List<ClassPathIndex.Entry> entries) throws IOException {
+        Files.createDirectories(libPath);
+        Properties state = readState();
+        Properties newState = new Properties();
+        newState.setProperty(FORMAT_KEY, FORMAT_VERSION);
+
+        Path tmpDir = Files.createTempDirectory(libPath.getParent(), "native-libs");
+        try {
+            // 1. check the entries that were not checked before, writing them into the temporary folder
+            Map<ClassPathIndex.Entry, Path> extracted = new ConcurrentHashMap<>();
+            List<ClassPathIndex.Entry> unknown = entries.stream()
+                    .filter(e -> state.getProperty(ACCEPTED_PREFIX + getKey(e)) == null)
+                    .collect(Collectors.toList());
+            extract(unknown, tmpDir, extracted);
+            Map<String, Boolean> accepted = new ConcurrentHashMap<>();
+            unknown.parallelStream().forEach(e -> {
+                Path file = extracted.get(e);
+                boolean result = filter == null || filter.test(file);
+                if (!result) {
+                    Logger.logDebug("File not copied, doesn't pass filter: " + e);
+                }
+                accepted.put(getKey(e), result);
+            });
+
+            // 2. the first accepted entry of each name is the one in the folder
+            Map<String, ClassPathIndex.Entry> selected = new LinkedHashMap<>();
+            for (ClassPathIndex.Entry entry : entries) {
+                String key = getKey(entry);
+                boolean isAccepted = accepted.containsKey(key) ? accepted.get(key) :
+                        Boolean.parseBoolean(state.getProperty(ACCEPTED_PREFIX + key));
+                if (entry.getCrc() != -1) {
+                    newState.setProperty(ACCEPTED_PREFIX + key, Boolean.toString(isAccepted));
+                }
+                if (isAccepted) {
+                    selected.putIfAbsent(getFileName(entry), entry);
+                }
+            }
+
+            // 3. only the libraries that changed are written
+            List<ClassPathIndex.Entry> changed = new ArrayList<>();
+            for (Map.Entry<String, ClassPathIndex.Entry> lib : selected.entrySet()) {
+                ClassPathIndex.Entry entry = lib.getValue();
+                Path file = libPath.resolve(lib.getKey());
+                if (entry.getCrc() == -1 || !getKey(entry).equals(state.getProperty(INSTALLED_PREFIX + lib.getKey())) ||
+                        !Files.isRegularFile(file) || Files.size(file) != entry.getSize()) {
+                    changed.add(entry);
+                }
+            }
+            extract(changed.stream().filter(e -> !extracted.containsKey(e)).collect(Collectors.toList()),
+                    tmpDir, extracted);
+            for (ClassPathIndex.Entry entry : changed) {
+                Files.move(extracted.get(entry), libPath.resolve(getFileName(entry)), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Logger.logDebug("Native libs: " + selected.size() + " in " + libPath + ", " + changed.size() + " extracted");
+
+            // 4. remove the libraries that are not on the classpath anymore
+            try (Stream<Path> files = Files.list(libPath)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    if (!selected.containsKey(file.getFileName().toString())) {
+                        Logger.logDebug("Removing native lib " + file);
+                        if (Files.isDirectory(file)) {
+                            FileOps.deleteDirectory(file);
+                        } else {
+                            Files.delete(file);
+                        }
+                    }
+                }
+            }
+            selected.forEach((name, entry) -> newState.setProperty(INSTALLED_PREFIX + name, getKey(entry)));
+        } finally {
+            FileOps.deleteDirectory(tmpDir);
+        }
+        writeState(newState);
+    }
+
+    /**
+     * Extracts the given entries into a folder, opening each jar once, and the jars in parallel
+     */
+    private static void extract(List<ClassPathIndex.Entry> entries, Path targetDir,
+                                Map<ClassPathIndex.Entry, Path> extracted) throws IOException {
+        Map<Path, List<ClassPathIndex.Entry>> byJar = entries.stream()
+                .collect(Collectors.groupingBy(e -> e.getSource().getPath(), LinkedHashMap::new, Collectors.toList()));
+        List<Path> jars = new ArrayList<>(byJar.keySet());
+        try {
+            IntStream.range(0, jars.size()).parallel().forEach(i -> {
+                Path jar = jars.get(i);
+                Path jarDir = targetDir.resolve(Integer.toString(i));
+                try (ZipFile zip = new ZipFile(jar.toFile())) {
+                    Files.createDirectories(jarDir);
+                    Set<String> names = new HashSet<>();
+                    for (ClassPathIndex.Entry entry : byJar.get(jar)) {
+                        ZipEntry zipEntry = zip.getEntry(entry.getName());
+                        if (zipEntry == null) {
+                            throw new IOException("Entry " + entry.getName() + " not found in " + jar);
+                        }
+                        // entries with the same file name in one jar go to different folders
+                        String fileName = getFileName(entry);
+                        Path dir = names.add(fileName) ? jarDir : Files.createTempDirectory(jarDir, "entry");
+                        Path file = dir.resolve(fileName);
+                        try (InputStream is = zip.getInputStream(zipEntry);
+                             OutputStream os = Files.newOutputStream(file)) {
+                            is.transferTo(os);
+                        }
+                        extracted.put(entry, file);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String getFileName(ClassPathIndex.Entry entry) {
+        String name = entry.getName();
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * The key of the content of an entry, which doesn't depend on the jar it comes from
+     */
+    private static String getKey(ClassPathIndex.Entry entry) {
+        return entry.getName() + ":" + entry.getSize() + ":" + Long.toHexString(entry.getCrc());
+    }
+
+    private Properties readState() {
+        Properties properties = new Properties();
+        if (Files.exists(statePath)) {
+            try (InputStream is = Files.newInputStream(statePath)) {
+                properties.load(is);
+            } catch (IOException | IllegalArgumentException e) {
+                Logger.logDebug("Error reading " + statePath + ": " + e.getMessage());
+                return new Properties();
+            }
+        }
+        if (!FORMAT_VERSION.equals(properties.getProperty(FORMAT_KEY))) {
+            return new Properties();
+        }
+        return properties;
+    }
+
+    private void writeState(Properties properties) throws IOException {
+        Path tmp = Files.createTempFile(statePath.getParent(), statePath.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(tmp)) {
+                properties.store(os, "Substrate native libs");
+            }
+            Files.move(tmp, statePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import com.gluonhq.substrate.Constants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the results of toolchain probes (like the output of <code>java -version</code>
+ * or <code>gcc --version</code>), so that they don't need to spawn a process again
+ * while the probed tool doesn't change.
+ *
+ * A result is bound to the size and last modified time of the files it was derived
+ * from (typically the tool binary), so it is discarded as soon as any of them changes.
+ * Results are kept in memory for the lifetime of the JVM, so several dispatchers
+ * created in the same process (e.g. the goals of a single Maven or Gradle session)
+ * share them, and they are also persisted in a small properties file under the user's
+ * Substrate directory, so that later builds can reuse them as well.
+ * Failed probes are not cached.
+ */
+public final class ProbeCache {
+
+    /**
+     * Version of the format of the persisted file. Files with a different
+     * format are ignored, and replaced on the next write.
+     */
+    static final String FORMAT_VERSION = "1";
+    private static final String FORMAT_KEY = "format";
+
+    // results by digest of the probe name and the stamps of its inputs
+    private static final Map<String, String> RESULTS = new ConcurrentHashMap<>();
+    private static final Object WRITE_LOCK = new Object();
+
+    private static volatile Path storePath = Constants.USER_SUBSTRATE_PATH.resolve(Constants.PROBE_CACHE_FILE);
+
+    private ProbeCache() {}
+
+    /**
+     * The action that computes the result of a probe
+     */
+    @FunctionalInterface
+    public interface Probe {
+        String run() throws IOException, InterruptedException;
+    }
+
+    /**
+     * Returns the result of a probe, running it only if there is no result for the
+     * current state of its input files
+     *
+     * @param name the name of the probe, like "graalvm-java-version"
+     * @param inputs the files that determine the result, like the tool binary
+     * @param probe the action that computes the result
+     * @return the result of the probe
+     * @throws IOException if the probe fails
+     * @throws InterruptedException if the probe is interrupted
+     */
+    public static String get(String name, List<Path> inputs, Probe probe) throws IOException, InterruptedException {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(probe);
+        BuildFingerprint identity = new BuildFingerprint().add("probe", name);
+        BuildFingerprint fingerprint = new BuildFingerprint().add("probe", name);
+        for (Path input : inputs) {
+            identity.add("input", input.toAbsolutePath().normalize().toString());
+            fingerprint.addStamp(input);
+        }
+        String id = identity.getDigest();
+        String key = fingerprint.getDigest();
+
+        String value = RESULTS.get(key);
+        if (value == null) {
+            value = readStored(id, key);
+            if (value != null) {
+                RESULTS.put(key, value);
+            }
+        }
+        if (value != null) {
+            Logger.logDebug("Reusing result of probe " + name);
+            return value;
+        }
+        value = Objects.requireNonNull(probe.run(), "Probe " + name + " returned null");
+        RESULTS.put(key, value);
+        store(id, key, value);
+        return value;
+    }
+
+    /**
+     * Discards all the results kept in memory. The persisted results are kept.
+     */
+    public static void clear() {
+        RESULTS.clear();
+    }
+
+    /**
+     * Sets the file where the results are persisted
+     * @param path the path of the file, or null to keep the results only in memory
+     */
+    public static void setStorePath(Path path) {
+        storePath = path;
+    }
+
+    private static String readStored(String identity, String key) {
+        Path path = storePath;
+        if (path == null) {
+            return null;
+        }
+        String entry = load(path).getProperty(identity);
+        if (entry == null) {
+            return null;
+        }
+        // an entry is the stamp of the inputs, followed by the result
+        int separator = entry.indexOf(' ');
+        if (separator < 0 || !key.equals(entry.substring(0, separator))) {
+            return null;
+        }
+        return entry.substring(separator + 1);
+    }
+
+    private static void store(String identity, String key, String value) {
+        Path path = storePath;
+        if (path == null) {
+            return;
+        }
+        synchronized (WRITE_LOCK) {
+            try {
+                // merge with the results persisted by other processes
+                Properties properties = load(path);
+                properties.setProperty(FORMAT_KEY, FORMAT_VERSION);
+                properties.setProperty(identity, key + " " + value);
+                Files.createDirectories(path.getParent());
+                Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+                try (OutputStream os = Files.newOutputStream(tmp)) {
+                    properties.store(os, "Substrate toolchain probes");
+                }
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Logger.logDebug("Error storing probe results in " + path + ": " + e);
+            }
+        }
+    }
+
+    private static Properties load(Path path) {
+        Properties properties = new Properties();
+        if (!Files.isRegularFile(path)) {
+            return properties;
+        }
+        try (InputStream is = Files.newInputStream(path)) {
+            properties.load(is);
+        } catch (IOException | IllegalArgumentException e) {
+            Logger.logDebug("Error reading probe results from " + path + ": " + e);
+            return new Properties();
+        }
+        if (!FORMAT_VERSION.equals(properties.getProperty(FORMAT_KEY))) {
+            Logger.logDebug("Ignoring probe results from " + path + " with format " + properties.getProperty(FORMAT_KEY));
+            return new Properties();
+        }
+        return properties;
+    }
+}
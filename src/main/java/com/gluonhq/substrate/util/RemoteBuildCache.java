@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Optional remote tier of the {@link BuildCache}, shared by several hosts
+ * (like the agents of a CI farm) through a plain HTTP server.
+ *
+ * Entries are stored as compressed zip archives, with <code>GET</code> and
+ * <code>PUT</code> requests to <code>${baseUrl}/${key}.zip</code>. In read-only
+ * mode, entries are never uploaded.
+ *
+ * The remote cache never fails a build: any error is logged, and after a
+ * connection error or a timeout the cache is disabled for the rest of the build.
+ */
+public class RemoteBuildCache {
+
+    private final String baseUrl;
+    private final boolean readOnly;
+    private final int timeoutMillis;
+    private boolean available = true;
+
+    /**
+     * Creates a remote build cache
+     * @param baseUrl the base URL of the cache server
+     * @param readOnly if true, entries are downloaded but never uploaded
+     * @param timeoutMillis the connect and read timeout for every request, in milliseconds
+     */
+    public RemoteBuildCache(String baseUrl, boolean readOnly, int timeoutMillis) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.readOnly = readOnly;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Downloads the artifacts cached for the given key into the target directory.
+     *
+     * @param key the key of the entry
+     * @param targetDir the directory where the artifacts are extracted
+     * @return true if the entry was found and extracted, false otherwise
+     */
+    public boolean fetch(String key, Path targetDir) {
+        if (!available) {
+            return false;
+        }
+        try {
+            HttpURLConnection connection = openConnection(key);
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                discardErrorStream(connection);
+                if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                    Logger.logDebug("Remote build cache miss for " + key);
+                } else {
+                    Logger.logInfo("Remote build cache returned " + code + " for " + key);
+                }
+                return false;
+            }
+            Files.createDirectories(targetDir);
+            // a broken download must not leave partial artifacts in the target directory
+            Path staging = Files.createTempDirectory(targetDir.getParent(), "remote-cache");
+            try {
+                List<Path> files = new ArrayList<>();
+                try (ZipInputStream zis = new ZipInputStream(connection.getInputStream())) {
+                    ZipEntry entry;
+                    while ((entry = zis.getNextEntry()) != null) {
+                        Path file = staging.resolve(Path.of(entry.getName()).getFileName().toString());
+                        Files.copy(zis, file, REPLACE_EXISTING);
+                        files.add(file);
+                    }
+                }
+                for (Path file : files) {
+                    Files.move(file, targetDir.resolve(file.getFileName()), REPLACE_EXISTING);
+                }
+                return !files.isEmpty();
+            } finally {
+                FileOps.rmdir(staging);
+            }
+        } catch (IOException e) {
+            handleError("fetching " + key, e);
+            return false;
+        }
+    }
+
+    /**
+     * Uploads a compressed archive of the given artifacts under the given key.
+     * This is a no-op in read-only mode.
+     *
+     * @param key the key of the entry
+     * @param files the artifacts to upload, with unique file names
+     * @return true if the entry was uploaded, false otherwise
+     */
+    public boolean upload(String key, List<Path> files) {
+        if (readOnly || !available) {
+            return false;
+        }
+        try {
+            // objectfiles are large: the archive is written to disk and streamed from there,
+            // instead of keeping it, and a copy buffered by the connection, in memory
+            Path archive = Files.createTempFile("remote-cache", ".zip");
+            try {
+                createArchive(files, archive);
+                try {
+                    return put(key, archive);
+                } catch (SocketTimeoutException e) {
+                    throw e;
+                } catch (IOException e) {
+                    // unlike a buffered body, a streamed one is not sent again by HttpURLConnection
+                    // when the server closed the pooled connection meanwhile, so it is retried here
+                    Logger.logDebug("Retrying upload of " + key + " after: " + e);
+                    return put(key, archive);
+                }
+            } finally {
+                Files.deleteIfExists(archive);
+            }
+        } catch (IOException e) {
+            handleError("uploading " + key, e);
+            return false;
+        }
+    }
+
+    private boolean put(String key, Path archive) throws IOException {
+        HttpURLConnection connection = openConnection(key);
+        connection.setRequestMethod("PUT");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/zip");
+        connection.setFixedLengthStreamingMode(Files.size(archive));
+        try (OutputStream os = connection.getOutputStream()) {
+            Files.copy(archive, os);
+        }
+        int code = connection.getResponseCode();
+        discardErrorStream(connection);
+        if (code / 100 != 2) {
+            Logger.logInfo("Remote build cache returned " + code + " when uploading " + key);
+            return false;
+        }
+        return true;
+    }
+
+    private HttpURLConnection openConnection(String key) throws IOException {
+        if (key == null || !key.matches("[0-9a-zA-Z]+")) {
+            throw new IllegalArgumentException("Invalid cache key: " + key);
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + key + ".zip").openConnection();
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    /**
+     * Consumes the body of an error response, if any, so the underlying
+     * connection can be reused by the next request
+     */
+    private static void discardErrorStream(HttpURLConnection connection) throws IOException {
+        try (InputStream es = connection.getErrorStream()) {
+            if (es != null) {
+                es.transferTo(OutputStream.nullOutputStream());
+            }
+        }
+    }
+
+    private static void createArchive(List<Path> files, Path archive) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(archive))) {
+            for (Path file : files) {
+                zos.putNextEntry(new ZipEntry(file.getFileName().toString()));
+                try (InputStream is = Files.newInputStream(file)) {
+                    is.transferTo(zos);
+                }
+                zos.closeEntry();
+            }
+        }
+    }
+
+    private void handleError(String action, IOException e) {
+        // don't keep paying for timeouts or an unreachable server for the rest of the build
+        available = false;
+        String reason = e instanceof SocketTimeoutException ? "timeout" : e.toString();
+        Logger.logInfo("Remote build cache disabled for this build, error " + action + ": " + reason);
+    }
+}
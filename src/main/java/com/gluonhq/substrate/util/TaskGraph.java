@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * A graph of build tasks, where each task declares the tasks it depends on,
+ * and consumes their results as its inputs.
+ *
+ * When the graph runs, every task starts as soon as all of its dependencies
+ * have finished, on a bounded work-stealing pool, so independent tasks run
+ * concurrently. A failing task prevents its dependents from running, and the
+ * first failure is rethrown once every other task has finished.
+ *
+ * Since a task can only depend on tasks that were added before it, the graph
+ * can't contain cycles.
+ */
+public class TaskGraph {
+
+    private static final int MIN_PARALLELISM = 4;
+
+    private final String name;
+    private final int parallelism;
+    private final List<Task<?>> tasks = new ArrayList<>();
+    private long startTime;
+    private boolean started;
+
+    /**
+     * Creates a task graph that runs up to one task per available processor
+     * at the same time, and at least {@value #MIN_PARALLELISM}, since most build
+     * tasks spend their time waiting for an external process
+     * @param name the name of the graph, used for logging
+     */
+    public TaskGraph(String name) {
+        this(name, Math.max(MIN_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Creates a task graph
+     * @param name the name of the graph, used for logging
+     * @param parallelism the maximum number of tasks running at the same time
+     */
+    public TaskGraph(String name, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism should be at least 1, but was " + parallelism);
+        }
+        this.name = Objects.requireNonNull(name);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Adds a task to the graph
+     *
+     * @param name the name of the task, used for logging and reporting
+     * @param action the action of the task. It can use the results of its dependencies.
+     * @param dependencies the tasks that have to finish successfully before this task starts
+     * @param <T> the type of the result of the task
+     * @return the task
+     */
+    public <T> Task<T> add(String name, TaskAction<T> action, Task<?>... dependencies) {
+        if (started) {
+            throw new IllegalStateException("Tasks can't be added to " + this.name + " once it has started");
+        }
+        for (Task<?> dependency : dependencies) {
+            if (!tasks.contains(dependency)) {
+                throw new IllegalArgumentException("Task " + name + " depends on " + dependency.getName() +
+                        ", that is not part of " + this.name);
+            }
+        }
+        Task<T> task = new Task<>(name, action, Arrays.asList(dependencies));
+        tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Runs all the tasks of the graph, and waits until all of them have finished.
+     * When all the tasks succeed, the critical path of the graph is logged at debug
+     * level; callers can report it with {@link #getCriticalPathReport()}.
+     *
+     * @throws IOException if a task failed with an IOException
+     * @throws InterruptedException if a task or the current thread was interrupted
+     */
+    public void run() throws IOException, InterruptedException {
+        if (started) {
+            throw new IllegalStateException(name + " has already run");
+        }
+        started = true;
+        startTime = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Task<?> task : tasks) {
+                task.schedule(pool);
+            }
+            Throwable failure = null;
+            for (Task<?> task : tasks) {
+                try {
+                    task.future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = unwrap(e.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                rethrow(failure);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        Logger.logDebug(getCriticalPathReport());
+    }
+
+    /**
+     * Returns the chain of tasks that determined the total duration of the graph:
+     * starting from the last task to finish, and going back through the dependency
+     * that finished last for each task.
+     *
+     * @return the list of tasks of the critical path, in order of execution, or an
+     * empty list if the graph hasn't run successfully
+     */
+    public List<Task<?>> getCriticalPath() {
+        if (tasks.isEmpty() || tasks.stream().anyMatch(t -> !t.isDone())) {
+            return Collections.emptyList();
+        }
+        Comparator<Task<?>> byEnd = Comparator.comparingLong(t -> t.endTime);
+        List<Task<?>> path = new ArrayList<>();
+        Task<?> task = tasks.stream().max(byEnd).get();
+        while (task != null) {
+            path.add(0, task);
+            task = task.dependencies.stream().max(byEnd).orElse(null);
+        }
+        return path;
+    }
+
+    /**
+     * Returns a one line description of the critical path of the graph, with the
+     * duration of each task
+     * @return a string with the critical path
+     */
+    public String getCriticalPathReport() {
+        List<Task<?>> path = getCriticalPath();
+        if (path.isEmpty()) {
+            return "No critical path available for " + name;
+        }
+        long total = path.get(path.size() - 1).endTime - startTime;
+        return "Critical path of " + name + " (" + format(total) + "): " + path.stream()
+                .map(t -> t.getName() + " (" + format(t.getDuration()) + ")")
+                .collect(Collectors.joining(" -> "));
+    }
+
+    private static String format(long nanos) {
+        return String.format(Locale.ROOT, "%.1f s", nanos / 1e9);
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        while (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    private static void rethrow(Throwable t) throws IOException, InterruptedException {
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        }
+        if (t instanceof InterruptedException) {
+            throw (InterruptedException) t;
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new IOException(t);
+    }
+
+    /**
+     * The action performed by a task
+     * @param <T> the type of the result of the action
+     */
+    @FunctionalInterface
+    public interface TaskAction<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * A task of the graph
+     * @param <T> the type of the result of the task
+     */
+    public static final class Task<T> {
+
+        private final String name;
+        private final TaskAction<T> action;
+        private final List<Task<?>> dependencies;
+        private CompletableFuture<T> future;
+        private volatile long startTime;
+        private volatile long endTime;
+
+        private Task(String name, TaskAction<T> action, List<Task<?>> dependencies) {
+            this.name = Objects.requireNonNull(name);
+            this.action = Objects.requireNonNull(action);
+            this.dependencies = dependencies;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the result of the task. This can be called from the action of
+         * a dependent task, or after the graph has run.
+         *
+         * @return the result of the task
+         * @throws IllegalStateException if the task hasn't finished successfully
+         */
+        public T get() {
+            if (!isDone()) {
+                throw new IllegalStateException("Task " + name + " hasn't finished successfully");
+            }
+            return future.join();
+        }
+
+        /**
+         * Returns the time spent running the action of the task
+         * @return the duration in nanoseconds
+         */
+        public long getDuration() {
+            return endTime - startTime;
+        }
+
+        private boolean isDone() {
+            return future != null && future.isDone() && !future.isCompletedExceptionally();
+        }
+
+        private void schedule(ForkJoinPool pool) {
+            CompletableFuture<?>[] inputs = dependencies.stream()
+                    .map(t -> t.future)
+                    .toArray(CompletableFuture[]::new);
+            future = CompletableFuture.allOf(inputs).thenApplyAsync(v -> execute(), pool);
+        }
+
+        private T execute() {
+            startTime = System.nanoTime();
+            try {
+                Logger.logDebug("Start task " + name);
+                return action.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                endTime = System.nanoTime();
+                Logger.logDebug("End task " + name + " (" + format(getDuration()) + ")");
+            }
+        }
+    }
+}
@@ -0,0 +1,604 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extracts zip files in a single pass: the entries are read with random access and
+ * written in parallel, or streamed while the zip is downloaded, and the digest of each
+ * file is computed while it is written, so the extracted files don't need to be read again.
+ *
+ * The Unix permissions and symbolic links stored in the zip (when it was created on
+ * a Unix host) are restored on file systems that support them. Links are created after
+ * all the files are written, and entries can't be written through links, or create
+ * links that point outside of the target folder.
+ */
+final class ZipExtractor {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR = 0x07064b50;
+    private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+    private static final int HOST_UNIX = 3;
+    private static final int S_IFMT = 0170000;
+    private static final int S_IFLNK = 0120000;
+
+    private ZipExtractor() {}
+
+    /**
+     * Extracts the given zip into the target directory, and returns a map with the
+     * paths of the extracted files, relative to the target directory, and their sizes
+     * and digests with the given algorithm.
+     * In the case that the file is not a valid zip, the returned map will be empty.
+     *
+     * @param sourceZip the path of the zip file
+     * @param targetDir the path of an existing folder where the zip file will be extracted
+     * @param algorithm the algorithm of the digests
+     * @return a map with the relative paths and the entries of the extracted files
+     * @throws IOException if the zip can't be extracted
+     */
+    static Map<String, IntegrityManifest.Entry> extract(Path sourceZip, Path targetDir,
+                                                        IntegrityManifest.Algorithm algorithm) throws IOException {
+        return extract(sourceZip, targetDir, algorithm, name -> true);
+    }
+
+    /**
+     * Extracts only the entries of the given zip that are accepted by the filter into the
+     * target directory. Since the entries are read from the central directory, the entries
+     * that are not accepted are not read at all.
+     *
+     * @param sourceZip the path of the zip file
+     * @param targetDir the path of an existing folder where the zip file will be extracted
+     * @param algorithm the algorithm of the digests
+     * @param filter accepts the names of the entries to extract, as they are in the zip
+     * @return a map with the relative paths and the entries of the extracted files
+     * @throws IOException if the zip can't be extracted
+     */
+    static Map<String, IntegrityManifest.Entry> extract(Path sourceZip, Path targetDir,
+                                                        IntegrityManifest.Algorithm algorithm,
+                                                        Predicate<String> filter) throws IOException {
+        ZipFile zipFile;
+        try {
+            zipFile = new ZipFile(sourceZip.toFile());
+        } catch (ZipException e) {
+            Logger.logDebug("Not a valid zip file " + sourceZip + ": " + e.getMessage());
+            return new HashMap<>();
+        }
+        try (ZipFile zip = zipFile) {
+            Map<String, Integer> modes = readUnixModes(sourceZip);
+            boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+            Path root = targetDir.toAbsolutePath().normalize();
+
+            List<ZipEntry> accepted = Collections.list(zip.entries()).stream()
+                    .filter(entry -> filter.test(entry.getName()))
+                    .collect(Collectors.toList());
+            Set<Path> linkPaths = new HashSet<>();
+            for (ZipEntry entry : accepted) {
+                if (posix && !entry.isDirectory() && isLink(modes.getOrDefault(entry.getName(), 0))) {
+                    linkPaths.add(resolve(root, entry.getName()));
+                }
+            }
+
+            List<ZipEntry> files = new ArrayList<>();
+            for (ZipEntry entry : accepted) {
+                Path destPath = resolve(root, entry.getName());
+                checkParents(root, destPath, linkPaths);
+                if (entry.isDirectory()) {
+                    Files.createDirectories(destPath);
+                } else {
+                    files.add(entry);
+                }
+            }
+
+            // regular files are written first, in parallel, and links are created last, so
+            // nothing is written through a link
+            IntegrityManifest.Entry[] digests = new IntegrityManifest.Entry[files.size()];
+            try {
+                IntStream.range(0, files.size()).parallel().forEach(i -> {
+                    ZipEntry entry = files.get(i);
+                    int mode = modes.getOrDefault(entry.getName(), 0);
+                    try {
+                        Path destPath = resolve(root, entry.getName());
+                        if (linkPaths.contains(destPath)) {
+                            return;
+                        }
+                        Files.createDirectories(destPath.getParent());
+                        digests[i] = extractFile(zip, entry, destPath, algorithm);
+                        if (posix && mode != 0) {
+                            Files.setPosixFilePermissions(destPath, toPermissions(mode));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            List<Integer> links = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                Path destPath = resolve(root, files.get(i).getName());
+                if (linkPaths.contains(destPath)) {
+                    Files.createDirectories(destPath.getParent());
+                    String target;
+                    try (InputStream is = zip.getInputStream(files.get(i))) {
+                        target = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+                    }
+                    createLink(root, destPath, target);
+                    links.add(i);
+                }
+            }
+
+            // links are checked like the files they point to, once all files are in place
+            for (int i : links) {
+                Path destPath = resolve(root, files.get(i).getName());
+                digests[i] = Files.exists(destPath) ?
+                        new IntegrityManifest.Entry(Files.size(destPath), algorithm.digest(destPath)) :
+                        new IntegrityManifest.Entry(0, "");
+            }
+
+            Map<String, IntegrityManifest.Entry> entries = new LinkedHashMap<>();
+            for (int i = 0; i < files.size(); i++) {
+                entries.put(IntegrityManifest.toRelativePath(root, resolve(root, files.get(i).getName())), digests[i]);
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * Extracts a zip while it is read from the given stream, typically while it is being
+     * downloaded, and returns a map with the paths of the extracted files, relative to the
+     * target directory, and their sizes and digests with the given algorithm.
+     * The entries are written and digested as they arrive. Since the Unix modes are only
+     * known once the central directory at the end of the stream is read, permissions and
+     * symbolic links are restored after all the entries are extracted.
+     * In the case that the stream is not a valid zip, the returned map will be empty.
+     *
+     * @param stream the stream with the contents of the zip file, that will be closed
+     * @param targetDir the path of an existing folder where the zip file will be extracted
+     * @param algorithm the algorithm of the digests
+     * @param archive the path where a copy of the zip file is kept, or null
+     * @return a map with the relative paths and the entries of the extracted files
+     * @throws IOException if the zip can't be read or extracted
+     */
+    static Map<String, IntegrityManifest.Entry> extract(InputStream stream, Path targetDir,
+                                                        IntegrityManifest.Algorithm algorithm,
+                                                        Path archive) throws IOException {
+        Path root = targetDir.toAbsolutePath().normalize();
+        Path archivePart = archive == null ? null :
+                archive.toAbsolutePath().resolveSibling(archive.getFileName() + Downloader.PART_EXTENSION);
+        Map<String, IntegrityManifest.Entry> entries = new LinkedHashMap<>();
+        Map<String, Path> files = new LinkedHashMap<>();
+        Map<String, Integer> modes;
+        try (TailInputStream tail = new TailInputStream(stream, archivePart);
+             ZipInputStream zis = new ZipInputStream(tail)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                Path destPath = resolve(root, entry.getName());
+                // links are only created at the end, but the target folder could have some already
+                checkParents(root, destPath, Set.of());
+                if (entry.isDirectory()) {
+                    Files.createDirectories(destPath);
+                    continue;
+                }
+                Files.createDirectories(destPath.getParent());
+                Files.deleteIfExists(destPath);
+                IntegrityManifest.Hasher hasher = algorithm.newHasher();
+                long written = 0;
+                try (OutputStream os = Files.newOutputStream(destPath)) {
+                    int len;
+                    while ((len = zis.read(buffer)) != -1) {
+                        hasher.update(buffer, 0, len);
+                        os.write(buffer, 0, len);
+                        written += len;
+                    }
+                }
+                files.put(entry.getName(), destPath);
+                entries.put(IntegrityManifest.toRelativePath(root, destPath),
+                        new IntegrityManifest.Entry(written, hasher.getDigest()));
+            }
+            modes = files.isEmpty() ? Map.of() : tail.readUnixModes();
+        } catch (IOException e) {
+            if (archivePart != null) {
+                Files.deleteIfExists(archivePart);
+            }
+            throw e;
+        }
+        if (archivePart != null) {
+            Files.move(archivePart, archive, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        if (!modes.isEmpty() && FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Set<Path> linkPaths = files.entrySet().stream()
+                    .filter(file -> isLink(modes.getOrDefault(file.getKey(), 0)))
+                    .map(Map.Entry::getValue)
+                    .collect(Collectors.toSet());
+            for (Path file : files.values()) {
+                checkParents(root, file, linkPaths);
+            }
+            List<Map.Entry<String, Path>> links = new ArrayList<>();
+            for (Map.Entry<String, Path> file : files.entrySet()) {
+                int mode = modes.getOrDefault(file.getKey(), 0);
+                if (isLink(mode)) {
+                    String target = Files.readString(file.getValue(), StandardCharsets.UTF_8);
+                    Files.delete(file.getValue());
+                    createLink(root, file.getValue(), target);
+                    links.add(file);
+                } else if (mode != 0) {
+                    Files.setPosixFilePermissions(file.getValue(), toPermissions(mode));
+                }
+            }
+            // links are checked like the files they point to
+            for (Map.Entry<String, Path> link : links) {
+                Path destPath = link.getValue();
+                entries.put(IntegrityManifest.toRelativePath(root, destPath), Files.exists(destPath) ?
+                        new IntegrityManifest.Entry(Files.size(destPath), algorithm.digest(destPath)) :
+                        new IntegrityManifest.Entry(0, ""));
+            }
+        }
+        return entries;
+    }
+
+    private static Path resolve(Path root, String name) throws IOException {
+        Path destPath = root.resolve(name).normalize();
+        if (!destPath.startsWith(root)) {
+            throw new IOException("Error: zip entry " + name + " is outside of " + root);
+        }
+        return destPath;
+    }
+
+    private static boolean isLink(int mode) {
+        return (mode & S_IFMT) == S_IFLNK;
+    }
+
+    /**
+     * Checks that no folder between the root and the given path is a link, existing or
+     * extracted from the zip, so an entry can't be written outside of the root through it
+     */
+    private static void checkParents(Path root, Path destPath, Set<Path> linkPaths) throws IOException {
+        for (Path parent = destPath.getParent(); parent != null && !parent.equals(root); parent = parent.getParent()) {
+            if (linkPaths.contains(parent) || Files.isSymbolicLink(parent)) {
+                throw new IOException("Error: zip entry " + root.relativize(destPath) + " is under the link " +
+                        root.relativize(parent));
+            }
+        }
+    }
+
+    /**
+     * Creates a link, once all the files are extracted, only if it points inside of the root
+     */
+    private static void createLink(Path root, Path destPath, String target) throws IOException {
+        Path targetPath = Path.of(target);
+        if (targetPath.isAbsolute() || !destPath.getParent().resolve(targetPath).normalize().startsWith(root)) {
+            throw new IOException("Error: link " + root.relativize(destPath) + " points outside of " + root + ": " + target);
+        }
+        Files.deleteIfExists(destPath);
+        Files.createSymbolicLink(destPath, targetPath);
+        // through other links, the target could still be outside of the root
+        if (Files.exists(destPath) && !destPath.toRealPath().startsWith(root.toRealPath())) {
+            Files.delete(destPath);
+            throw new IOException("Error: link " + root.relativize(destPath) + " points outside of " + root + ": " + target);
+        }
+    }
+
+    private static IntegrityManifest.Entry extractFile(ZipFile zip, ZipEntry entry, Path destPath,
+                                                      IntegrityManifest.Algorithm algorithm) throws IOException {
+        IntegrityManifest.Hasher hasher = algorithm.newHasher();
+        long written = 0;
+        long size = entry.getSize();
+        byte[] buffer = new byte[size > 0 && size < BUFFER_SIZE ? (int) size : BUFFER_SIZE];
+        if (Files.isSymbolicLink(destPath)) {
+            // a link left by an earlier extraction is replaced, not written through
+            Files.delete(destPath);
+        }
+        try (InputStream is = zip.getInputStream(entry);
+             OutputStream os = Files.newOutputStream(destPath)) {
+            int len;
+            while ((len = is.read(buffer)) != -1) {
+                hasher.update(buffer, 0, len);
+                os.write(buffer, 0, len);
+                written += len;
+            }
+        }
+        return new IntegrityManifest.Entry(written, hasher.getDigest());
+    }
+
+    static Set<PosixFilePermission> toPermissions(int mode) {
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        PosixFilePermission[] values = {
+                PosixFilePermission.OTHERS_EXECUTE, PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_READ,
+                PosixFilePermission.GROUP_EXECUTE, PosixFilePermission.GROUP_WRITE, PosixFilePermission.GROUP_READ,
+                PosixFilePermission.OWNER_EXECUTE, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_READ
+        };
+        for (int i = 0; i < values.length; i++) {
+            if ((mode & (1 << i)) != 0) {
+                permissions.add(values[i]);
+            }
+        }
+        return permissions;
+    }
+
+    /**
+     * Reads the Unix modes of the entries from the central directory of the zip,
+     * since {@link ZipEntry} doesn't expose the external attributes.
+     *
+     * @param zip the path of the zip
+     * @return a map with the Unix mode of the entries that have one, empty if
+     * the central directory can't be read
+     */
+    static Map<String, Integer> readUnixModes(Path zip) {
+        try (FileChannel channel = FileChannel.open(zip, StandardOpenOption.READ)) {
+            long size = channel.size();
+            return readUnixModes(new ByteSource() {
+                @Override
+                public long size() {
+                    return size;
+                }
+
+                @Override
+                public ByteBuffer read(long position, int length) throws IOException {
+                    return ZipExtractor.read(channel, position, length);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            Logger.logDebug("Error reading the central directory of " + zip + ": " + e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private static Map<String, Integer> readUnixModes(ByteSource source) throws IOException {
+        long size = source.size();
+        int tail = (int) Math.min(size, 0xFFFF + 22);
+        ByteBuffer buffer = source.read(size - tail, tail);
+        int eocd = -1;
+        for (int i = tail - 22; i >= 0; i--) {
+            if (buffer.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            return Map.of();
+        }
+        long entries = buffer.getShort(eocd + 10) & 0xFFFF;
+        long cdSize = buffer.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long cdOffset = buffer.getInt(eocd + 16) & 0xFFFFFFFFL;
+        if (entries == 0xFFFF || cdSize == 0xFFFFFFFFL || cdOffset == 0xFFFFFFFFL) {
+            int locator = eocd - 20;
+            if (locator < 0 || buffer.getInt(locator) != ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR) {
+                return Map.of();
+            }
+            ByteBuffer zip64 = source.read(buffer.getLong(locator + 8), 56);
+            if (zip64.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY) {
+                return Map.of();
+            }
+            cdSize = zip64.getLong(40);
+            cdOffset = zip64.getLong(48);
+        }
+        if (cdSize > Integer.MAX_VALUE || cdOffset + cdSize > size) {
+            return Map.of();
+        }
+
+        ByteBuffer cd = source.read(cdOffset, (int) cdSize);
+        Map<String, Integer> modes = new HashMap<>();
+        int pos = 0;
+        while (pos + 46 <= cd.limit() && cd.getInt(pos) == CENTRAL_DIRECTORY_HEADER) {
+            int madeBy = cd.getShort(pos + 4) & 0xFFFF;
+            int nameLength = cd.getShort(pos + 28) & 0xFFFF;
+            int extraLength = cd.getShort(pos + 30) & 0xFFFF;
+            int commentLength = cd.getShort(pos + 32) & 0xFFFF;
+            int mode = (int) ((cd.getInt(pos + 38) & 0xFFFFFFFFL) >> 16);
+            if ((madeBy >> 8) == HOST_UNIX && mode != 0) {
+                byte[] name = new byte[nameLength];
+                cd.position(pos + 46);
+                cd.get(name);
+                modes.put(new String(name, StandardCharsets.UTF_8), mode);
+            }
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+        return modes;
+    }
+
+    /**
+     * Random access to (a part of) the bytes of a zip file
+     */
+    private interface ByteSource {
+        long size();
+        ByteBuffer read(long position, int length) throws IOException;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * An input stream that keeps the last bytes that were read, and optionally copies
+     * all of them into a file. Once the entries of a zip are read with a
+     * {@link ZipInputStream}, that might read a bit ahead, the central directory
+     * can be recovered from those bytes and the rest of the stream.
+     */
+    private static final class TailInputStream extends FilterInputStream {
+
+        // enough for the end of central directory record with the longest comment
+        private static final int TAIL_SIZE = 128 * 1024;
+        private static final int MAX_REMAINING = 64 * 1024 * 1024;
+
+        private final byte[] tail = new byte[TAIL_SIZE];
+        private final OutputStream copy;
+        private long count;
+
+        TailInputStream(InputStream in, Path copy) throws IOException {
+            super(in);
+            this.copy = copy == null ? null : Files.newOutputStream(copy);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                record(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            int len;
+            while (skipped < n && (len = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) != -1) {
+                skipped += len;
+            }
+            return skipped;
+        }
+
+        private void record(byte[] b, int off, int len) throws IOException {
+            if (copy != null) {
+                copy.write(b, off, len);
+            }
+            for (int i = Math.max(0, len - TAIL_SIZE); i < len; ) {
+                int pos = (int) ((count + i) % TAIL_SIZE);
+                int chunk = Math.min(len - i, TAIL_SIZE - pos);
+                System.arraycopy(b, off + i, tail, pos, chunk);
+                i += chunk;
+            }
+            count += len;
+        }
+
+        /**
+         * Reads the rest of the stream, and the Unix modes from the central directory
+         */
+        Map<String, Integer> readUnixModes() throws IOException {
+            ByteArrayOutputStream rest = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                if (copy != null) {
+                    copy.write(buffer, 0, len);
+                }
+                if (rest.size() < MAX_REMAINING) {
+                    rest.write(buffer, 0, len);
+                }
+            }
+            if (rest.size() >= MAX_REMAINING) {
+                Logger.logDebug("The central directory of the zip is too large, permissions and links are not restored");
+                return Map.of();
+            }
+            int kept = (int) Math.min(count, TAIL_SIZE);
+            ByteBuffer bytes = ByteBuffer.allocate(kept + rest.size());
+            int start = (int) ((count - kept) % TAIL_SIZE);
+            int first = Math.min(kept, TAIL_SIZE - start);
+            bytes.put(tail, start, first);
+            bytes.put(tail, 0, kept - first);
+            bytes.put(rest.toByteArray());
+            long offset = count - kept;
+            long size = count + rest.size();
+            try {
+                return ZipExtractor.readUnixModes(new ByteSource() {
+                    @Override
+                    public long size() {
+                        return size;
+                    }
+
+                    @Override
+                    public ByteBuffer read(long position, int length) throws IOException {
+                        if (position < offset || position + length > size) {
+                            throw new IOException("Position " + position + " is not available");
+                        }
+                        ByteBuffer buffer = bytes.duplicate();
+                        buffer.position((int) (position - offset));
+                        buffer.limit((int) (position - offset) + length);
+                        return buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                Logger.logDebug("Error reading the central directory of the zip: " + e.getMessage());
+                return Map.of();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (copy != null) {
+                    copy.close();
+                }
+            } finally {
+                super.close();
+            }
+        }
+    }
+}
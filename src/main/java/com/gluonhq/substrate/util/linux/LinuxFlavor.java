@@ -27,6 +27,8 @@
  */
 package com.gluonhq.substrate.util.linux;
 
+import com.gluonhq.substrate.util.ProbeCache;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -40,6 +42,7 @@ import java.util.regex.Pattern;
  */
 public class LinuxFlavor {
     private static final Pattern OS_RELEASE_PROPERTY_PATTERN = Pattern.compile("([A-Z_-]+)=\"?(.+)\"?");
+    private static final List<Path> OS_RELEASE_FILES = List.of(Paths.get("/etc/os-release"), Paths.get("/usr/lib/os-release"));
 
     public enum PackagingSystem {
         DEB,
@@ -73,7 +76,13 @@ public class LinuxFlavor {
      * @return flavor of linux system
      */
     public static Flavor getFlavor() {
-        return new LinuxFlavor().doGetFlavor();
+        try {
+            return Flavor.valueOf(ProbeCache.get("linux-flavor", OS_RELEASE_FILES,
+                    () -> new LinuxFlavor().doGetFlavor().name()));
+        } catch (IOException | InterruptedException e) {
+            // not expected, the probe only reads files
+            return new LinuxFlavor().doGetFlavor();
+        }
     }
     
     private Flavor doGetFlavor() {
@@ -85,8 +94,7 @@ public class LinuxFlavor {
     }
 
     private List<String> readOSRelease() {
-        return List.of("/etc/os-release", "/usr/lib/os-release").stream()
-                .map(Paths::get)
+        return OS_RELEASE_FILES.stream()
                 .filter(Files::exists)
                 .map(this::readAllLines)
                 .findFirst()
@@ -32,12 +32,18 @@ import static com.gluonhq.substrate.util.linux.LinuxLinkerFlags.PkgInfo.debian;
 import static com.gluonhq.substrate.util.linux.LinuxLinkerFlags.PkgInfo.fedora;
 import static com.gluonhq.substrate.util.linux.LinuxLinkerFlags.PkgInfo.hardwired;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.gluonhq.substrate.util.Logger;
+import com.gluonhq.substrate.util.ProbeCache;
 import com.gluonhq.substrate.util.ProcessRunner;
 import com.gluonhq.substrate.util.linux.LinuxFlavor.Flavor;
 
@@ -46,6 +52,8 @@ import com.gluonhq.substrate.util.linux.LinuxFlavor.Flavor;
  */
 public class LinuxLinkerFlags {
     private static final Flavor flavor = LinuxFlavor.getFlavor();
+    private static final String PKG_CONFIG = "/usr/bin/pkg-config";
+    private static final List<String> PKG_CONFIG_ENV = List.of("PKG_CONFIG_PATH", "PKG_CONFIG_LIBDIR", "PKG_CONFIG_SYSROOT_DIR");
 
     /**
      * Defines per-flavor pkg-config package names and the associated OS package
@@ -108,6 +116,8 @@ public class LinuxLinkerFlags {
      *
      * Consults the system pkg-config for all required packages
      * and combines their associated linker flags.
+     * The result is cached per flavor and pkg-config environment, as long
+     * as the pkg-config binary and its .pc files don't change.
      *
      * If any of the packages are missing, this is cause for abort
      * with information to the user about which OS packages need
@@ -126,19 +136,95 @@ public class LinuxLinkerFlags {
     }
     
     private List<String> doGetLinkerFlags(List<PkgInfo> deps) throws IOException, InterruptedException {
+        List<PkgInfo> packages = deps.stream()
+                .filter(pkg -> pkg.hardwired == null)
+                .collect(Collectors.toList());
+        String probeName = "pkg-config --libs " + packages.stream()
+                .map(pkg -> pkg.pkgName)
+                .collect(Collectors.joining(" ")) +
+                " [" + flavor + PKG_CONFIG_ENV.stream()
+                        .map(env -> ", " + env + "=" + Objects.toString(System.getenv(env), ""))
+                        .collect(Collectors.joining()) + "]";
+        String packageFlags = ProbeCache.get(probeName, getPkgConfigInputs(),
+                () -> String.join(" ", lookupPackagesFlags(packages)));
+
+        // the flags of all the packages take the place of the first package
         List<String> pkgFlags = new ArrayList<>();
-        for (PkgInfo pkg :deps ) {
-            pkgFlags.addAll(lookupPackageFlags(pkg));
+        boolean packagesAdded = false;
+        for (PkgInfo pkg : deps) {
+            if (pkg.hardwired != null) {
+                pkgFlags.add(pkg.hardwired);
+            } else if (!packagesAdded) {
+                pkgFlags.addAll(splitFlags(packageFlags));
+                packagesAdded = true;
+            }
+        }
+
+        Logger.logDebug("All flags: " + pkgFlags);
+        return pkgFlags;
+    }
+
+    /**
+     * Uses a single pkg-config invocation to lookup linker flags for all the
+     * packages. If it fails, each package is looked up separately, to find out
+     * which ones are missing.
+     */
+    private List<String> lookupPackagesFlags(List<PkgInfo> packages) throws IOException, InterruptedException {
+        if (packages.isEmpty()) {
+            return List.of();
+        }
+        List<String> pkgNames = packages.stream()
+                .map(pkg -> pkg.pkgName)
+                .collect(Collectors.toList());
+        ProcessRunner process = new ProcessRunner(PKG_CONFIG, "--libs");
+        process.addArgs(pkgNames);
+        process.showSevereMessage(false);
+        if (process.runProcess("Get config for " + String.join(", ", pkgNames)) == 0) {
+            List<String> flags = splitFlags(process.getResponse());
+            Logger.logDebug("Pkgs " + pkgNames + " provided flags: " + flags);
+            return flags;
         }
 
+        List<String> pkgFlags = new ArrayList<>();
+        for (PkgInfo pkg : packages) {
+            pkgFlags.addAll(lookupPackageFlags(pkg));
+        }
         if (isOSPackageMissing()) {
             printUpdateInstructionsAndFail();
         }
-
-        Logger.logDebug("All flags: " + pkgFlags);
         return pkgFlags;
     }
 
+    /**
+     * The files that determine the result of pkg-config: its binary, and
+     * the directories of its search path with their .pc files
+     */
+    private static List<Path> getPkgConfigInputs() throws IOException, InterruptedException {
+        Path pkgConfig = Paths.get(PKG_CONFIG);
+        String defaultPath = ProbeCache.get("pkg-config --variable pc_path pkg-config", List.of(pkgConfig), () -> {
+            ProcessRunner process = new ProcessRunner(PKG_CONFIG, "--variable", "pc_path", "pkg-config");
+            process.showSevereMessage(false);
+            process.runProcess("Get pkg-config search path");
+            return Objects.toString(process.getResponse(), "").trim();
+        });
+        List<Path> inputs = new ArrayList<>();
+        inputs.add(pkgConfig);
+        Stream.of(System.getenv("PKG_CONFIG_PATH"), System.getenv("PKG_CONFIG_LIBDIR"), defaultPath)
+                .filter(Objects::nonNull)
+                .flatMap(path -> Stream.of(path.split(File.pathSeparator)))
+                .filter(dir -> !dir.isEmpty())
+                .distinct()
+                .map(Paths::get)
+                .forEach(inputs::add);
+        return inputs;
+    }
+
+    private static List<String> splitFlags(String flags) {
+        return Stream.of(flags.trim().split(" "))
+                .filter(flag -> !flag.isEmpty())
+                .collect(Collectors.toList());
+    }
+
     /**
      * Uses pkg-config to lookup linker flags for package.
      *
@@ -156,7 +242,7 @@ public class LinuxLinkerFlags {
             return List.of();
         }
 
-        List<String> flags = List.of(process.getResponse().trim().split(" "));
+        List<String> flags = splitFlags(process.getResponse());
         Logger.logDebug("Pkg " + pkgName + " provided flags: " + flags);
         return flags;
     }
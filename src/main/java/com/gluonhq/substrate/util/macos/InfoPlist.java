@@ -33,6 +33,7 @@ import com.dd.plist.NSString;
 import com.dd.plist.PropertyListParser;
 import com.gluonhq.substrate.Constants;
 import com.gluonhq.substrate.model.ClassPath;
+import com.gluonhq.substrate.model.ClassPathEntry;
 import com.gluonhq.substrate.model.InternalProjectConfiguration;
 import com.gluonhq.substrate.model.ProcessPaths;
 import com.gluonhq.substrate.model.ReleaseConfiguration;
@@ -43,17 +44,13 @@ import com.gluonhq.substrate.util.XcodeUtils;
 import com.gluonhq.substrate.util.plist.NSDictionaryEx;
 import com.gluonhq.substrate.util.plist.NSObjectEx;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.Objects;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import static com.gluonhq.substrate.Constants.META_INF_SUBSTRATE_MACOS;
 import static com.gluonhq.substrate.Constants.PARTIAL_PLIST_FILE;
@@ -302,23 +299,21 @@ public class InfoPlist {
         }
 
         Logger.logDebug("Scanning for plist files");
-        final List<File> jars = new ClassPath(projectConfiguration.getClasspath()).getJars(true);
+        final List<ClassPathEntry> entries = new ClassPath(projectConfiguration.getClasspath()).getEntries(true);
         String prefix = META_INF_SUBSTRATE_MACOS + PARTIAL_PLIST_FILE;
-        for (File jar : jars) {
-            try (ZipFile zip = new ZipFile(jar)) {
-                Logger.logDebug("Scanning " + jar);
-                for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
-                    ZipEntry zipEntry = e.nextElement();
-                    String name = zipEntry.getName();
-                    if (!zipEntry.isDirectory() && name.equals(prefix)) {
-                        String jarName = jar.getName().substring(0, jar.getName().lastIndexOf(".jar"));
-                        Path classPath = partialPListDir.resolve(jarName + "_" + PARTIAL_PLIST_FILE);
-                        Logger.logDebug("Adding plist from " + zip.getName() + " :: " + name + " into " + classPath);
-                        FileOps.copyStream(zip.getInputStream(zipEntry), classPath);
-                    }
-                }
+        for (ClassPathEntry entry : entries) {
+            if (!entry.exists()) {
+                continue;
+            }
+            Logger.logDebug("Scanning " + entry);
+            try {
+                entry.visit(name -> name.equals(prefix), (name, content) -> {
+                    Path classPath = partialPListDir.resolve(entry.getName() + "_" + PARTIAL_PLIST_FILE);
+                    Logger.logDebug("Adding plist from " + entry + " :: " + name + " into " + classPath);
+                    FileOps.copyStream(content, classPath);
+                });
             } catch (IOException e) {
-                throw new IOException("Error processing partial plist files from jar: " + jar + ": " + e.getMessage() + ", " + Arrays.toString(e.getSuppressed()));
+                throw new IOException("Error processing partial plist files from jar: " + entry + ": " + e.getMessage() + ", " + Arrays.toString(e.getSuppressed()));
             }
         }
     }
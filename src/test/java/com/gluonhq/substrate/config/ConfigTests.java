@@ -72,6 +72,13 @@ class ConfigTests {
         assertTrue(initList.contains("this.is.a.target.test"));
     }
 
+    @Test
+    void testInitBuildIsNotModifiedByCallers() throws IOException {
+        List<String> initList = resolver.getUserInitBuildTimeList("test");
+        initList.clear();
+        assertEquals(2, resolver.getUserInitBuildTimeList("test").size());
+    }
+
     @Test
     void testReflectionNullArch() throws IOException {
         List<String> reflectionList = resolver.getUserReflectionList(null);
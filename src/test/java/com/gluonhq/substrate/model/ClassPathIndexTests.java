@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.model;
+
+import com.gluonhq.substrate.util.FileOps;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassPathIndexTests {
+
+    @Test
+    void indexEntries() throws IOException {
+        Path tempDir = getTempDir();
+        Path jar = tempDir.resolve("substrate-test.jar");
+        FileOps.copyResource("/substrate-test.jar", jar);
+
+        ClassPathIndex index = ClassPathIndex.create(List.of(ClassPathEntry.ofJar(jar)), null);
+        List<ClassPathIndex.Entry> entries = index.find(n -> n.startsWith("META-INF/substrate/config/initbuildtime"));
+        assertIterableEquals(List.of("META-INF/substrate/config/initbuildtime-test", "META-INF/substrate/config/initbuildtime"),
+                entries.stream().map(ClassPathIndex.Entry::getName).collect(Collectors.toList()));
+        assertEquals(14, entries.get(1).getSize());
+        assertTrue(entries.get(1).getCrc() >= 0);
+
+        // entries out of META-INF/substrate are read from the jar
+        List<ClassPathIndex.Entry> resources = index.find("test-resource.txt"::equals);
+        assertEquals(1, resources.size());
+        try (InputStream is = resources.get(0).openStream()) {
+            assertEquals(42, is.readAllBytes().length);
+        }
+    }
+
+    @Test
+    void unchangedJarIsNotReopened() throws IOException {
+        Path tempDir = getTempDir();
+        Path jar = tempDir.resolve("substrate-test.jar");
+        FileOps.copyResource("/substrate-test.jar", jar);
+        Path indexFile = tempDir.resolve("classpath.index");
+
+        ClassPathIndex.create(List.of(ClassPathEntry.ofJar(jar)), indexFile);
+        assertTrue(Files.exists(indexFile));
+
+        // replace the jar with invalid content, keeping its size and last modified time
+        FileTime lastModified = Files.getLastModifiedTime(jar);
+        Files.write(jar, new byte[(int) Files.size(jar)]);
+        Files.setLastModifiedTime(jar, lastModified);
+
+        ClassPathIndex index = ClassPathIndex.create(List.of(ClassPathEntry.ofJar(jar)), indexFile);
+        List<ClassPathIndex.Entry> entries = index.find("META-INF/substrate/config/initbuildtime"::equals);
+        assertEquals(1, entries.size());
+        try (InputStream is = entries.get(0).openStream()) {
+            assertEquals(14, is.readAllBytes().length);
+        }
+
+        // once the jar changes, it is indexed again
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(lastModified.toMillis() + 2000));
+        assertThrows(IOException.class, () -> ClassPathIndex.create(List.of(ClassPathEntry.ofJar(jar)), indexFile));
+    }
+
+    @Test
+    void indexDirectories() throws IOException {
+        Path tempDir = getTempDir();
+        Path classes = tempDir.resolve("classes");
+        Files.createDirectories(classes.resolve("META-INF").resolve("substrate"));
+        Files.writeString(classes.resolve("META-INF").resolve("substrate").resolve("file"), "content");
+        Files.writeString(classes.resolve("A.class"), "A");
+
+        ClassPathEntry entry = ClassPathEntry.ofDirectories("classes", List.of(classes));
+        ClassPathIndex index = ClassPathIndex.create(List.of(entry), tempDir.resolve("classpath.index"));
+        assertEquals(2, index.find(entry, n -> true).size());
+        List<ClassPathIndex.Entry> entries = index.find("META-INF/substrate/file"::equals);
+        assertEquals(1, entries.size());
+        try (InputStream is = entries.get(0).openStream()) {
+            assertEquals("content", new String(is.readAllBytes()));
+        }
+    }
+
+    @Test
+    void getEntriesByName() throws IOException {
+        Path jar1 = getTempDir().resolve("substrate-test.jar");
+        FileOps.copyResource("/substrate-test.jar", jar1);
+        Path jar2 = getTempDir().resolve("substrate-test.jar");
+        FileOps.copyResource("/substrate-test.jar", jar2);
+
+        ClassPathIndex index = ClassPathIndex.create(List.of(ClassPathEntry.ofJar(jar1), ClassPathEntry.ofJar(jar2)), null);
+        String name = "META-INF/substrate/config/initbuildtime";
+        List<ClassPathIndex.Entry> entries = index.get(name, name + "-test", null, "missing");
+        assertEquals(index.find(n -> n.equals(name) || n.equals(name + "-test")), entries);
+        assertEquals(4, entries.size());
+        assertEquals(jar1, entries.get(0).getSource().getPath());
+        assertEquals(jar2, entries.get(3).getSource().getPath());
+    }
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+}
@@ -7,13 +7,18 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipFile;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -122,4 +127,83 @@ public class ClassPathTests {
         assertEquals(3, jars.size());
     }
 
+    @Test
+    public void classesEntryTest() throws IOException {
+        Path projectPath = Files.createTempDirectory("substrate-tests");
+        Path classes = projectPath.resolve("classes");
+        Path resources = projectPath.resolve("resources").resolve("main");
+        Files.createDirectories(classes.resolve("a"));
+        Files.createDirectories(resources.resolve("META-INF"));
+        Files.writeString(classes.resolve("a").resolve("A.class"), "A");
+        Files.writeString(classes.resolve("config"), "classes");
+        Files.writeString(resources.resolve("config"), "resources");
+        Files.writeString(resources.resolve("META-INF").resolve("file"), "file");
+
+        var cp = new ClassPath("aaa.jar" + PS + classes + PS + resources);
+        var entries = cp.getEntries(true);
+        assertEquals(2, entries.size());
+        ClassPathEntry entry = entries.get(1);
+        assertFalse(entry.isJar());
+        assertEquals("classes", entry.getName());
+
+        List<String> names = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        entry.visit(n -> !n.startsWith("META-INF"), (name, content) -> {
+            names.add(name);
+            contents.add(new String(content.readAllBytes()));
+        });
+        assertIterableEquals(List.of("a/A.class", "config"), names);
+        assertIterableEquals(List.of("A", "resources"), contents);
+        assertEquals(1, cp.getEntries(false).size());
+    }
+
+    @Test
+    public void createClassesJarTest() throws IOException {
+        Path projectPath = Files.createTempDirectory("substrate-tests");
+        Path classes = projectPath.resolve("classes");
+        Files.createDirectories(classes.resolve("a"));
+        Path classFile = classes.resolve("a").resolve("A.class");
+        Files.writeString(classFile, "A");
+
+        var cp = new ClassPath(classes.toString());
+        Path jar = projectPath.resolve("app.jar");
+        assertEquals(jar, cp.createClassesJar(jar));
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            assertNotNull(zip.getEntry("META-INF/MANIFEST.MF"));
+            assertNotNull(zip.getEntry("a/"));
+            assertNotNull(zip.getEntry("a/A.class"));
+        }
+
+        // unchanged classes reuse the existing jar
+        FileTime jarTime = FileTime.fromMillis(1000);
+        Files.setLastModifiedTime(jar, jarTime);
+        cp.createClassesJar(jar);
+        assertEquals(jarTime, Files.getLastModifiedTime(jar));
+
+        Files.writeString(classes.resolve("B.class"), "B");
+        cp.createClassesJar(jar);
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            assertNotNull(zip.getEntry("B.class"));
+        }
+
+        assertNull(new ClassPath("aaa.jar").createClassesJar(jar));
+    }
+
+    @Test
+    public void getJarsReusesClassesJar() throws IOException, InterruptedException {
+        Path classes = Files.createTempDirectory("substrate-tests").resolve("classes");
+        Files.createDirectories(classes);
+        Files.writeString(classes.resolve("A.class"), "A");
+
+        var cp = new ClassPath(classes.toString());
+        List<File> jars = cp.getJars(true);
+        assertEquals(1, jars.size());
+        FileTime jarTime = FileTime.fromMillis(1000);
+        Files.setLastModifiedTime(jars.get(0).toPath(), jarTime);
+
+        // the same jar is returned, and not created again while the classes don't change
+        assertEquals(jars, cp.getJars(true));
+        assertEquals(jarTime, Files.getLastModifiedTime(jars.get(0).toPath()));
+    }
+
 }
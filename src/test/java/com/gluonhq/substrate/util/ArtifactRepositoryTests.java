@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArtifactRepositoryTests {
+
+    private static final String URL = "https://download2.gluonhq.com/substrate/clibs/linux-x86_6417.zip";
+    private static final String MIRROR_PATH = "download2.gluonhq.com/substrate/clibs/linux-x86_6417.zip";
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+
+    @AfterEach
+    void clearProperties() {
+        System.clearProperty(ArtifactRepository.REPOSITORY_PROPERTY);
+        System.clearProperty(ArtifactRepository.OFFLINE_PROPERTY);
+    }
+
+    @Test
+    void resolveUpstream() throws IOException {
+        assertEquals(MIRROR_PATH, ArtifactRepository.getMirrorPath(new URL(URL)));
+        assertEquals(new URL(URL), ArtifactRepository.resolve(URL, getTempDir()));
+    }
+
+    @Test
+    void resolveRepository() throws IOException {
+        System.setProperty(ArtifactRepository.REPOSITORY_PROPERTY, "https://mirror.example.com/artifacts");
+        assertEquals(new URL("https://mirror.example.com/artifacts/" + MIRROR_PATH),
+                ArtifactRepository.resolve(URL, getTempDir()));
+
+        Path mirror = getTempDir();
+        System.setProperty(ArtifactRepository.REPOSITORY_PROPERTY, mirror.toString());
+        assertEquals(mirror.resolve(MIRROR_PATH).toUri().toURL(), ArtifactRepository.resolve(URL, getTempDir()));
+    }
+
+    @Test
+    void offline() throws IOException {
+        System.setProperty(ArtifactRepository.OFFLINE_PROPERTY, "true");
+        Path store = getTempDir();
+        assertThrows(IOException.class, () -> ArtifactRepository.resolve(URL, store));
+
+        Path artifact = store.resolve(MIRROR_PATH);
+        Files.createDirectories(artifact.getParent());
+        Files.writeString(artifact, "zip");
+        assertEquals(artifact.toUri().toURL(), ArtifactRepository.resolve(URL, store));
+    }
+
+    @Test
+    void fetchIntoStore() throws IOException {
+        Path mirror = getTempDir();
+        Path source = mirror.resolve(MIRROR_PATH);
+        Files.createDirectories(source.getParent());
+        Files.writeString(source, "zip");
+        System.setProperty(ArtifactRepository.REPOSITORY_PROPERTY, mirror.toUri().toString());
+        System.setProperty(ArtifactRepository.OFFLINE_PROPERTY, "true");
+
+        Path store = getTempDir();
+        Path artifact = ArtifactRepository.fetch(URL, store);
+        assertEquals(store.resolve(MIRROR_PATH), artifact);
+        assertEquals("zip", Files.readString(artifact));
+
+        // already in the store
+        Files.delete(source);
+        assertEquals(artifact, ArtifactRepository.fetch(URL, store));
+    }
+}
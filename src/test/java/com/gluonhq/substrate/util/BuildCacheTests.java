@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BuildCacheTests {
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+
+    private static String key(String value) {
+        return new BuildFingerprint().add("key", value).getDigest();
+    }
+
+    @Test
+    void storeAndRestore() throws IOException {
+        Path dir = getTempDir();
+        BuildCache cache = new BuildCache(dir.resolve("cache"), 1024 * 1024);
+        Path object = Files.writeString(dir.resolve("main.o"), "object");
+        Path llvm = Files.writeString(dir.resolve("llvm.o"), "llvm");
+
+        Path target = dir.resolve("restored");
+        assertFalse(cache.restore(key("a"), target));
+
+        cache.store(key("a"), List.of(object, llvm));
+        assertTrue(cache.restore(key("a"), target));
+        assertEquals("object", Files.readString(target.resolve("main.o")));
+        assertEquals("llvm", Files.readString(target.resolve("llvm.o")));
+
+        Properties stats = cache.getStatistics();
+        assertEquals("1", stats.getProperty("hits"));
+        assertEquals("1", stats.getProperty("misses"));
+        assertEquals("1", stats.getProperty("stores"));
+    }
+
+    @Test
+    void existingEntryIsKept() throws IOException {
+        Path dir = getTempDir();
+        BuildCache cache = new BuildCache(dir.resolve("cache"), 1024 * 1024);
+        Path object = Files.writeString(dir.resolve("main.o"), "first");
+        cache.store(key("a"), List.of(object));
+        Files.writeString(object, "second");
+        cache.store(key("a"), List.of(object));
+
+        Path target = dir.resolve("restored");
+        assertTrue(cache.restore(key("a"), target));
+        assertEquals("first", Files.readString(target.resolve("main.o")));
+        assertEquals("1", cache.getStatistics().getProperty("stores"));
+    }
+
+    @Test
+    void unreadableStatisticsAreIgnored() throws IOException {
+        Path dir = getTempDir();
+        Path root = dir.resolve("cache");
+        BuildCache cache = new BuildCache(root, 1024 * 1024);
+        Path object = Files.writeString(dir.resolve("main.o"), "object");
+        Files.createDirectories(root);
+        // a truncated escape sequence makes Properties.load fail
+        Files.writeString(root.resolve("stats.properties"), "hits=\\u00");
+
+        cache.store(key("a"), List.of(object));
+        assertTrue(cache.restore(key("a"), dir.resolve("restored")));
+        assertEquals("1", cache.getStatistics().getProperty("hits"));
+        try (Stream<Path> files = Files.list(root)) {
+            assertTrue(files.noneMatch(p -> p.getFileName().toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() throws IOException {
+        Path dir = getTempDir();
+        Path root = dir.resolve("cache");
+        BuildCache cache = new BuildCache(root, 250);
+        Path object = Files.writeString(dir.resolve("main.o"), "x".repeat(100));
+
+        cache.store(key("a"), List.of(object));
+        cache.store(key("b"), List.of(object));
+        // make "a" the oldest entry, then use it, so "b" becomes the least recently used
+        Path entryA = root.resolve("objects").resolve(key("a").substring(0, 2)).resolve(key("a"));
+        Files.setLastModifiedTime(entryA, FileTime.fromMillis(0));
+        Path entryB = root.resolve("objects").resolve(key("b").substring(0, 2)).resolve(key("b"));
+        Files.setLastModifiedTime(entryB, FileTime.fromMillis(1000));
+        assertTrue(cache.restore(key("a"), dir.resolve("restored")));
+
+        cache.store(key("c"), List.of(object));
+        assertTrue(cache.restore(key("a"), dir.resolve("restored")));
+        assertFalse(cache.restore(key("b"), dir.resolve("restored")));
+        assertTrue(cache.restore(key("c"), dir.resolve("restored")));
+        assertEquals("1", cache.getStatistics().getProperty("evictions"));
+    }
+
+    @Test
+    void invalidKey() throws IOException {
+        BuildCache cache = new BuildCache(getTempDir(), 1024);
+        assertThrows(IllegalArgumentException.class, () -> cache.restore("../x", getTempDir()));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BuildFingerprintTests {
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+
+    @Test
+    void sameInputsSameFingerprint() throws IOException {
+        Path dir = getTempDir();
+        Files.writeString(dir.resolve("a.txt"), "a");
+        Files.createDirectories(dir.resolve("sub"));
+        Files.writeString(dir.resolve("sub").resolve("b.txt"), "b");
+
+        String first = new BuildFingerprint().add("cmd", List.of("-cp", "x")).addPath(dir).getDigest();
+        String second = new BuildFingerprint().add("cmd", List.of("-cp", "x")).addPath(dir).getDigest();
+        assertEquals(first, second);
+        assertEquals(64, first.length());
+    }
+
+    @Test
+    void changedContentChangesFingerprint() throws IOException {
+        Path dir = getTempDir();
+        Path file = dir.resolve("a.txt");
+        Files.writeString(file, "a");
+        String first = new BuildFingerprint().addPath(dir).getDigest();
+        Files.writeString(file, "b");
+        String second = new BuildFingerprint().addPath(dir).getDigest();
+        assertNotEquals(first, second);
+
+        Files.writeString(dir.resolve("c.txt"), "");
+        assertNotEquals(second, new BuildFingerprint().addPath(dir).getDigest());
+    }
+
+    @Test
+    void argumentBoundariesMatter() {
+        String first = new BuildFingerprint().add("cmd", List.of("ab", "c")).getDigest();
+        String second = new BuildFingerprint().add("cmd", List.of("a", "bc")).getDigest();
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void missingPathIsRecorded() throws IOException {
+        Path dir = getTempDir();
+        Path file = dir.resolve("a.txt");
+        String missing = new BuildFingerprint().addPath(file).getDigest();
+        Files.writeString(file, "");
+        assertNotEquals(missing, new BuildFingerprint().addPath(file).getDigest());
+    }
+
+    @Test
+    void directoryStampTracksNestedFiles() throws IOException {
+        Path dir = getTempDir();
+        Files.createDirectories(dir.resolve("sub"));
+        Path file = Files.writeString(dir.resolve("sub").resolve("b.txt"), "b");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000));
+
+        String stamp = new BuildFingerprint().addStamp(dir).getDigest();
+        assertEquals(stamp, new BuildFingerprint().addStamp(dir).getDigest());
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2000));
+        assertNotEquals(stamp, new BuildFingerprint().addStamp(dir).getDigest());
+    }
+
+    @Test
+    void writeAndMatch() throws IOException {
+        Path file = getTempDir().resolve("gvm").resolve("compile.fingerprint");
+        String fingerprint = new BuildFingerprint().add("key", "value").getDigest();
+        assertFalse(BuildFingerprint.matches(file, fingerprint));
+        BuildFingerprint.write(file, fingerprint);
+        assertTrue(BuildFingerprint.matches(file, fingerprint));
+        assertFalse(BuildFingerprint.matches(file, new BuildFingerprint().add("key", "other").getDigest()));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChecksumCacheTests {
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+
+    @Test
+    void checksums() throws IOException {
+        Path dir = getTempDir();
+        Path a = Files.writeString(dir.resolve("a.jar"), "a");
+        Path b = Files.writeString(dir.resolve("b.jar"), "b");
+        Path records = dir.resolve("sdk.md5.stat");
+
+        Map<String, String> checksums = ChecksumCache.getChecksums(records, List.of(a, b, dir.resolve("missing.jar")));
+        assertEquals(2, checksums.size());
+        assertEquals(FileOps.calculateCheckSum(a.toFile()), checksums.get("a.jar"));
+        assertEquals(FileOps.calculateCheckSum(b.toFile()), checksums.get("b.jar"));
+        assertTrue(Files.exists(records));
+    }
+
+    @Test
+    void unchangedFilesAreNotRead() throws IOException {
+        Path dir = getTempDir();
+        Path a = Files.writeString(dir.resolve("a.jar"), "a");
+        Path records = dir.resolve("sdk.md5.stat");
+        String checksum = ChecksumCache.getChecksums(records, List.of(a)).get("a.jar");
+
+        // same size and last modified time: the recorded checksum is used
+        FileTime lastModified = Files.getLastModifiedTime(a);
+        Files.writeString(a, "x");
+        Files.setLastModifiedTime(a, lastModified);
+        assertEquals(checksum, ChecksumCache.getChecksums(records, List.of(a)).get("a.jar"));
+
+        // once the file changes, the checksum is computed again
+        Files.setLastModifiedTime(a, FileTime.fromMillis(lastModified.toMillis() + 2000));
+        assertEquals(FileOps.calculateCheckSum(a.toFile()), ChecksumCache.getChecksums(records, List.of(a)).get("a.jar"));
+        assertNotEquals(checksum, ChecksumCache.getChecksums(records, List.of(a)).get("a.jar"));
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloaderTests {
+
+    private static final byte[] CONTENT = new byte[100_000];
+    private static final byte[] CHANGED_CONTENT = new byte[100_000];
+    static {
+        new Random(42).nextBytes(CONTENT);
+        new Random(43).nextBytes(CHANGED_CONTENT);
+    }
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+    private volatile boolean acceptRanges = true;
+    private volatile boolean sendValidator = true;
+    private volatile int failures = 0;
+    private volatile int truncatedRequest = -1;
+    private volatile int changedRequest = -1;
+    private volatile byte[] content = CONTENT;
+    private volatile String etag = "\"v1\"";
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/file.bin", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private synchronized boolean takeFailure() {
+        if (failures > 0) {
+            failures--;
+            return true;
+        }
+        return false;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int request = requests.incrementAndGet();
+        exchange.getRequestBody().readAllBytes();
+        if (request == changedRequest) {
+            // the file is replaced on the server, with the same size
+            content = CHANGED_CONTENT;
+            etag = "\"v2\"";
+        }
+        byte[] content = this.content;
+        String etag = this.etag;
+        if (takeFailure()) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        int start = 0;
+        int end = content.length - 1;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (acceptRanges && range != null && range.startsWith("bytes=") && (ifRange == null || ifRange.equals(etag))) {
+            rangeRequests.incrementAndGet();
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            start = Integer.parseInt(bounds[0]);
+            if (bounds.length > 1) {
+                end = Math.min(end, Integer.parseInt(bounds[1]));
+            }
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+            if (sendValidator) {
+                exchange.getResponseHeaders().add("ETag", etag);
+            }
+            exchange.sendResponseHeaders(206, end - start + 1);
+        } else {
+            exchange.sendResponseHeaders(200, content.length);
+        }
+        int length = end - start + 1;
+        OutputStream os = exchange.getResponseBody();
+        if (request == truncatedRequest) {
+            // drop the connection before sending the whole response
+            os.write(content, start, length / 2);
+            os.flush();
+            exchange.close();
+            return;
+        }
+        os.write(content, start, length);
+        os.close();
+    }
+
+    private URL getUrl() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/file.bin");
+    }
+
+    private Downloader getDownloader() {
+        return new Downloader()
+                .setRetryDelay(Duration.ofMillis(1))
+                .setShowProgress(false);
+    }
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+
+    @Test
+    void downloadInParallelSegments() throws IOException {
+        Path target = getTempDir().resolve("file.bin");
+        getDownloader().setSegmentSize(10_000).setParallelism(3).download(getUrl(), target);
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(target));
+        // probe plus ten segments
+        assertEquals(11, rangeRequests.get());
+        assertFalse(Files.exists(target.resolveSibling("file.bin" + Downloader.PART_EXTENSION)));
+        assertFalse(Files.exists(target.resolveSibling("file.bin" + Downloader.PART_EXTENSION + Downloader.STATE_EXTENSION)));
+    }
+
+    @Test
+    void downloadWithoutRanges() throws IOException {
+        acceptRanges = false;
+        Path target = getTempDir().resolve("file.bin");
+        getDownloader().setSegmentSize(10_000).download(getUrl(), target);
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(target));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void retryTransientFailures() throws IOException {
+        failures = 3;
+        Path target = getTempDir().resolve("file.bin");
+        getDownloader().setSegmentSize(10_000).download(getUrl(), target);
+        assertArrayEquals(CONTENT, Files.readAllBytes(target));
+
+        failures = 10;
+        Path other = target.resolveSibling("other.bin");
+        assertThrows(IOException.class, () -> getDownloader().setMaxRetries(2).download(getUrl(), other));
+        assertFalse(Files.exists(other));
+    }
+
+    @Test
+    void resumeInterruptedDownload() throws IOException {
+        // the probe and two segments succeed, the third segment is interrupted
+        truncatedRequest = 4;
+        Path target = getTempDir().resolve("file.bin");
+        Downloader downloader = getDownloader().setSegmentSize(10_000).setParallelism(1).setMaxRetries(0);
+        assertThrows(IOException.class, () -> downloader.download(getUrl(), target));
+        assertFalse(Files.exists(target));
+        assertTrue(Files.exists(target.resolveSibling("file.bin" + Downloader.PART_EXTENSION)));
+
+        rangeRequests.set(0);
+        downloader.download(getUrl(), target);
+        assertArrayEquals(CONTENT, Files.readAllBytes(target));
+        // the probe, and only the segments that were not completed before
+        assertTrue(rangeRequests.get() < 11, "Segments were downloaded again: " + rangeRequests.get());
+    }
+
+    @Test
+    void restartWithoutValidator() throws IOException {
+        sendValidator = false;
+        truncatedRequest = 4;
+        Path target = getTempDir().resolve("file.bin");
+        Downloader downloader = getDownloader().setSegmentSize(10_000).setParallelism(1).setMaxRetries(0);
+        assertThrows(IOException.class, () -> downloader.download(getUrl(), target));
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(target.resolveSibling("file.bin" + Downloader.PART_EXTENSION + Downloader.STATE_EXTENSION)));
+
+        rangeRequests.set(0);
+        downloader.download(getUrl(), target);
+        assertArrayEquals(CONTENT, Files.readAllBytes(target));
+        // the server can't tell if the file changed, so all the segments are downloaded again
+        assertTrue(rangeRequests.get() >= 11, "Segments were resumed: " + rangeRequests.get());
+    }
+
+    @Test
+    void restartWhenChanged() throws IOException {
+        // the probe and two segments come from the first version of the file
+        changedRequest = 4;
+        Path target = getTempDir().resolve("file.bin");
+        getDownloader().setSegmentSize(10_000).setParallelism(1).download(getUrl(), target);
+        assertArrayEquals(CHANGED_CONTENT, Files.readAllBytes(target));
+    }
+
+    @Test
+    void sharedRetries() throws IOException {
+        // every segment would succeed with its own retries, but not with the retries of the download
+        failures = 4;
+        Path target = getTempDir().resolve("file.bin");
+        assertThrows(IOException.class, () -> getDownloader().setSegmentSize(10_000).setMaxRetries(3)
+                .download(getUrl(), target));
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    void verifyBeforePublishing() throws IOException {
+        Path target = getTempDir().resolve("file.bin");
+        assertThrows(IOException.class, () -> getDownloader().download(getUrl(), target, file -> {
+            throw new IOException("invalid");
+        }));
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(target.resolveSibling("file.bin" + Downloader.PART_EXTENSION)));
+
+        getDownloader().download(getUrl(), target, file -> assertEquals(CONTENT.length, Files.size(file)));
+        assertArrayEquals(CONTENT, Files.readAllBytes(target));
+    }
+
+    @Test
+    void openStream() throws IOException {
+        acceptRanges = false;
+        failures = 1;
+        try (InputStream is = getDownloader().openStream(getUrl())) {
+            assertArrayEquals(CONTENT, is.readAllBytes());
+        }
+
+        truncatedRequest = requests.get() + 1;
+        try (InputStream is = getDownloader().openStream(getUrl())) {
+            assertThrows(IOException.class, is::readAllBytes);
+        }
+    }
+}
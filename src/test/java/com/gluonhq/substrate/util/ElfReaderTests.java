@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElfReaderTests {
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+
+    @Test
+    void readObject() throws IOException {
+        Path object = Files.write(getTempDir().resolve("foo.o"), elf(true, ByteOrder.LITTLE_ENDIAN, ElfReader.EM_AARCH64));
+        List<ElfReader.Header> headers = ElfReader.readHeaders(object);
+        assertEquals(1, headers.size());
+        ElfReader.Header header = headers.get(0);
+        assertNull(header.getName());
+        assertTrue(header.is64Bit());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, header.getByteOrder());
+        assertEquals(ElfReader.EM_AARCH64, header.getMachine());
+
+        Path bigEndian = Files.write(getTempDir().resolve("bar.o"), elf(false, ByteOrder.BIG_ENDIAN, ElfReader.EM_ARM));
+        header = ElfReader.readHeaders(bigEndian).get(0);
+        assertFalse(header.is64Bit());
+        assertEquals(ByteOrder.BIG_ENDIAN, header.getByteOrder());
+        assertEquals(ElfReader.EM_ARM, header.getMachine());
+    }
+
+    @Test
+    void readArchive() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        bos.writeBytes("!<arch>\n".getBytes(StandardCharsets.US_ASCII));
+        addMember(bos, "/", new byte[]{0, 0, 0, 0, 1});
+        addMember(bos, "//", "a_very_long_object_name.o/\n".getBytes(StandardCharsets.US_ASCII));
+        addMember(bos, "/0", elf(true, ByteOrder.LITTLE_ENDIAN, ElfReader.EM_X86_64));
+        addMember(bos, "notes.txt/", "odd".getBytes(StandardCharsets.US_ASCII));
+        addMember(bos, "bar.o/", elf(true, ByteOrder.LITTLE_ENDIAN, ElfReader.EM_AARCH64));
+        Path archive = Files.write(getTempDir().resolve("libfoo.a"), bos.toByteArray());
+
+        List<ElfReader.Header> headers = ElfReader.readHeaders(archive);
+        assertEquals(2, headers.size());
+        assertEquals(ElfReader.EM_X86_64, headers.get(0).getMachine());
+        assertEquals("bar.o/", headers.get(1).getName());
+        assertEquals(ElfReader.EM_AARCH64, headers.get(1).getMachine());
+
+        assertTrue(ElfReader.architectureFilter("aarch64").test(archive));
+        assertTrue(ElfReader.architectureFilter("x86_64").test(archive));
+        assertFalse(ElfReader.architectureFilter("arm").test(archive));
+    }
+
+    @Test
+    void readBsdArchive() throws IOException {
+        byte[] object = elf(true, ByteOrder.LITTLE_ENDIAN, ElfReader.EM_AARCH64);
+        byte[] name = "foo_with_long_name.o".getBytes(StandardCharsets.US_ASCII);
+        byte[] data = new byte[name.length + object.length];
+        System.arraycopy(name, 0, data, 0, name.length);
+        System.arraycopy(object, 0, data, name.length, object.length);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        bos.writeBytes("!<arch>\n".getBytes(StandardCharsets.US_ASCII));
+        addMember(bos, "#1/" + name.length, data);
+        Path archive = Files.write(getTempDir().resolve("libfoo.a"), bos.toByteArray());
+
+        List<ElfReader.Header> headers = ElfReader.readHeaders(archive);
+        assertEquals(1, headers.size());
+        assertEquals("foo_with_long_name.o", headers.get(0).getName());
+    }
+
+    @Test
+    void filter() throws IOException {
+        Path dir = getTempDir();
+        Predicate<Path> filter = ElfReader.architectureFilter("aarch64");
+        assertTrue(filter.test(Files.write(dir.resolve("a.o"), elf(true, ByteOrder.LITTLE_ENDIAN, ElfReader.EM_AARCH64))));
+        assertFalse(filter.test(Files.write(dir.resolve("b.o"), elf(true, ByteOrder.LITTLE_ENDIAN, ElfReader.EM_X86_64))));
+        assertFalse(filter.test(Files.write(dir.resolve("c.o"), elf(false, ByteOrder.LITTLE_ENDIAN, ElfReader.EM_AARCH64))));
+        assertFalse(filter.test(Files.writeString(dir.resolve("d.a"), "not an archive")));
+        assertFalse(filter.test(Files.writeString(dir.resolve("e.a"), "!<arch>\ncorrupted header")));
+        assertFalse(filter.test(dir.resolve("missing.a")));
+        assertThrows(IllegalArgumentException.class, () -> ElfReader.architectureFilter("sparc"));
+    }
+
+    private static byte[] elf(boolean is64Bit, ByteOrder order, int machine) {
+        ByteBuffer buffer = ByteBuffer.allocate(is64Bit ? 64 : 52).order(order);
+        buffer.put(new byte[]{0x7f, 'E', 'L', 'F'});
+        buffer.put((byte) (is64Bit ? 2 : 1));
+        buffer.put((byte) (order == ByteOrder.LITTLE_ENDIAN ? 1 : 2));
+        buffer.put((byte) 1);
+        buffer.putShort(16, (short) 1);
+        buffer.putShort(18, (short) machine);
+        return buffer.array();
+    }
+
+    private static void addMember(ByteArrayOutputStream bos, String name, byte[] data) {
+        String header = String.format("%-16s%-12s%-6s%-6s%-8s%-10d`\n", name, "0", "0", "0", "644", data.length);
+        bos.writeBytes(header.getBytes(StandardCharsets.US_ASCII));
+        bos.writeBytes(data);
+        if (data.length % 2 == 1) {
+            bos.write('\n');
+        }
+    }
+}
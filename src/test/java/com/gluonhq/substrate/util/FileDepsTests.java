@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileDepsTests {
+
+    private static final String OS_ARCH = "linux-x86_64";
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+
+    @Test
+    void addComponentToInstalledSdk() throws IOException {
+        Path tempDir = getTempDir();
+        Path zip = tempDir.resolve("sdk.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (String name : List.of("sdk/lib/javafx.web.jar", "sdk/lib/libglass.a",
+                    "sdk/lib/libjfxmedia.a", "sdk/lib/libjfxwebkit.a")) {
+                zos.putNextEntry(new ZipEntry(name));
+                zos.write(name.getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+        Path sdk = tempDir.resolve("javafxStaticSdk").resolve("1").resolve(OS_ARCH).resolve("sdk");
+
+        // the SDK is installed for a project that only uses media
+        Set<JavaFXComponent> media = EnumSet.of(JavaFXComponent.MEDIA);
+        FileOps.unzipSelected(zip, tempDir, JavaFXComponent.filter(media), false, "javafxStaticSdk", "1", OS_ARCH);
+        FileDeps.writeInstalledComponents(sdk, OS_ARCH, media);
+        assertTrue(FileDeps.getMissingComponents(sdk, OS_ARCH, media).isEmpty());
+        assertFalse(Files.exists(sdk.resolve("lib").resolve("libjfxwebkit.a")));
+
+        // then the project starts using web
+        Set<JavaFXComponent> all = EnumSet.allOf(JavaFXComponent.class);
+        assertEquals(EnumSet.of(JavaFXComponent.WEB), FileDeps.getMissingComponents(sdk, OS_ARCH, all));
+        FileOps.unzipSelected(zip, tempDir, JavaFXComponent.filter(all), true, "javafxStaticSdk", "1", OS_ARCH);
+        FileDeps.writeInstalledComponents(sdk, OS_ARCH, all);
+        assertTrue(FileDeps.getMissingComponents(sdk, OS_ARCH, all).isEmpty());
+        assertTrue(Files.exists(sdk.resolve("lib").resolve("libjfxwebkit.a")));
+        assertTrue(Files.exists(sdk.resolve("lib").resolve("libjfxmedia.a")));
+    }
+
+    @Test
+    void componentsOfEarlierInstallations() throws IOException {
+        Path tempDir = getTempDir();
+        Path sdk = tempDir.resolve("javafxStaticSdk").resolve("1").resolve(OS_ARCH).resolve("sdk");
+        Files.createDirectories(sdk);
+        // without a record of the components, the ones in the integrity manifest are installed
+        new IntegrityManifest(IntegrityManifest.Algorithm.CRC32C,
+                Map.of("sdk/lib/libjfxwebkit.a", new IntegrityManifest.Entry(1, "0")))
+                .write(sdk.getParent().resolve("javafxStaticSdk-" + OS_ARCH + IntegrityManifest.FILE_EXTENSION));
+        assertEquals(EnumSet.of(JavaFXComponent.MEDIA),
+                FileDeps.getMissingComponents(sdk, OS_ARCH, EnumSet.allOf(JavaFXComponent.class)));
+    }
+}
@@ -27,15 +27,35 @@
  */
 package com.gluonhq.substrate.util;
 
+import com.gluonhq.substrate.Constants;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -190,15 +210,144 @@ class FileOpsTests {
         assertDoesNotThrow(() -> {
             FileOps.downloadAndUnzip(TEST_URL + "test.zip", tempDir, "test.zip", "testZip", "1", null, "2");
             Path testFile = Path.of(tempDir.toString(), "testZip", "1", "2", "test.txt");
-            Path testMd5File = Path.of(tempDir.toString(), "testZip", "1", "2", "testZip-2.md5");
+            Path testManifestFile = Path.of(tempDir.toString(), "testZip", "1", "2", "testZip-2.integrity");
             assertTrue(Files.exists(testFile));
-            assertTrue(Files.exists(testMd5File));
-            Map<String, String> hashMap = FileOps.getHashMap(testMd5File.toString());
-            assertNotNull(hashMap);
-            assertEquals(hashMap.get(testFile.getFileName().toString()), FileOps.calculateCheckSum(testFile.toFile()));
+            assertTrue(Files.exists(testManifestFile));
+            IntegrityManifest manifest = IntegrityManifest.read(testManifestFile);
+            assertNotNull(manifest);
+            assertEquals(IntegrityManifest.Algorithm.CRC32C.digest(testFile), manifest.get("test.txt").getDigest());
         });
     }
 
+    @Test
+    void processFileConcurrently() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bos)) {
+            zos.putNextEntry(new ZipEntry("test.txt"));
+            zos.write("test".getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+        byte[] zip = bos.toByteArray();
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/test.zip", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(200, zip.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(zip);
+            }
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/test.zip";
+            Path tempDir = getTempDir();
+            Path zipDir = tempDir.resolve("testZip").resolve("1");
+            Files.createDirectories(zipDir);
+            Path stale = Files.writeString(zipDir.resolve("stale.txt"), "stale");
+
+            ExecutorService executor = Executors.newFixedThreadPool(3);
+            try {
+                List<Future<?>> results = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    results.add(executor.submit(() -> {
+                        FileOps.downloadAndUnzip(url, tempDir, "test.zip", "testZip", "1");
+                        return null;
+                    }));
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals(1, requests.get());
+            assertEquals("test", Files.readString(zipDir.resolve("test.txt")));
+            assertTrue(Files.exists(zipDir.resolve("testZip-1.integrity")));
+            assertFalse(Files.exists(stale));
+            assertFalse(Files.exists(tempDir.resolve("test.zip")));
+            try (Stream<Path> files = Files.list(zipDir.getParent())) {
+                assertEquals(List.of("1", "1.lock"), files.map(p -> p.getFileName().toString())
+                        .sorted().collect(Collectors.toList()));
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void unzipSelectedAndMissing() throws IOException {
+        Path tempDir = getTempDir();
+        Path zip = tempDir.resolve("sdk.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (String name : List.of("sdk/lib/javafx.web.jar", "sdk/lib/libglass.a", "sdk/lib/libjfxwebkit.a")) {
+                zos.putNextEntry(new ZipEntry(name));
+                zos.write(name.getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+        Path lib = tempDir.resolve("testSdk").resolve("1").resolve("sdk").resolve("lib");
+
+        FileOps.unzipSelected(zip, tempDir, name -> !name.endsWith("webkit.a"), false, "testSdk", "1");
+        assertTrue(Files.exists(lib.resolve("javafx.web.jar")));
+        assertTrue(Files.exists(lib.resolve("libglass.a")));
+        assertFalse(Files.exists(lib.resolve("libjfxwebkit.a")));
+        Path manifestFile = lib.getParent().getParent().resolve("testSdk-1.integrity");
+        assertEquals(2, IntegrityManifest.read(manifestFile).size());
+
+        // the entries that were installed are not extracted again
+        Files.writeString(lib.resolve("libglass.a"), "modified");
+        FileOps.unzipSelected(zip, tempDir, name -> true, true, "testSdk", "1");
+        assertEquals("sdk/lib/libjfxwebkit.a", Files.readString(lib.resolve("libjfxwebkit.a")));
+        assertEquals("modified", Files.readString(lib.resolve("libglass.a")));
+        IntegrityManifest manifest = IntegrityManifest.read(manifestFile);
+        assertEquals(3, manifest.size());
+        assertNotNull(manifest.get("sdk/lib/libjfxwebkit.a"));
+    }
+
+    @Test
+    void downloadSelectedWithoutKeepingZip() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bos)) {
+            for (String name : List.of("sdk/lib/libglass.a", "sdk/lib/libjfxwebkit.a")) {
+                zos.putNextEntry(new ZipEntry(name));
+                zos.write(name.getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+        byte[] zip = bos.toByteArray();
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/sdk.zip", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(200, zip.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(zip);
+            }
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/sdk.zip";
+            Path tempDir = getTempDir();
+            Path lib = tempDir.resolve("testSdk").resolve("1").resolve("sdk").resolve("lib");
+
+            FileOps.downloadAndUnzip(url, tempDir, name -> !name.endsWith("webkit.a"), "testSdk", "1");
+            assertTrue(Files.exists(lib.resolve("libglass.a")));
+            assertFalse(Files.exists(lib.resolve("libjfxwebkit.a")));
+            // the zip is neither left next to the SDK, nor in the local store
+            try (Stream<Path> files = Files.list(tempDir)) {
+                assertEquals(List.of("testSdk"), files.map(f -> f.getFileName().toString()).collect(Collectors.toList()));
+            }
+            assertFalse(Files.exists(ArtifactRepository.LOCAL_STORE.resolve(ArtifactRepository.getMirrorPath(new URL(url)))));
+
+            // so it is downloaded again to add the entries that were left out
+            FileOps.unzipMissing(url, tempDir, name -> true, "testSdk", "1");
+            assertTrue(Files.exists(lib.resolve("libjfxwebkit.a")));
+            assertEquals(2, requests.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
     @Test
     void parseXMLFile() throws IOException {
         Path xmlPath = FileOps.copyResource("/test-ops.xml", getTempDir().resolve("test-ops.xml"));
@@ -239,4 +388,48 @@ class FileOpsTests {
         FileOps.extractFilesFromJar(List.of("txt", "MF"), resourcePath, targetPath, null);
         assertEquals(2, Files.list(targetPath).count());
     }
+
+    //--- pathing jar ----------------
+
+    @Test
+    void createPathingJar() throws IOException {
+        Path sourcePath = getTempDir();
+        Path jar1 = Files.writeString(sourcePath.resolve("b.jar"), "b");
+        Path jar2 = Files.writeString(sourcePath.resolve("a.jar"), "a");
+        Path tmpPath = getTempDir();
+        Path depsPath = tmpPath.resolve(Constants.PATHING_JAR_DEPS_PATH);
+        String classpath = jar1 + File.pathSeparator + jar2;
+
+        Path pathingJar = Path.of(FileOps.createPathingJar(tmpPath, classpath));
+        assertEquals(Constants.PATHING_JAR_DEPS_PATH + File.separator + "b.jar " +
+                Constants.PATHING_JAR_DEPS_PATH + File.separator + "a.jar", getClassPath(pathingJar));
+        assertEquals("b", Files.readString(depsPath.resolve("b.jar")));
+
+        // identical files are kept
+        FileTime lastModified = Files.getLastModifiedTime(depsPath.resolve("a.jar"));
+        FileOps.createPathingJar(tmpPath, classpath);
+        assertEquals(lastModified, Files.getLastModifiedTime(depsPath.resolve("a.jar")));
+
+        // stale files are removed
+        FileOps.createPathingJar(tmpPath, jar2.toString());
+        assertFalse(Files.exists(depsPath.resolve("b.jar")));
+        assertTrue(Files.exists(depsPath.resolve("a.jar")));
+    }
+
+    @Test
+    void linkOrCopyReplacesChangedFile() throws IOException {
+        Path source = Files.writeString(getTempDir().resolve("a.jar"), "new");
+        Path destination = Files.writeString(getTempDir().resolve("a.jar"), "old");
+        Files.setLastModifiedTime(destination, FileTime.fromMillis(1000));
+
+        FileOps.linkOrCopyFile(source, destination);
+        assertEquals("new", Files.readString(destination));
+        assertEquals(Files.getLastModifiedTime(source), Files.getLastModifiedTime(destination));
+    }
+
+    private String getClassPath(Path jar) throws IOException {
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            return jarFile.getManifest().getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+        }
+    }
 }
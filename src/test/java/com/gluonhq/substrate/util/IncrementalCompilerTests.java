@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import com.gluonhq.substrate.model.Triplet;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class IncrementalCompilerTests {
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+
+    @Test
+    void parseDependencyFile() {
+        String content = "launcher.o: launcher.c /opt/graalvm/include/jni.h \\\n" +
+                " my\\ header.h\n" +
+                "\n" +
+                "/opt/graalvm/include/jni.h:\n";
+        assertEquals(List.of("launcher.c", "/opt/graalvm/include/jni.h", "my header.h"),
+                IncrementalCompiler.parseDependencyFile(content));
+    }
+
+    @Test
+    void parseEmptyDependencyFile() {
+        assertTrue(IncrementalCompiler.parseDependencyFile("").isEmpty());
+    }
+
+    @Test
+    void onlyChangedUnitsAreCompiled() throws IOException, InterruptedException {
+        assumeTrue(Triplet.fromCurrentOS().getOs().indexOf("nux") > 0);
+
+        Path dir = getTempDir();
+        Files.writeString(dir.resolve("value.h"), "#define VALUE 1\n");
+        Files.writeString(dir.resolve("a.c"), "#include \"value.h\"\nint a() { return VALUE; }\n");
+        Files.writeString(dir.resolve("b.c"), "int b() { return 2; }\n");
+        List<String> sources = List.of("a.c", "b.c");
+        IncrementalCompiler compiler = new IncrementalCompiler("test", List.of("gcc", "-c"), dir, "o", true);
+
+        assertTrue(compiler.compile(sources));
+        Path a = compiler.getObjectFile("a.c");
+        Path b = compiler.getObjectFile("b.c");
+        assertTrue(Files.exists(a));
+        assertTrue(Files.exists(b));
+
+        FileTime old = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(a, old);
+        Files.setLastModifiedTime(b, old);
+
+        // nothing changed
+        assertTrue(compiler.compile(sources));
+        assertEquals(old, Files.getLastModifiedTime(a));
+        assertEquals(old, Files.getLastModifiedTime(b));
+
+        // the header included by a.c changed
+        Files.writeString(dir.resolve("value.h"), "#define VALUE 3\n");
+        assertTrue(compiler.compile(sources));
+        assertNotEquals(old, Files.getLastModifiedTime(a));
+        assertEquals(old, Files.getLastModifiedTime(b));
+    }
+
+    @Test
+    void failedUnitIsCompiledAgain() throws IOException, InterruptedException {
+        assumeTrue(Triplet.fromCurrentOS().getOs().indexOf("nux") > 0);
+
+        Path dir = getTempDir();
+        Files.writeString(dir.resolve("a.c"), "int a() { return; \n");
+        IncrementalCompiler compiler = new IncrementalCompiler("test", List.of("gcc", "-c"), dir, "o", true);
+
+        assertFalse(compiler.compile(List.of("a.c")));
+        assertFalse(compiler.compile(List.of("a.c")));
+
+        Files.writeString(dir.resolve("a.c"), "int a() { return 1; }\n");
+        assertTrue(compiler.compile(List.of("a.c")));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstallLockTests {
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+
+    @Test
+    void installOnce() throws Exception {
+        Path target = getTempDir().resolve("sdk");
+        Path marker = target.resolve("sdk.integrity");
+        AtomicInteger installations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> InstallLock.install(target, () -> Files.exists(marker), () -> {
+                    started.countDown();
+                    installations.incrementAndGet();
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    Files.createDirectories(target);
+                    Files.writeString(marker, "installed");
+                })));
+                if (i == 0) {
+                    assertTrue(started.await(10, TimeUnit.SECONDS));
+                }
+            }
+            int installed = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    installed++;
+                }
+            }
+            assertEquals(1, installed);
+            assertEquals(1, installations.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(Files.exists(InstallLock.getLockFile(target)));
+    }
+
+    @Test
+    void failedInstallationIsRetried() throws IOException {
+        Path target = getTempDir().resolve("sdk");
+        Path marker = target.resolve("sdk.integrity");
+        assertThrows(IOException.class, () -> InstallLock.install(target, () -> Files.exists(marker), () -> {
+            throw new IOException("failed");
+        }));
+        assertTrue(InstallLock.install(target, () -> Files.exists(marker), () -> {
+            Files.createDirectories(target);
+            Files.writeString(marker, "installed");
+        }));
+    }
+
+    @Test
+    void installedBeforeGettingTheLock() throws IOException {
+        Path target = getTempDir().resolve("sdk");
+        Path marker = target.resolve("sdk.integrity");
+        assertTrue(InstallLock.install(target, () -> Files.exists(marker), () -> {
+            Files.createDirectories(target);
+            Files.writeString(marker, "installed");
+        }));
+        // a build that found it missing before, only gets the lock once it is installed
+        assertFalse(InstallLock.install(target, () -> Files.exists(marker), () -> fail("installed again")));
+        assertTrue(InstallLock.install(target, null, () -> Files.writeString(marker, "reinstalled")));
+        assertEquals("reinstalled", Files.readString(marker));
+    }
+}
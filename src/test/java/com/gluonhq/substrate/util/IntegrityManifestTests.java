@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntegrityManifestTests {
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+
+    @Test
+    void writeAndRead() throws IOException {
+        Path root = getTempDir();
+        Path a = Files.writeString(Files.createDirectories(root.resolve("lib")).resolve("a b.a"), "a");
+        Path b = Files.writeString(root.resolve("b.jar"), "bb");
+        Path manifestFile = root.resolve("sdk" + IntegrityManifest.FILE_EXTENSION);
+
+        IntegrityManifest.of(root, List.of(a, b)).write(manifestFile);
+        assertTrue(Files.readString(manifestFile).startsWith("substrate-integrity " + IntegrityManifest.FORMAT_VERSION + " CRC32C"));
+
+        IntegrityManifest manifest = IntegrityManifest.read(manifestFile);
+        assertNotNull(manifest);
+        assertEquals(2, manifest.size());
+        assertEquals(1, manifest.get("lib/a b.a").getSize());
+        assertEquals(IntegrityManifest.Algorithm.CRC32C.digest(b), manifest.get("b.jar").getDigest());
+    }
+
+    @Test
+    void readInvalid() throws IOException {
+        Path root = getTempDir();
+        assertNull(IntegrityManifest.read(root.resolve("missing")));
+        assertNull(IntegrityManifest.read(Files.writeString(root.resolve("old"), "substrate-integrity 0 CRC32C\n")));
+        assertNull(IntegrityManifest.read(Files.writeString(root.resolve("bad"), "substrate-integrity 1 CRC32C\nxx\n")));
+    }
+
+    @Test
+    void verify() throws IOException {
+        Path root = getTempDir();
+        Path a = Files.writeString(root.resolve("a.a"), "a");
+        Path b = Files.writeString(root.resolve("b.a"), "b");
+        IntegrityManifest manifest = IntegrityManifest.of(root, List.of(a, b));
+        Path records = root.resolve("records");
+
+        // only the given files are verified
+        Files.writeString(b, "changed");
+        assertTrue(manifest.verify(root, List.of(a), records));
+        assertFalse(manifest.verify(root, List.of(a, b), records));
+        assertFalse(manifest.verify(root, List.of(root.resolve("c.a")), records));
+
+        // same size, different content
+        Files.writeString(a, "x");
+        Files.setLastModifiedTime(a, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        assertFalse(manifest.verify(root, List.of(a), records));
+    }
+}
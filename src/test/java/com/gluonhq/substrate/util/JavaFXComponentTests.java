@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JavaFXComponentTests {
+
+    @Test
+    void libraries() {
+        assertTrue(JavaFXComponent.WEB.contains("sdk/lib/libjfxwebkit.a"));
+        assertTrue(JavaFXComponent.WEB.contains("sdk/lib/jfxwebkit.lib"));
+        assertTrue(JavaFXComponent.MEDIA.contains("sdk/lib/libjfxmedia_avf.a"));
+        assertTrue(JavaFXComponent.MEDIA.contains("sdk/lib/libgstreamer-lite.a"));
+        assertFalse(JavaFXComponent.WEB.contains("sdk/lib/libjfxmedia.a"));
+        assertFalse(JavaFXComponent.WEB.contains("sdk/lib/javafx.web.jar"));
+        assertFalse(JavaFXComponent.WEB.contains("sdk/lib/libWebCore.a/"));
+        assertFalse(JavaFXComponent.MEDIA.contains("sdk/lib/libglass.a"));
+    }
+
+    @Test
+    void filter() {
+        Predicate<String> filter = JavaFXComponent.filter(EnumSet.of(JavaFXComponent.MEDIA));
+        assertTrue(filter.test("sdk/lib/libglass.a"));
+        assertTrue(filter.test("sdk/lib/javafx.web.jar"));
+        assertTrue(filter.test("sdk/lib/libjfxmedia.a"));
+        assertFalse(filter.test("sdk/lib/libjfxwebkit.a"));
+        assertFalse(filter.test("sdk/lib/libicudata.a"));
+
+        Predicate<String> none = JavaFXComponent.filter(Set.of());
+        assertTrue(none.test("sdk/lib/libprism_es2.a"));
+        assertFalse(none.test("sdk/lib/libfxplugins.a"));
+        assertFalse(none.test("sdk/lib/libWTF.a"));
+    }
+}
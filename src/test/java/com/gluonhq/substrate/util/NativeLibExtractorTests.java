@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import com.gluonhq.substrate.model.ClassPathEntry;
+import com.gluonhq.substrate.model.ClassPathIndex;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NativeLibExtractorTests {
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+
+    @Test
+    void extractIncrementally() throws IOException {
+        Path tempDir = getTempDir();
+        Path jar1 = createJar(tempDir.resolve("a.jar"), Map.of("native/libfoo.a", "foo", "native/libbad.a", "bad"));
+        Path jar2 = createJar(tempDir.resolve("b.jar"), Map.of("native/libbar.a", "bar"));
+        Path libPath = tempDir.resolve("gvm").resolve("lib");
+        Path statePath = tempDir.resolve("gvm").resolve("native-libs.properties");
+        AtomicInteger checks = new AtomicInteger();
+        NativeLibExtractor extractor = new NativeLibExtractor(libPath, statePath, p -> {
+            checks.incrementAndGet();
+            return !p.getFileName().toString().equals("libbad.a");
+        });
+
+        extractor.extract(find(tempDir, jar1, jar2));
+        assertEquals(List.of("libbar.a", "libfoo.a"), list(libPath));
+        assertEquals(3, checks.get());
+
+        // unchanged libs are left in place, and not checked again
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+        Files.setLastModifiedTime(libPath.resolve("libfoo.a"), old);
+        createJar(jar2, Map.of("native/libbar.a", "bar2"));
+        extractor.extract(find(tempDir, jar1, jar2));
+        assertEquals(List.of("libbar.a", "libfoo.a"), list(libPath));
+        assertEquals(old, Files.getLastModifiedTime(libPath.resolve("libfoo.a")));
+        assertEquals("bar2", Files.readString(libPath.resolve("libbar.a")));
+        assertEquals(4, checks.get());
+
+        // libs that are not on the classpath anymore are removed
+        extractor.extract(find(tempDir, jar1));
+        assertEquals(List.of("libfoo.a"), list(libPath));
+        assertEquals(4, checks.get());
+        try (Stream<Path> files = Files.list(libPath.getParent())) {
+            assertEquals(List.of("lib", "native-libs.properties"), files.map(p -> p.getFileName().toString())
+                    .sorted().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void firstAcceptedLibWins() throws IOException {
+        Path tempDir = getTempDir();
+        Path jar1 = createJar(tempDir.resolve("a.jar"), Map.of("x86/libfoo.a", "x86"));
+        Path jar2 = createJar(tempDir.resolve("b.jar"), Map.of("arm/libfoo.a", "arm"));
+        Path jar3 = createJar(tempDir.resolve("c.jar"), Map.of("libfoo.a", "other"));
+        Path libPath = tempDir.resolve("lib");
+        NativeLibExtractor extractor = new NativeLibExtractor(libPath, tempDir.resolve("state.properties"),
+                p -> !readString(p).equals("x86"));
+
+        extractor.extract(find(tempDir, jar1, jar2, jar3));
+        assertEquals("arm", Files.readString(libPath.resolve("libfoo.a")));
+
+        extractor.extract(find(tempDir, jar3, jar1, jar2));
+        assertEquals("other", Files.readString(libPath.resolve("libfoo.a")));
+    }
+
+    private static List<ClassPathIndex.Entry> find(Path tempDir, Path... jars) throws IOException {
+        List<ClassPathEntry> entries = Stream.of(jars).map(ClassPathEntry::ofJar).collect(Collectors.toList());
+        return ClassPathIndex.create(entries, tempDir.resolve("classpath.index")).find(name -> name.endsWith(".a"));
+    }
+
+    private static List<String> list(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static String readString(Path path) {
+        try {
+            return Files.readString(path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Path createJar(Path jar, Map<String, String> entries) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                zos.putNextEntry(new ZipEntry(entry.getKey()));
+                zos.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
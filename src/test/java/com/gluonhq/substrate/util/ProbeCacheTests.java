@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProbeCacheTests {
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ProbeCache.clear();
+        ProbeCache.setStorePath(getTempDir().resolve("probes.properties"));
+    }
+
+    @Test
+    void resultIsReusedUntilInputChanges() throws Exception {
+        Path tool = Files.writeString(getTempDir().resolve("tool"), "v1");
+        AtomicInteger runs = new AtomicInteger();
+        ProbeCache.Probe probe = () -> "result " + runs.incrementAndGet();
+
+        assertEquals("result 1", ProbeCache.get("tool-version", List.of(tool), probe));
+        assertEquals("result 1", ProbeCache.get("tool-version", List.of(tool), probe));
+        assertEquals(1, runs.get());
+
+        Files.setLastModifiedTime(tool, FileTime.fromMillis(1000));
+        assertEquals("result 2", ProbeCache.get("tool-version", List.of(tool), probe));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void probesAreIndependent() throws Exception {
+        Path tool = Files.writeString(getTempDir().resolve("tool"), "v1");
+        assertEquals("a", ProbeCache.get("probe-a", List.of(tool), () -> "a"));
+        assertEquals("b", ProbeCache.get("probe-b", List.of(tool), () -> "b"));
+    }
+
+    @Test
+    void failuresAreNotCached() throws Exception {
+        Path tool = Files.writeString(getTempDir().resolve("tool"), "v1");
+        assertThrows(IOException.class, () -> ProbeCache.get("failing", List.of(tool), () -> {
+            throw new IOException("failed");
+        }));
+        assertEquals("ok", ProbeCache.get("failing", List.of(tool), () -> "ok"));
+    }
+
+    @Test
+    void resultIsPersisted() throws Exception {
+        Path tool = Files.writeString(getTempDir().resolve("tool"), "v1");
+        assertEquals("stored", ProbeCache.get("tool-version", List.of(tool), () -> "stored"));
+
+        // a new process only has the persisted results
+        ProbeCache.clear();
+        assertEquals("stored", ProbeCache.get("tool-version", List.of(tool), () -> {
+            throw new IOException("probe should not run");
+        }));
+
+        Files.setLastModifiedTime(tool, FileTime.fromMillis(1000));
+        ProbeCache.clear();
+        assertEquals("new", ProbeCache.get("tool-version", List.of(tool), () -> "new"));
+    }
+
+    @Test
+    void otherFormatIsIgnored() throws Exception {
+        Path store = getTempDir().resolve("probes.properties");
+        ProbeCache.setStorePath(store);
+        Path tool = Files.writeString(getTempDir().resolve("tool"), "v1");
+        ProbeCache.get("tool-version", List.of(tool), () -> "old format");
+
+        Files.writeString(store, Files.readString(store)
+                .replace("format=" + ProbeCache.FORMAT_VERSION, "format=0"));
+        ProbeCache.clear();
+        assertEquals("current", ProbeCache.get("tool-version", List.of(tool), () -> "current"));
+        assertTrue(Files.readString(store).contains("format=" + ProbeCache.FORMAT_VERSION));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RemoteBuildCacheTests {
+
+    private HttpServer server;
+    private final Map<String, byte[]> store = new ConcurrentHashMap<>();
+    private volatile long delay = 0;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/cache/", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        String path = exchange.getRequestURI().getPath();
+        if ("PUT".equals(exchange.getRequestMethod())) {
+            store.put(path, exchange.getRequestBody().readAllBytes());
+            exchange.sendResponseHeaders(201, -1);
+        } else {
+            byte[] body = store.get(path);
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            }
+        }
+        exchange.close();
+    }
+
+    private String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/cache";
+    }
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+
+    @Test
+    void uploadAndFetch() throws IOException {
+        Path dir = getTempDir();
+        Path object = Files.writeString(dir.resolve("main.o"), "object");
+        RemoteBuildCache cache = new RemoteBuildCache(getUrl(), false, 5000);
+
+        Path target = dir.resolve("restored");
+        assertFalse(cache.fetch("abc123", target));
+        assertTrue(cache.upload("abc123", List.of(object)));
+        assertTrue(store.containsKey("/cache/abc123.zip"));
+        assertTrue(cache.fetch("abc123", target));
+        assertEquals("object", Files.readString(target.resolve("main.o")));
+    }
+
+    @Test
+    void readOnlyDoesNotUpload() throws IOException {
+        Path dir = getTempDir();
+        Path object = Files.writeString(dir.resolve("main.o"), "object");
+        RemoteBuildCache cache = new RemoteBuildCache(getUrl(), true, 5000);
+        assertFalse(cache.upload("abc123", List.of(object)));
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    void timeoutDisablesCache() throws IOException {
+        Path dir = getTempDir();
+        Path object = Files.writeString(dir.resolve("main.o"), "object");
+        assertTrue(new RemoteBuildCache(getUrl(), false, 5000).upload("abc123", List.of(object)));
+
+        delay = 2000;
+        RemoteBuildCache cache = new RemoteBuildCache(getUrl(), false, 200);
+        assertFalse(cache.fetch("abc123", dir.resolve("restored")));
+        assertFalse(Files.exists(dir.resolve("restored").resolve("main.o")));
+
+        delay = 0;
+        // once disabled, the cache is not queried again during the build
+        assertFalse(cache.fetch("abc123", dir.resolve("restored")));
+    }
+
+    @Test
+    void unreachableServer() throws IOException {
+        String url = getUrl();
+        server.stop(0);
+        RemoteBuildCache cache = new RemoteBuildCache(url, false, 500);
+        assertFalse(cache.fetch("abc123", getTempDir()));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskGraphTests {
+
+    @Test
+    void dependentsReceiveResults() throws Exception {
+        TaskGraph graph = new TaskGraph("test");
+        TaskGraph.Task<Integer> a = graph.add("a", () -> 2);
+        TaskGraph.Task<Integer> b = graph.add("b", () -> 3);
+        TaskGraph.Task<Integer> c = graph.add("c", () -> a.get() * b.get(), a, b);
+        graph.run();
+        assertEquals(6, (int) c.get());
+    }
+
+    @Test
+    void independentTasksOverlap() throws Exception {
+        // each task waits for the other one to start, so this only
+        // finishes if both run at the same time
+        CountDownLatch latch = new CountDownLatch(2);
+        TaskGraph graph = new TaskGraph("test", 2);
+        TaskGraph.Task<Boolean> a = graph.add("a", () -> {
+            latch.countDown();
+            return latch.await(10, TimeUnit.SECONDS);
+        });
+        TaskGraph.Task<Boolean> b = graph.add("b", () -> {
+            latch.countDown();
+            return latch.await(10, TimeUnit.SECONDS);
+        });
+        graph.run();
+        assertTrue(a.get());
+        assertTrue(b.get());
+    }
+
+    @Test
+    void failureSkipsDependents() {
+        AtomicBoolean ran = new AtomicBoolean();
+        TaskGraph graph = new TaskGraph("test");
+        TaskGraph.Task<Void> a = graph.add("a", () -> {
+            throw new IOException("broken");
+        });
+        graph.add("b", () -> {
+            ran.set(true);
+            return null;
+        }, a);
+        IOException e = assertThrows(IOException.class, graph::run);
+        assertEquals("broken", e.getMessage());
+        assertFalse(ran.get());
+        assertThrows(IllegalStateException.class, a::get);
+    }
+
+    @Test
+    void unknownDependency() {
+        TaskGraph other = new TaskGraph("other");
+        TaskGraph.Task<Integer> a = other.add("a", () -> 1);
+        TaskGraph graph = new TaskGraph("test");
+        assertThrows(IllegalArgumentException.class, () -> graph.add("b", () -> 2, a));
+    }
+
+    @Test
+    void criticalPath() throws Exception {
+        TaskGraph graph = new TaskGraph("test", 2);
+        TaskGraph.Task<Void> slow = graph.add("slow", () -> {
+            Thread.sleep(200);
+            return null;
+        });
+        TaskGraph.Task<Void> fast = graph.add("fast", () -> null);
+        TaskGraph.Task<Void> last = graph.add("last", () -> null, slow, fast);
+        graph.run();
+
+        List<TaskGraph.Task<?>> path = graph.getCriticalPath();
+        assertEquals(List.of(slow, last), path);
+        assertTrue(graph.getCriticalPathReport().contains("slow"));
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2021, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.substrate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ZipExtractorTests {
+
+    private Path getTempDir() throws IOException {
+        return Files.createTempDirectory("substrate-tests");
+    }
+
+    @Test
+    void extractWithChecksums() throws IOException {
+        Path zip = createZip(getTempDir().resolve("test.zip"), Map.of());
+        Path target = getTempDir();
+
+        Map<String, String> hashes = FileOps.unzipFile(zip, target);
+        assertEquals(3, hashes.size());
+        Path bin = target.resolve("bin").resolve("tool");
+        assertEquals("tool", Files.readString(bin));
+        assertEquals(FileOps.calculateCheckSum(bin.toFile()), hashes.get("tool"));
+        Path lib = target.resolve("lib").resolve("libfoo.a");
+        assertEquals(FileOps.calculateCheckSum(lib.toFile()), hashes.get("libfoo.a"));
+    }
+
+    @Test
+    void extractNotZip() throws IOException {
+        Path file = Files.writeString(getTempDir().resolve("test.txt"), "not a zip");
+        assertTrue(FileOps.unzipFile(file, getTempDir()).isEmpty());
+    }
+
+    @Test
+    void entryOutsideOfTarget() throws IOException {
+        Path zip = getTempDir().resolve("test.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip))) {
+            zos.putNextEntry(new ZipEntry("../evil"));
+            zos.write(1);
+            zos.closeEntry();
+        }
+        assertThrows(IOException.class, () -> FileOps.unzipFile(zip, getTempDir()));
+    }
+
+    @Test
+    void preservePermissionsAndLinks() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path zip = createZip(getTempDir().resolve("test.zip"),
+                Map.of("bin/tool", 0100755, "lib/libfoo.a", 0100644, "lib/libbar.a", 0120777));
+        assertEquals(Integer.valueOf(0100755), ZipExtractor.readUnixModes(zip).get("bin/tool"));
+
+        Path target = getTempDir();
+        Map<String, String> hashes = FileOps.unzipFile(zip, target);
+        Path tool = target.resolve("bin").resolve("tool");
+        assertTrue(Files.getPosixFilePermissions(tool).contains(PosixFilePermission.OWNER_EXECUTE));
+        assertFalse(Files.getPosixFilePermissions(target.resolve("lib").resolve("libfoo.a"))
+                .contains(PosixFilePermission.OWNER_EXECUTE));
+
+        Path link = target.resolve("lib").resolve("libbar.a");
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals(Path.of("libfoo.a"), Files.readSymbolicLink(link));
+        assertEquals(hashes.get("libfoo.a"), hashes.get("libbar.a"));
+    }
+
+    @Test
+    void extractStream() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path zip = createZip(getTempDir().resolve("test.zip"),
+                Map.of("bin/tool", 0100755, "lib/libfoo.a", 0100644, "lib/libbar.a", 0120777));
+        Path target = getTempDir();
+        Path archive = getTempDir().resolve("copy.zip");
+
+        Map<String, IntegrityManifest.Entry> entries = ZipExtractor.extract(Files.newInputStream(zip), target,
+                IntegrityManifest.Algorithm.CRC32C, archive);
+        assertEquals(3, entries.size());
+        Path tool = target.resolve("bin").resolve("tool");
+        assertEquals("tool", Files.readString(tool));
+        assertEquals(IntegrityManifest.Algorithm.CRC32C.digest(tool), entries.get("bin/tool").getDigest());
+        assertTrue(Files.getPosixFilePermissions(tool).contains(PosixFilePermission.OWNER_EXECUTE));
+        Path link = target.resolve("lib").resolve("libbar.a");
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals(entries.get("lib/libfoo.a").getDigest(), entries.get("lib/libbar.a").getDigest());
+        assertArrayEquals(Files.readAllBytes(zip), Files.readAllBytes(archive));
+    }
+
+    @Test
+    void extractLargeStream() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        byte[] content = new byte[300_000];
+        new Random(7).nextBytes(content);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bos)) {
+            for (int i = 0; i < 3; i++) {
+                zos.putNextEntry(new ZipEntry("bin/tool" + i));
+                zos.write(content);
+                zos.closeEntry();
+            }
+        }
+        byte[] zip = setModes(bos.toByteArray(), Map.of("bin/tool2", 0100750));
+        Path target = getTempDir();
+
+        Map<String, IntegrityManifest.Entry> entries = ZipExtractor.extract(new ByteArrayInputStream(zip), target,
+                IntegrityManifest.Algorithm.CRC32C, null);
+        assertEquals(3, entries.size());
+        Path tool = target.resolve("bin").resolve("tool2");
+        assertArrayEquals(content, Files.readAllBytes(tool));
+        assertEquals(content.length, entries.get("bin/tool2").getSize());
+        assertTrue(Files.getPosixFilePermissions(tool).contains(PosixFilePermission.GROUP_EXECUTE));
+        assertFalse(Files.getPosixFilePermissions(tool).contains(PosixFilePermission.OTHERS_READ));
+    }
+
+    /**
+     * Creates a zip with bin/tool, lib/libfoo.a and a lib/libbar.a entry with the content
+     * "libfoo.a", and sets the given Unix modes in its central directory
+     */
+    @Test
+    void linksOutsideOfTarget() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path outside = getTempDir();
+
+        // a link to a folder outside, and a file written through it
+        byte[] throughLink = setModes(zip(Map.of("a", outside.toString(), "a/evil", "evil")), Map.of("a", 0120777));
+        Path throughLinkZip = Files.write(getTempDir().resolve("through-link.zip"), throughLink);
+        assertThrows(IOException.class, () -> ZipExtractor.extract(throughLinkZip, getTempDir(),
+                IntegrityManifest.Algorithm.CRC32C));
+        assertThrows(IOException.class, () -> ZipExtractor.extract(new ByteArrayInputStream(throughLink), getTempDir(),
+                IntegrityManifest.Algorithm.CRC32C, null));
+        assertFalse(Files.exists(outside.resolve("evil")));
+
+        // links that point outside, absolute or relative
+        for (String target : List.of(outside.toString(), "../../" + outside.getFileName(), "b/../../..")) {
+            byte[] link = setModes(zip(Map.of("lib/link", target)), Map.of("lib/link", 0120777));
+            Path linkZip = Files.write(getTempDir().resolve("link.zip"), link);
+            assertThrows(IOException.class, () -> ZipExtractor.extract(linkZip, getTempDir(),
+                    IntegrityManifest.Algorithm.CRC32C));
+            assertThrows(IOException.class, () -> ZipExtractor.extract(new ByteArrayInputStream(link), getTempDir(),
+                    IntegrityManifest.Algorithm.CRC32C, null));
+        }
+
+        // a link that escapes through another link
+        byte[] chained = setModes(zip(Map.of("c", ".", "lib/link", "../c/c/..")), Map.of("c", 0120777, "lib/link", 0120777));
+        Path chainedZip = Files.write(getTempDir().resolve("chained.zip"), chained);
+        assertThrows(IOException.class, () -> ZipExtractor.extract(chainedZip, getTempDir(),
+                IntegrityManifest.Algorithm.CRC32C));
+
+        // an existing link in the target folder is not followed
+        Path target = getTempDir();
+        Files.createSymbolicLink(target.resolve("lib"), outside);
+        Path existing = Files.write(getTempDir().resolve("existing.zip"), zip(Map.of("lib/evil", "evil")));
+        assertThrows(IOException.class, () -> ZipExtractor.extract(existing, target, IntegrityManifest.Algorithm.CRC32C));
+        assertFalse(Files.exists(outside.resolve("evil")));
+    }
+
+    private static byte[] zip(Map<String, String> entries) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bos)) {
+            for (String name : new TreeMap<>(entries).keySet()) {
+                zos.putNextEntry(new ZipEntry(name));
+                zos.write(entries.get(name).getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    private static Path createZip(Path zip, Map<String, Integer> modes) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bos)) {
+            zos.putNextEntry(new ZipEntry("bin/"));
+            zos.closeEntry();
+            for (String name : new String[] {"bin/tool", "lib/libfoo.a", "lib/libbar.a"}) {
+                zos.putNextEntry(new ZipEntry(name));
+                zos.write(Path.of(name).getFileName().toString().replace("libbar.a", "libfoo.a")
+                        .getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+        Files.write(zip, setModes(bos.toByteArray(), modes));
+        return zip;
+    }
+
+    /**
+     * Sets the given Unix modes in the central directory of a zip
+     */
+    private static byte[] setModes(byte[] zip, Map<String, Integer> modes) {
+        ByteBuffer buffer = ByteBuffer.wrap(zip).order(ByteOrder.LITTLE_ENDIAN);
+        for (int pos = 0; pos + 46 <= buffer.limit(); pos++) {
+            if (buffer.getInt(pos) != 0x02014b50) {
+                continue;
+            }
+            int nameLength = buffer.getShort(pos + 28) & 0xFFFF;
+            byte[] name = new byte[nameLength];
+            buffer.position(pos + 46);
+            buffer.get(name);
+            Integer mode = modes.get(new String(name, StandardCharsets.UTF_8));
+            if (mode != null) {
+                buffer.putShort(pos + 4, (short) ((3 << 8) | 20));
+                buffer.putInt(pos + 38, mode << 16);
+            }
+        }
+        return buffer.array();
+    }
+}